@@ -1,190 +1,158 @@
 package com.assignmentportal.dao;
 
+import com.assignmentportal.dao.QueryExecutor.Route;
 import com.assignmentportal.model.Assignment;
 import com.assignmentportal.util.DatabaseConnectionPool;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.List;
 
 public class AssignmentDAO {
-    private DatabaseConnectionPool connectionPool;
+    private enum Column {
+        ASSIGNMENT_ID, COURSE_ID, TITLE, DESCRIPTION, MAX_MARKS, DUE_DATE, FILE_PATH,
+        CREATED_BY, IS_ACTIVE, CREATED_AT,
+        COURSE_NAME, COURSE_CODE, CREATED_BY_NAME, SUBMISSION_STATUS,
+        TOTAL_SUBMISSIONS, GRADED_SUBMISSIONS
+    }
+    
+    private static final RowMapper<Assignment> ASSIGNMENT_MAPPER = new RowMapper<Assignment>(Column.class) {
+        @Override
+        protected Assignment mapRow(Row row) throws SQLException {
+            Assignment assignment = new Assignment();
+            assignment.setAssignmentId(row.getInt(Column.ASSIGNMENT_ID));
+            assignment.setCourseId(row.getInt(Column.COURSE_ID));
+            assignment.setTitle(row.getString(Column.TITLE));
+            assignment.setDescription(row.getString(Column.DESCRIPTION));
+            assignment.setMaxMarks(row.getInt(Column.MAX_MARKS));
+            assignment.setDueDate(row.getTimestamp(Column.DUE_DATE));
+            assignment.setFilePath(row.getString(Column.FILE_PATH));
+            assignment.setCreatedBy(row.getInt(Column.CREATED_BY));
+            assignment.setActive(row.getBoolean(Column.IS_ACTIVE));
+            assignment.setCreatedAt(row.getTimestamp(Column.CREATED_AT));
+            
+            // Joined columns
+            assignment.setCourseName(row.getString(Column.COURSE_NAME));
+            assignment.setCourseCode(row.getString(Column.COURSE_CODE));
+            assignment.setCreatedByName(row.getString(Column.CREATED_BY_NAME));
+            assignment.setSubmissionStatus(row.getString(Column.SUBMISSION_STATUS));
+            assignment.setTotalSubmissions(row.getInt(Column.TOTAL_SUBMISSIONS));
+            assignment.setGradedSubmissions(row.getInt(Column.GRADED_SUBMISSIONS));
+            return assignment;
+        }
+    };
+    
+    private static final EntityCache<Integer, Assignment> ASSIGNMENT_CACHE = new EntityCache<>("assignments");
+    
+    private final QueryExecutor queryExecutor;
     
     public AssignmentDAO() {
-        this.connectionPool = DatabaseConnectionPool.getInstance();
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
     }
     
     public boolean createAssignment(Assignment assignment) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "INSERT INTO assignments (course_id, title, description, max_marks, " +
-                        "due_date, created_by) VALUES (?, ?, ?, ?, ?, ?)";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, assignment.getCourseId());
-            pstmt.setString(2, assignment.getTitle());
-            pstmt.setString(3, assignment.getDescription());
-            pstmt.setInt(4, assignment.getMaxMarks());
-            pstmt.setTimestamp(5, assignment.getDueDate());
-            pstmt.setInt(6, assignment.getCreatedBy());
-            
-            return pstmt.executeUpdate() > 0;
-        } finally {
-            closeResources(null, pstmt, conn);
-        }
+        String sql = "INSERT INTO assignments (course_id, title, description, max_marks, " +
+                    "due_date, created_by) VALUES (?, ?, ?, ?, ?, ?)";
+        return queryExecutor.inTransaction(conn -> {
+            int assignmentId = QueryExecutor.insert(conn, sql,
+                assignment.getCourseId(), assignment.getTitle(), assignment.getDescription(),
+                assignment.getMaxMarks(), assignment.getDueDate(), assignment.getCreatedBy());
+            if (assignmentId <= 0) {
+                return false;
+            }
+            StatsChanges changes = new StatsChanges();
+            changes.assignmentAdded(assignmentId, assignment.getCourseId());
+            changes.apply(conn);
+            return true;
+        });
     }
     
     public List<Assignment> getAssignmentsByCourse(int courseId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<Assignment> assignments = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT a.*, c.course_name, c.course_code, u.full_name as created_by_name " +
-                        "FROM assignments a " +
-                        "JOIN courses c ON a.course_id = c.course_id " +
-                        "JOIN users u ON a.created_by = u.user_id " +
-                        "WHERE a.course_id = ? AND a.is_active = TRUE " +
-                        "ORDER BY a.due_date DESC";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, courseId);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                assignments.add(extractAssignmentFromResultSet(rs));
-            }
-            return assignments;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT a.*, c.course_name, c.course_code, u.full_name as created_by_name " +
+                    "FROM assignments a " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "JOIN users u ON a.created_by = u.user_id " +
+                    "WHERE a.course_id = ? AND a.is_active = TRUE " +
+                    "ORDER BY a.due_date DESC";
+        return queryExecutor.queryList(Route.READ, sql, ASSIGNMENT_MAPPER, courseId);
     }
     
     public List<Assignment> getAssignmentsByStudent(int studentId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<Assignment> assignments = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT a.*, c.course_name, c.course_code, u.full_name as created_by_name, " +
-                        "s.submission_id, s.status as submission_status " +
-                        "FROM assignments a " +
-                        "JOIN courses c ON a.course_id = c.course_id " +
-                        "JOIN enrollments e ON c.course_id = e.course_id " +
-                        "JOIN users u ON a.created_by = u.user_id " +
-                        "LEFT JOIN submissions s ON a.assignment_id = s.assignment_id AND s.student_id = ? " +
-                        "WHERE e.student_id = ? AND e.status = 'ACTIVE' AND a.is_active = TRUE " +
-                        "ORDER BY a.due_date ASC";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, studentId);
-            pstmt.setInt(2, studentId);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                assignments.add(extractAssignmentFromResultSet(rs));
-            }
-            return assignments;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT a.*, c.course_name, c.course_code, u.full_name as created_by_name, " +
+                    "s.submission_id, s.status as submission_status " +
+                    "FROM assignments a " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "JOIN enrollments e ON c.course_id = e.course_id " +
+                    "JOIN users u ON a.created_by = u.user_id " +
+                    "LEFT JOIN submissions s ON a.assignment_id = s.assignment_id AND s.student_id = ? " +
+                    "WHERE e.student_id = ? AND e.status = 'ACTIVE' AND a.is_active = TRUE " +
+                    "ORDER BY a.due_date ASC";
+        return queryExecutor.queryList(Route.READ, sql, ASSIGNMENT_MAPPER, studentId, studentId);
     }
     
+    /**
+     * Active assignments in all of a teacher's active courses, in one query
+     * Ordered by course code, then due date (latest first). Submission and
+     * graded counts come from the assignment_stats summary table.
+     */
+    public List<Assignment> getAssignmentsByTeacher(int teacherId) throws SQLException {
+        String sql = "SELECT a.*, c.course_name, c.course_code, u.full_name as created_by_name, " +
+                    "st.submission_count as total_submissions, st.graded_count as graded_submissions " +
+                    "FROM assignments a " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "JOIN users u ON a.created_by = u.user_id " +
+                    "LEFT JOIN assignment_stats st ON a.assignment_id = st.assignment_id " +
+                    "WHERE c.teacher_id = ? AND c.is_active = TRUE AND a.is_active = TRUE " +
+                    "ORDER BY c.course_code, a.due_date DESC";
+        return queryExecutor.queryList(Route.READ, sql, ASSIGNMENT_MAPPER, teacherId);
+    }
+    
+    /**
+     * Get assignment by ID, served from the entity cache when possible
+     * The returned object is shared and must not be modified.
+     */
     public Assignment getAssignmentById(int assignmentId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
+        return ASSIGNMENT_CACHE.get(assignmentId, id -> {
             String sql = "SELECT a.*, c.course_name, c.course_code, u.full_name as created_by_name " +
                         "FROM assignments a " +
                         "JOIN courses c ON a.course_id = c.course_id " +
                         "JOIN users u ON a.created_by = u.user_id " +
                         "WHERE a.assignment_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, assignmentId);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractAssignmentFromResultSet(rs);
-            }
-            return null;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+            return queryExecutor.queryOne(Route.PRIMARY, sql, ASSIGNMENT_MAPPER, id);
+        });
     }
     
     public boolean updateAssignment(Assignment assignment) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "UPDATE assignments SET title = ?, description = ?, " +
+                    "max_marks = ?, due_date = ? WHERE assignment_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE assignments SET title = ?, description = ?, " +
-                        "max_marks = ?, due_date = ? WHERE assignment_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, assignment.getTitle());
-            pstmt.setString(2, assignment.getDescription());
-            pstmt.setInt(3, assignment.getMaxMarks());
-            pstmt.setTimestamp(4, assignment.getDueDate());
-            pstmt.setInt(5, assignment.getAssignmentId());
-            
-            return pstmt.executeUpdate() > 0;
+            return queryExecutor.update(sql,
+                assignment.getTitle(), assignment.getDescription(), assignment.getMaxMarks(),
+                assignment.getDueDate(), assignment.getAssignmentId()) > 0;
         } finally {
-            closeResources(null, pstmt, conn);
+            ASSIGNMENT_CACHE.invalidate(assignment.getAssignmentId());
         }
     }
     
     public boolean deleteAssignment(int assignmentId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "UPDATE assignments SET is_active = FALSE WHERE assignment_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE assignments SET is_active = FALSE WHERE assignment_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, assignmentId);
-            
-            return pstmt.executeUpdate() > 0;
+            return queryExecutor.inTransaction(conn -> {
+                List<Assignment> current = QueryExecutor.queryList(conn,
+                    "SELECT assignment_id, course_id, is_active FROM assignments " +
+                    "WHERE assignment_id = ? FOR UPDATE", ASSIGNMENT_MAPPER, assignmentId);
+                if (current.isEmpty()) {
+                    return false;
+                }
+                QueryExecutor.update(conn, sql, assignmentId);
+                if (current.get(0).isActive()) {
+                    StatsChanges changes = new StatsChanges();
+                    changes.assignmentDeactivated(current.get(0).getCourseId());
+                    changes.apply(conn);
+                }
+                return true;
+            });
         } finally {
-            closeResources(null, pstmt, conn);
-        }
-    }
-    
-    private Assignment extractAssignmentFromResultSet(ResultSet rs) throws SQLException {
-        Assignment assignment = new Assignment();
-        assignment.setAssignmentId(rs.getInt("assignment_id"));
-        assignment.setCourseId(rs.getInt("course_id"));
-        assignment.setTitle(rs.getString("title"));
-        assignment.setDescription(rs.getString("description"));
-        assignment.setMaxMarks(rs.getInt("max_marks"));
-        assignment.setDueDate(rs.getTimestamp("due_date"));
-        assignment.setFilePath(rs.getString("file_path"));
-        assignment.setCreatedBy(rs.getInt("created_by"));
-        assignment.setActive(rs.getBoolean("is_active"));
-        assignment.setCreatedAt(rs.getTimestamp("created_at"));
-        
-        if (rs.getMetaData().getColumnCount() > 10) {
-            assignment.setCourseName(rs.getString("course_name"));
-            assignment.setCourseCode(rs.getString("course_code"));
-            assignment.setCreatedByName(rs.getString("created_by_name"));
-        }
-        
-        return assignment;
-    }
-    
-    private void closeResources(ResultSet rs, Statement stmt, Connection conn) {
-        try {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
-            if (conn != null) connectionPool.releaseConnection(conn);
-        } catch (SQLException e) {
-            System.err.println("Error closing resources: " + e.getMessage());
+            ASSIGNMENT_CACHE.invalidate(assignmentId);
         }
     }
 }
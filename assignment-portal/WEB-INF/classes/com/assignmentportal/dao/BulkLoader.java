@@ -0,0 +1,213 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.dao.QueryExecutor.Route;
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.CsvReader;
+import com.assignmentportal.util.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads CSV rows into one table in chunked transactions
+ * Input is read one record at a time. Each chunk of import.chunkSize valid rows
+ * is checked against the database by the subclass, inserted as one JDBC batch
+ * and committed. If the batch fails the chunk is rolled back and retried row by
+ * row, so every rejected row is reported with its line and the rest still load.
+ * The dashboard summary changes for the inserted rows commit with them.
+ */
+abstract class BulkLoader<R> {
+    private static final Logger LOG = Logger.getLogger(BulkLoader.class);
+
+    /**
+     * A parsed row waiting in the current chunk
+     */
+    static final class Entry<R> {
+        final int line;
+        final R row;
+        String rejection;
+
+        Entry(int line, R row) {
+            this.line = line;
+            this.row = row;
+        }
+
+        void reject(String message) {
+            if (rejection == null) {
+                rejection = message;
+            }
+        }
+    }
+
+    private final QueryExecutor queryExecutor;
+    private final String insertSql;
+    private final String[] header;
+    private final int chunkSize;
+
+    BulkLoader(QueryExecutor queryExecutor, String insertSql, String... header) {
+        this.queryExecutor = queryExecutor;
+        this.insertSql = insertSql;
+        this.header = header;
+        this.chunkSize = Math.max(1, AppConfig.getInt("import.chunkSize", 1000));
+    }
+
+    /**
+     * Validate and convert one record
+     * @throws IllegalArgumentException with the message to report for an invalid row
+     */
+    protected abstract R parse(String[] fields);
+
+    /**
+     * Check a chunk against the database before it is inserted, rejecting rows
+     * that would violate a constraint. Runs inside the chunk's transaction.
+     */
+    protected abstract void prepareChunk(Connection conn, List<Entry<R>> chunk) throws SQLException;
+
+    /**
+     * Parameters of the insert statement for one row
+     */
+    protected abstract Object[] params(R row);
+
+    /**
+     * Record the summary table changes for one inserted row
+     */
+    protected abstract void recordStats(R row, StatsChanges changes);
+
+    ImportResult load(Reader in) throws SQLException, IOException {
+        try {
+            return queryExecutor.execute(Route.WRITE, conn -> {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    return load(conn, new CsvReader(in));
+                } finally {
+                    try {
+                        conn.rollback();
+                        conn.setAutoCommit(autoCommit);
+                    } catch (SQLException e) {
+                        LOG.warn("Error ending import transaction: {}", e.getMessage());
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ImportResult load(Connection conn, CsvReader csv) throws SQLException {
+        ImportResult result = new ImportResult();
+        String[] fields = read(csv);
+        if (fields == null || !Arrays.asList(header).equals(lowerCase(fields))) {
+            result.reject(1, "Expected header: " + String.join(",", header));
+            return result;
+        }
+
+        List<Entry<R>> chunk = new ArrayList<>(chunkSize);
+        while ((fields = read(csv)) != null) {
+            result.rowRead();
+            try {
+                if (fields.length != header.length) {
+                    throw new IllegalArgumentException(
+                        "Expected " + header.length + " fields but found " + fields.length);
+                }
+                chunk.add(new Entry<>(csv.getRecordLine(), parse(fields)));
+            } catch (IllegalArgumentException e) {
+                result.reject(csv.getRecordLine(), e.getMessage());
+            }
+            if (chunk.size() == chunkSize) {
+                flush(conn, chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            flush(conn, chunk, result);
+        }
+        return result;
+    }
+
+    private void flush(Connection conn, List<Entry<R>> chunk, ImportResult result) throws SQLException {
+        prepareChunk(conn, chunk);
+        List<Entry<R>> accepted = new ArrayList<>(chunk.size());
+        for (Entry<R> entry : chunk) {
+            if (entry.rejection != null) {
+                result.reject(entry.line, entry.rejection);
+            } else {
+                accepted.add(entry);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement pstmt = conn.prepareStatement(insertSql);
+        try {
+            for (Entry<R> entry : accepted) {
+                QueryExecutor.bind(pstmt, params(entry.row));
+                pstmt.addBatch();
+            }
+            QueryExecutor.executeBatch(pstmt, insertSql);
+            applyStats(conn, accepted);
+            conn.commit();
+            result.imported(accepted.size());
+            return;
+        } catch (SQLException e) {
+            // A rewritten batch fails as a whole, so find the bad rows one at a time
+            conn.rollback();
+            pstmt.clearBatch();
+            LOG.debug("Batch of {} rows failed ({}), retrying row by row", accepted.size(), e.getMessage());
+        } finally {
+            QueryExecutor.close(null, pstmt);
+        }
+        insertEach(conn, accepted, result);
+    }
+
+    private void insertEach(Connection conn, List<Entry<R>> rows, ImportResult result) throws SQLException {
+        // The pool's statement cache keeps the INSERT prepared between rows
+        for (Entry<R> entry : rows) {
+            try {
+                QueryExecutor.update(conn, insertSql, params(entry.row));
+                applyStats(conn, Collections.singletonList(entry));
+                conn.commit();
+                result.imported(1);
+            } catch (SQLException e) {
+                if (e.getSQLState() != null && e.getSQLState().startsWith("08")) {
+                    throw e; // connection failure, not a bad row
+                }
+                conn.rollback();
+                result.reject(entry.line, "Rejected by database: " + e.getMessage());
+            }
+        }
+    }
+
+    private void applyStats(Connection conn, List<Entry<R>> rows) throws SQLException {
+        StatsChanges changes = new StatsChanges();
+        for (Entry<R> entry : rows) {
+            recordStats(entry.row, changes);
+        }
+        changes.apply(conn);
+    }
+
+    private static String[] read(CsvReader csv) {
+        try {
+            return csv.readRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> lowerCase(String[] fields) {
+        List<String> names = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            names.add(field.toLowerCase());
+        }
+        return names;
+    }
+}
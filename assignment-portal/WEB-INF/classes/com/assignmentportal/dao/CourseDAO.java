@@ -1,202 +1,192 @@
 package com.assignmentportal.dao;
 
+import com.assignmentportal.dao.QueryExecutor.Route;
 import com.assignmentportal.model.Course;
 import com.assignmentportal.util.DatabaseConnectionPool;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 public class CourseDAO {
-    private DatabaseConnectionPool connectionPool;
+    private enum Column {
+        COURSE_ID, COURSE_CODE, COURSE_NAME, DESCRIPTION, TEACHER_ID, IS_ACTIVE, CREATED_AT,
+        TEACHER_NAME
+    }
+    
+    private static final RowMapper<Course> COURSE_MAPPER = new RowMapper<Course>(Column.class) {
+        @Override
+        protected Course mapRow(Row row) throws SQLException {
+            Course course = new Course();
+            course.setCourseId(row.getInt(Column.COURSE_ID));
+            course.setCourseCode(row.getString(Column.COURSE_CODE));
+            course.setCourseName(row.getString(Column.COURSE_NAME));
+            course.setDescription(row.getString(Column.DESCRIPTION));
+            course.setTeacherId(row.getInt(Column.TEACHER_ID));
+            course.setActive(row.getBoolean(Column.IS_ACTIVE));
+            course.setCreatedAt(row.getTimestamp(Column.CREATED_AT));
+            course.setTeacherName(row.getString(Column.TEACHER_NAME));
+            return course;
+        }
+    };
+    
+    private static final Function<Course, String> COURSE_POSITION =
+        course -> PageToken.encode(course.getCourseCode(), course.getCourseId());
+    
+    private static final EntityCache<Integer, Course> COURSE_CACHE = new EntityCache<>("courses");
+    
+    private static final EntityCache<Integer, List<Course>> TEACHER_COURSES_CACHE =
+        new EntityCache<>("teacher_courses");
+    
+    private final QueryExecutor queryExecutor;
     
     public CourseDAO() {
-        this.connectionPool = DatabaseConnectionPool.getInstance();
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
     }
     
     public boolean createCourse(Course course) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "INSERT INTO courses (course_code, course_name, description, teacher_id) " +
+                    "VALUES (?, ?, ?, ?)";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "INSERT INTO courses (course_code, course_name, description, teacher_id) " +
-                        "VALUES (?, ?, ?, ?)";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, course.getCourseCode());
-            pstmt.setString(2, course.getCourseName());
-            pstmt.setString(3, course.getDescription());
-            pstmt.setInt(4, course.getTeacherId());
-            
-            return pstmt.executeUpdate() > 0;
+            return queryExecutor.inTransaction(conn -> {
+                int courseId = QueryExecutor.insert(conn, sql,
+                    course.getCourseCode(), course.getCourseName(), course.getDescription(),
+                    course.getTeacherId());
+                if (courseId <= 0) {
+                    return false;
+                }
+                StatsChanges changes = new StatsChanges();
+                changes.courseAdded(courseId);
+                changes.apply(conn);
+                return true;
+            });
         } finally {
-            closeResources(null, pstmt, conn);
+            TEACHER_COURSES_CACHE.invalidate(course.getTeacherId());
         }
     }
     
     public List<Course> getAllCourses() throws SQLException {
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
-        List<Course> courses = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
+        String sql = "SELECT c.*, u.full_name as teacher_name " +
+                    "FROM courses c " +
+                    "JOIN users u ON c.teacher_id = u.user_id " +
+                    "WHERE c.is_active = TRUE " +
+                    "ORDER BY c.course_code";
+        return queryExecutor.queryList(Route.READ, sql, COURSE_MAPPER);
+    }
+    
+    /**
+     * One page of all active courses, by course code
+     * @param pageToken token from the previous page, or null for the first page
+     */
+    public Page<Course> getCoursesPage(String pageToken, int pageSize) throws SQLException {
+        PageToken after = PageToken.decode(pageToken);
+        if (after == null) {
             String sql = "SELECT c.*, u.full_name as teacher_name " +
                         "FROM courses c " +
                         "JOIN users u ON c.teacher_id = u.user_id " +
                         "WHERE c.is_active = TRUE " +
-                        "ORDER BY c.course_code";
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
-            
-            while (rs.next()) {
-                courses.add(extractCourseFromResultSet(rs));
-            }
-            return courses;
-        } finally {
-            closeResources(rs, stmt, conn);
+                        "ORDER BY c.course_code, c.course_id LIMIT ?";
+            return queryExecutor.queryPage(Route.READ, sql, COURSE_MAPPER, pageSize, COURSE_POSITION);
         }
+        String sql = "SELECT c.*, u.full_name as teacher_name " +
+                    "FROM courses c " +
+                    "JOIN users u ON c.teacher_id = u.user_id " +
+                    "WHERE c.is_active = TRUE AND (c.course_code, c.course_id) > (?, ?) " +
+                    "ORDER BY c.course_code, c.course_id LIMIT ?";
+        return queryExecutor.queryPage(Route.READ, sql, COURSE_MAPPER, pageSize, COURSE_POSITION,
+            after.getSortKey(), after.getId());
     }
     
+    /**
+     * A teacher's active courses, served from the entity cache when possible
+     * Loaded from the primary, so a lagging replica cannot put stale courses
+     * in the cache after an invalidation. The returned list is shared and
+     * cannot be modified.
+     */
     public List<Course> getCoursesByTeacher(int teacherId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<Course> courses = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
+        return TEACHER_COURSES_CACHE.get(teacherId, id -> {
             String sql = "SELECT c.*, u.full_name as teacher_name " +
                         "FROM courses c " +
                         "JOIN users u ON c.teacher_id = u.user_id " +
                         "WHERE c.teacher_id = ? AND c.is_active = TRUE " +
                         "ORDER BY c.course_code";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, teacherId);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                courses.add(extractCourseFromResultSet(rs));
+            return Collections.unmodifiableList(
+                queryExecutor.queryList(Route.PRIMARY, sql, COURSE_MAPPER, id));
+        });
+    }
+    
+    /**
+     * ID of one of the teacher's active courses by code, or -1 if the teacher has no such course
+     */
+    public int findTeacherCourseId(int teacherId, String courseCode) throws SQLException {
+        for (Course course : getCoursesByTeacher(teacherId)) {
+            if (course.getCourseCode().equals(courseCode)) {
+                return course.getCourseId();
             }
-            return courses;
-        } finally {
-            closeResources(rs, pstmt, conn);
         }
+        return -1;
     }
     
     public List<Course> getCoursesByStudent(int studentId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<Course> courses = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT c.*, u.full_name as teacher_name " +
-                        "FROM courses c " +
-                        "JOIN users u ON c.teacher_id = u.user_id " +
-                        "JOIN enrollments e ON c.course_id = e.course_id " +
-                        "WHERE e.student_id = ? AND e.status = 'ACTIVE' AND c.is_active = TRUE " +
-                        "ORDER BY c.course_code";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, studentId);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                courses.add(extractCourseFromResultSet(rs));
-            }
-            return courses;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT c.*, u.full_name as teacher_name " +
+                    "FROM courses c " +
+                    "JOIN users u ON c.teacher_id = u.user_id " +
+                    "JOIN enrollments e ON c.course_id = e.course_id " +
+                    "WHERE e.student_id = ? AND e.status = 'ACTIVE' AND c.is_active = TRUE " +
+                    "ORDER BY c.course_code";
+        return queryExecutor.queryList(Route.READ, sql, COURSE_MAPPER, studentId);
     }
     
+    /**
+     * Get course by ID, served from the entity cache when possible
+     * The returned object is shared and must not be modified.
+     */
     public Course getCourseById(int courseId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
+        return COURSE_CACHE.get(courseId, id -> {
             String sql = "SELECT c.*, u.full_name as teacher_name " +
                         "FROM courses c " +
                         "JOIN users u ON c.teacher_id = u.user_id " +
                         "WHERE c.course_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, courseId);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractCourseFromResultSet(rs);
-            }
-            return null;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+            return queryExecutor.queryOne(Route.PRIMARY, sql, COURSE_MAPPER, id);
+        });
     }
     
     public boolean updateCourse(Course course) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "UPDATE courses SET course_code = ?, course_name = ?, " +
+                    "description = ?, teacher_id = ? WHERE course_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE courses SET course_code = ?, course_name = ?, " +
-                        "description = ?, teacher_id = ? WHERE course_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, course.getCourseCode());
-            pstmt.setString(2, course.getCourseName());
-            pstmt.setString(3, course.getDescription());
-            pstmt.setInt(4, course.getTeacherId());
-            pstmt.setInt(5, course.getCourseId());
-            
-            return pstmt.executeUpdate() > 0;
+            return queryExecutor.update(sql,
+                course.getCourseCode(), course.getCourseName(), course.getDescription(),
+                course.getTeacherId(), course.getCourseId()) > 0;
         } finally {
-            closeResources(null, pstmt, conn);
+            // The previous teacher is unknown here, so drop every teacher's list
+            COURSE_CACHE.invalidate(course.getCourseId());
+            TEACHER_COURSES_CACHE.invalidateAll();
         }
     }
     
     public boolean deleteCourse(int courseId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "UPDATE courses SET is_active = FALSE WHERE course_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE courses SET is_active = FALSE WHERE course_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, courseId);
-            
-            return pstmt.executeUpdate() > 0;
+            return queryExecutor.inTransaction(conn -> {
+                List<Course> current = QueryExecutor.queryList(conn,
+                    "SELECT course_id, is_active FROM courses WHERE course_id = ? FOR UPDATE",
+                    COURSE_MAPPER, courseId);
+                if (current.isEmpty()) {
+                    return false;
+                }
+                QueryExecutor.update(conn, sql, courseId);
+                if (current.get(0).isActive()) {
+                    StatsChanges changes = new StatsChanges();
+                    changes.courseDeactivated();
+                    changes.apply(conn);
+                }
+                return true;
+            });
         } finally {
-            closeResources(null, pstmt, conn);
-        }
-    }
-    
-    private Course extractCourseFromResultSet(ResultSet rs) throws SQLException {
-        Course course = new Course();
-        course.setCourseId(rs.getInt("course_id"));
-        course.setCourseCode(rs.getString("course_code"));
-        course.setCourseName(rs.getString("course_name"));
-        course.setDescription(rs.getString("description"));
-        course.setTeacherId(rs.getInt("teacher_id"));
-        course.setActive(rs.getBoolean("is_active"));
-        course.setCreatedAt(rs.getTimestamp("created_at"));
-        
-        try {
-            course.setTeacherName(rs.getString("teacher_name"));
-        } catch (SQLException e) { }
-        
-        return course;
-    }
-    
-    private void closeResources(ResultSet rs, Statement stmt, Connection conn) {
-        try {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
-            if (conn != null) connectionPool.releaseConnection(conn);
-        } catch (SQLException e) {
-            System.err.println("Error closing resources: " + e.getMessage());
+            COURSE_CACHE.invalidate(courseId);
+            TEACHER_COURSES_CACHE.invalidateAll();
         }
     }
 }
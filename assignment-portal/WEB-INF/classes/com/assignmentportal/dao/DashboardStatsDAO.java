@@ -0,0 +1,116 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.dao.QueryExecutor.Route;
+import com.assignmentportal.model.CourseProgress;
+import com.assignmentportal.model.SystemStats;
+import com.assignmentportal.util.DatabaseConnectionPool;
+
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dashboard Stats Data Access Object
+ * Reads the summary tables (system_stats, course_stats, assignment_stats,
+ * student_course_stats) that the other DAOs keep up to date on every write,
+ * so dashboard counts are key lookups instead of aggregates over the base
+ * tables. Per-assignment counts come with AssignmentDAO.getAssignmentsByTeacher.
+ */
+public class DashboardStatsDAO {
+    private enum Column {
+        STAT_NAME, STAT_VALUE,
+        STUDENT_ID, COURSE_ID, COURSE_CODE, COURSE_NAME, TOTAL_ASSIGNMENTS,
+        SUBMITTED_COUNT, GRADED_COUNT, MARKS_TOTAL
+    }
+    
+    private static final RowMapper<CourseProgress> PROGRESS_MAPPER = new RowMapper<CourseProgress>(Column.class) {
+        @Override
+        protected CourseProgress mapRow(Row row) throws SQLException {
+            CourseProgress progress = new CourseProgress();
+            progress.setStudentId(row.getInt(Column.STUDENT_ID));
+            progress.setCourseId(row.getInt(Column.COURSE_ID));
+            progress.setCourseCode(row.getString(Column.COURSE_CODE));
+            progress.setCourseName(row.getString(Column.COURSE_NAME));
+            progress.setTotalAssignments(row.getInt(Column.TOTAL_ASSIGNMENTS));
+            progress.setSubmittedCount(row.getInt(Column.SUBMITTED_COUNT));
+            progress.setGradedCount(row.getInt(Column.GRADED_COUNT));
+            progress.setMarksTotal(row.getLong(Column.MARKS_TOTAL));
+            return progress;
+        }
+    };
+    
+    private static final RowMapper<Map.Entry<String, Long>> STAT_MAPPER =
+        new RowMapper<Map.Entry<String, Long>>(Column.class) {
+            @Override
+            protected Map.Entry<String, Long> mapRow(Row row) throws SQLException {
+                return new AbstractMap.SimpleImmutableEntry<>(row.getString(Column.STAT_NAME),
+                    row.getLong(Column.STAT_VALUE));
+            }
+        };
+    
+    private final QueryExecutor queryExecutor;
+    
+    public DashboardStatsDAO() {
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
+        // Fills in the summary tables on first use and keeps them in line
+        StatsReconciler.getInstance();
+    }
+    
+    /**
+     * Site-wide counts for the admin dashboard
+     */
+    public SystemStats getSystemStats() throws SQLException {
+        Map<String, Long> values = new HashMap<>();
+        for (Map.Entry<String, Long> stat : queryExecutor.queryList(Route.READ,
+                "SELECT stat_name, SUM(stat_value) AS stat_value FROM system_stats GROUP BY stat_name",
+                STAT_MAPPER)) {
+            values.put(stat.getKey(), stat.getValue());
+        }
+        SystemStats stats = new SystemStats();
+        stats.setTotalUsers(values.getOrDefault(StatsChanges.USERS, 0L));
+        stats.setActiveStudents(values.getOrDefault(StatsChanges.ACTIVE_STUDENTS, 0L));
+        stats.setActiveTeachers(values.getOrDefault(StatsChanges.ACTIVE_TEACHERS, 0L));
+        stats.setActiveCourses(values.getOrDefault(StatsChanges.ACTIVE_COURSES, 0L));
+        stats.setActiveAssignments(values.getOrDefault(StatsChanges.ACTIVE_ASSIGNMENTS, 0L));
+        stats.setTotalSubmissions(values.getOrDefault(StatsChanges.SUBMISSIONS, 0L));
+        stats.setGradedSubmissions(values.getOrDefault(StatsChanges.GRADED_SUBMISSIONS, 0L));
+        return stats;
+    }
+    
+    /**
+     * A student's progress in each active enrollment, ordered by course code
+     */
+    public List<CourseProgress> getCourseProgress(int studentId) throws SQLException {
+        String sql = "SELECT st.student_id, st.course_id, c.course_code, c.course_name, " +
+                    "cs.assignment_count as total_assignments, st.submitted_count, " +
+                    "st.graded_count, st.marks_total " +
+                    "FROM student_course_stats st " +
+                    "JOIN enrollments e ON e.student_id = st.student_id AND e.course_id = st.course_id " +
+                    "JOIN courses c ON st.course_id = c.course_id " +
+                    "JOIN course_stats cs ON st.course_id = cs.course_id " +
+                    "WHERE st.student_id = ? AND e.status = 'ACTIVE' " +
+                    "ORDER BY c.course_code";
+        return queryExecutor.queryList(Route.READ, sql, PROGRESS_MAPPER, studentId);
+    }
+    
+    /**
+     * Active enrollments across a teacher's active courses
+     * A student enrolled in two of the courses counts twice.
+     */
+    public int getEnrollmentCountByTeacher(int teacherId) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(cs.enrollment_count), 0) FROM course_stats cs " +
+                    "JOIN courses c ON cs.course_id = c.course_id " +
+                    "WHERE c.teacher_id = ? AND c.is_active = TRUE";
+        return queryExecutor.queryInt(Route.READ, sql, teacherId);
+    }
+    
+    /**
+     * Rebuild the summary tables from the base tables now, on the caller's thread
+     * @return number of summary rows created or corrected
+     */
+    public int reconcile() throws SQLException {
+        return StatsReconciler.getInstance().reconcile();
+    }
+}
@@ -0,0 +1,191 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.dao.QueryExecutor.Route;
+import com.assignmentportal.model.Enrollment;
+import com.assignmentportal.util.DatabaseConnectionPool;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Enrollment Data Access Object
+ * Handles enrolling students in courses, one at a time or from a CSV roster
+ */
+public class EnrollmentDAO {
+    private enum Column {
+        ENROLLMENT_ID, STUDENT_ID, COURSE_ID, ENROLLMENT_DATE, STATUS,
+        STUDENT_NAME, STUDENT_EMAIL, STUDENT_USERNAME, COURSE_CODE, COURSE_NAME
+    }
+    
+    private static final RowMapper<Enrollment> ENROLLMENT_MAPPER = new RowMapper<Enrollment>(Column.class) {
+        @Override
+        protected Enrollment mapRow(Row row) throws SQLException {
+            Enrollment enrollment = new Enrollment();
+            enrollment.setEnrollmentId(row.getInt(Column.ENROLLMENT_ID));
+            enrollment.setStudentId(row.getInt(Column.STUDENT_ID));
+            enrollment.setCourseId(row.getInt(Column.COURSE_ID));
+            enrollment.setEnrollmentDate(row.getTimestamp(Column.ENROLLMENT_DATE));
+            enrollment.setStatus(row.getString(Column.STATUS));
+            
+            // Joined columns
+            enrollment.setStudentName(row.getString(Column.STUDENT_NAME));
+            enrollment.setStudentEmail(row.getString(Column.STUDENT_EMAIL));
+            enrollment.setStudentUsername(row.getString(Column.STUDENT_USERNAME));
+            enrollment.setCourseCode(row.getString(Column.COURSE_CODE));
+            enrollment.setCourseName(row.getString(Column.COURSE_NAME));
+            return enrollment;
+        }
+    };
+    
+    private final QueryExecutor queryExecutor;
+    
+    public EnrollmentDAO() {
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
+    }
+    
+    /**
+     * Enroll a student in a course
+     */
+    public boolean enrollStudent(int studentId, int courseId) throws SQLException {
+        String sql = "INSERT INTO enrollments (student_id, course_id, status) VALUES (?, ?, 'ACTIVE')";
+        return queryExecutor.inTransaction(conn -> {
+            if (QueryExecutor.update(conn, sql, studentId, courseId) == 0) {
+                return false;
+            }
+            StatsChanges changes = new StatsChanges();
+            changes.enrollmentAdded(studentId, courseId);
+            changes.apply(conn);
+            return true;
+        });
+    }
+    
+    public boolean isEnrolled(int studentId, int courseId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM enrollments " +
+                    "WHERE student_id = ? AND course_id = ? AND status = 'ACTIVE'";
+        return queryExecutor.queryInt(Route.PRIMARY, sql, studentId, courseId) > 0;
+    }
+    
+    public List<Enrollment> getEnrollmentsByCourse(int courseId) throws SQLException {
+        String sql = "SELECT e.*, u.full_name as student_name, u.email as student_email, " +
+                    "u.username as student_username, c.course_code, c.course_name " +
+                    "FROM enrollments e " +
+                    "JOIN users u ON e.student_id = u.user_id " +
+                    "JOIN courses c ON e.course_id = c.course_id " +
+                    "WHERE e.course_id = ? " +
+                    "ORDER BY u.username";
+        return queryExecutor.queryList(Route.READ, sql, ENROLLMENT_MAPPER, courseId);
+    }
+    
+    /**
+     * Import enrollments from CSV with the header username,course_code
+     * Each username must belong to a student and each course code to an active
+     * course; rows for existing enrollments are reported and skipped.
+     */
+    public ImportResult importEnrollments(Reader csv) throws SQLException, IOException {
+        return new EnrollmentLoader(queryExecutor).load(csv);
+    }
+    
+    /**
+     * Resolves a chunk's usernames and course codes with one query each and
+     * checks for existing enrollments with a third, instead of per-row lookups
+     */
+    private static final class EnrollmentLoader extends BulkLoader<Enrollment> {
+        EnrollmentLoader(QueryExecutor queryExecutor) {
+            super(queryExecutor,
+                "INSERT INTO enrollments (student_id, course_id, status) VALUES (?, ?, 'ACTIVE')",
+                "username", "course_code");
+        }
+        
+        @Override
+        protected Enrollment parse(String[] fields) {
+            if (fields[0].isEmpty() || fields[1].isEmpty()) {
+                throw new IllegalArgumentException("Username and course code are required");
+            }
+            Enrollment enrollment = new Enrollment();
+            enrollment.setStudentUsername(fields[0]);
+            enrollment.setCourseCode(fields[1].toUpperCase());
+            return enrollment;
+        }
+        
+        @Override
+        protected void prepareChunk(Connection conn, List<Entry<Enrollment>> chunk) throws SQLException {
+            Set<String> usernames = new LinkedHashSet<>();
+            Set<String> courseCodes = new LinkedHashSet<>();
+            for (Entry<Enrollment> entry : chunk) {
+                usernames.add(entry.row.getStudentUsername());
+                courseCodes.add(entry.row.getCourseCode());
+            }
+            
+            Map<String, Integer> studentIds = new HashMap<>();
+            for (Enrollment e : QueryExecutor.queryList(conn,
+                    "SELECT user_id as student_id, username as student_username FROM users " +
+                    "WHERE role = 'STUDENT' AND username IN (" + QueryExecutor.placeholders(usernames.size()) + ")",
+                    ENROLLMENT_MAPPER, usernames.toArray())) {
+                studentIds.put(e.getStudentUsername(), e.getStudentId());
+            }
+            Map<String, Integer> courseIds = new HashMap<>();
+            for (Enrollment e : QueryExecutor.queryList(conn,
+                    "SELECT course_id, course_code FROM courses " +
+                    "WHERE is_active = TRUE AND course_code IN (" + QueryExecutor.placeholders(courseCodes.size()) + ")",
+                    ENROLLMENT_MAPPER, courseCodes.toArray())) {
+                courseIds.put(e.getCourseCode(), e.getCourseId());
+            }
+            
+            for (Entry<Enrollment> entry : chunk) {
+                Integer studentId = studentIds.get(entry.row.getStudentUsername());
+                Integer courseId = courseIds.get(entry.row.getCourseCode());
+                if (studentId == null) {
+                    entry.reject("Unknown student " + entry.row.getStudentUsername());
+                } else if (courseId == null) {
+                    entry.reject("Unknown or inactive course " + entry.row.getCourseCode());
+                } else {
+                    entry.row.setStudentId(studentId);
+                    entry.row.setCourseId(courseId);
+                }
+            }
+            
+            Set<Long> existing = new HashSet<>();
+            if (!studentIds.isEmpty() && !courseIds.isEmpty()) {
+                List<Object> params = new ArrayList<>(studentIds.values());
+                params.addAll(courseIds.values());
+                for (Enrollment e : QueryExecutor.queryList(conn,
+                        "SELECT student_id, course_id FROM enrollments " +
+                        "WHERE student_id IN (" + QueryExecutor.placeholders(studentIds.size()) + ") " +
+                        "AND course_id IN (" + QueryExecutor.placeholders(courseIds.size()) + ")",
+                        ENROLLMENT_MAPPER, params.toArray())) {
+                    existing.add(pair(e.getStudentId(), e.getCourseId()));
+                }
+            }
+            for (Entry<Enrollment> entry : chunk) {
+                if (entry.rejection == null
+                        && !existing.add(pair(entry.row.getStudentId(), entry.row.getCourseId()))) {
+                    entry.reject("Already enrolled: " + entry.row.getStudentUsername() +
+                        " in " + entry.row.getCourseCode());
+                }
+            }
+        }
+        
+        @Override
+        protected Object[] params(Enrollment enrollment) {
+            return new Object[] { enrollment.getStudentId(), enrollment.getCourseId() };
+        }
+        
+        @Override
+        protected void recordStats(Enrollment enrollment, StatsChanges changes) {
+            changes.enrollmentAdded(enrollment.getStudentId(), enrollment.getCourseId());
+        }
+        
+        private static long pair(int studentId, int courseId) {
+            return ((long) studentId << 32) | (courseId & 0xffffffffL);
+        }
+    }
+}
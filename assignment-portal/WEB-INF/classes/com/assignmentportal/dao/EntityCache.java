@@ -0,0 +1,145 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.MetricsRegistry;
+import com.assignmentportal.util.MetricsSource;
+
+import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of rarely changing DAO results, bounded by entry count
+ * (least recently used entries go first) and by a time to live
+ *
+ * Settings are cache.maxEntries and cache.ttlSeconds, each overridable per
+ * cache as cache.<name>.maxEntries / cache.<name>.ttlSeconds; cache.enabled=false
+ * turns every cache into a pass-through. Writers must call invalidate() after
+ * changing a row. A load that overlaps an invalidation is returned but not
+ * cached, so it cannot put back the value the writer just replaced.
+ * Cached objects are shared between requests and must not be modified.
+ */
+final class EntityCache<K, V> implements MetricsSource {
+
+    /**
+     * Reads the value for a key from the database on a miss
+     */
+    interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private static final class Cached<V> {
+        final V value;
+        final long expiresAt;
+
+        Cached(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LinkedHashMap<K, Cached<V>> entries;
+    private long generation;
+
+    EntityCache(String name) {
+        this.name = name;
+        this.enabled = AppConfig.getBoolean("cache.enabled", true);
+        this.maxEntries = Math.max(1, AppConfig.getInt("cache." + name + ".maxEntries",
+            AppConfig.getInt("cache.maxEntries", 1000)));
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(AppConfig.getLong("cache." + name + ".ttlSeconds",
+            AppConfig.getLong("cache.ttlSeconds", 300)));
+        this.entries = new LinkedHashMap<K, Cached<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Cached<V>> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        MetricsRegistry.register(this);
+    }
+
+    /**
+     * Cached value for the key, loading it on a miss
+     * Null results are not cached.
+     */
+    V get(K key, Loader<K, V> loader) throws SQLException {
+        if (!enabled) {
+            return loader.load(key);
+        }
+
+        long loadGeneration;
+        synchronized (this) {
+            Cached<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+            }
+            loadGeneration = generation;
+        }
+
+        misses.increment();
+        V value = loader.load(key);
+        if (value != null) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(key, new Cached<>(value, System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+        return value;
+    }
+
+    synchronized void invalidate(K key) {
+        entries.remove(key);
+        generation++;
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+        generation++;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Fraction of lookups served from the cache, 0 before the first lookup
+     */
+    double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public void writeMetrics(PrintWriter out) {
+        String labels = "cache=\"" + name + "\"";
+        out.println("# TYPE app_cache_hits_total counter");
+        out.println("app_cache_hits_total{" + labels + "} " + hits.sum());
+        out.println("# TYPE app_cache_misses_total counter");
+        out.println("app_cache_misses_total{" + labels + "} " + misses.sum());
+        out.println("# TYPE app_cache_evictions_total counter");
+        out.println("app_cache_evictions_total{" + labels + "} " + evictions.sum());
+        out.println("# TYPE app_cache_hit_ratio gauge");
+        out.println("app_cache_hit_ratio{" + labels + "} " + getHitRate());
+        out.println("# TYPE app_cache_entries gauge");
+        out.println("app_cache_entries{" + labels + "} " + size());
+    }
+}
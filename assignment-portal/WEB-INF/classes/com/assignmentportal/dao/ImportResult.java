@@ -0,0 +1,87 @@
+package com.assignmentportal.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk CSV import: row counts and the rows that were rejected
+ * Only the first MAX_REPORTED_ERRORS rejections are kept; getErrorCount()
+ * still counts all of them.
+ */
+public final class ImportResult {
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * A rejected input row
+     */
+    public static final class RowError {
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /** Line of the CSV input the row starts on (the header is line 1) */
+        public int getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    private final List<RowError> errors = new ArrayList<>();
+    private int rowsRead;
+    private int rowsImported;
+    private int errorCount;
+
+    /** Data rows read, not counting the header */
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    public int getRowsImported() {
+        return rowsImported;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void imported(int rows) {
+        rowsImported += rows;
+    }
+
+    void reject(int line, String message) {
+        errorCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "rowsRead=" + rowsRead +
+                ", rowsImported=" + rowsImported +
+                ", errorCount=" + errorCount +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.assignmentportal.dao;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated list
+ * Pass getNextPageToken() back to the same DAO method to get the next page
+ */
+public final class Page<T> {
+    /** Upper bound on any requested page size */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final List<T> items;
+    private final String nextPageToken;
+
+    Page(List<T> items, String nextPageToken) {
+        this.items = items;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Opaque token for the following page, or null on the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    /**
+     * The token if it is one the DAOs accept, otherwise null; check a token
+     * taken from the request before echoing it back into a link
+     */
+    public static String validToken(String token) {
+        return PageToken.decode(token) != null ? token : null;
+    }
+}
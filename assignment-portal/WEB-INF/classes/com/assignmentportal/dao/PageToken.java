@@ -0,0 +1,65 @@
+package com.assignmentportal.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a page: its sort key plus its id as a tie-breaker
+ * Clients only ever see the URL-safe Base64 form.
+ */
+final class PageToken {
+    private final String sortKey;
+    private final int id;
+
+    private PageToken(String sortKey, int id) {
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    static String encode(Object sortKey, int id) {
+        String payload = sortKey + "\n" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded position, or null for a missing or malformed token
+     *         (callers then start from the first page)
+     */
+    static PageToken decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = payload.lastIndexOf('\n');
+            if (separator < 0) {
+                return null;
+            }
+            return new PageToken(payload.substring(0, separator),
+                Integer.parseInt(payload.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    String getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * Sort key as a timestamp, or null if it is not one
+     */
+    Timestamp getTimestampKey() {
+        try {
+            return Timestamp.valueOf(sortKey);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+}
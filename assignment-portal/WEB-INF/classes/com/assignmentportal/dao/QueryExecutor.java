@@ -0,0 +1,417 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.DatabaseConnectionPool;
+import com.assignmentportal.util.Logger;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs DAO statements: borrows a connection for the chosen route, binds
+ * parameters, maps rows and always closes the statement and returns the
+ * connection to the pool. Every execution is reported to QueryStats.
+ */
+final class QueryExecutor {
+    private static final Logger LOG = Logger.getLogger(QueryExecutor.class);
+
+    /**
+     * Which pool connection a statement runs on
+     */
+    enum Route {
+        /** Primary database */
+        PRIMARY,
+        /** Read replica when configured, unless the caller just wrote */
+        READ,
+        /** Primary database, and pins the caller's next reads to it */
+        WRITE
+    }
+
+    /**
+     * Work done on a borrowed connection
+     */
+    interface ConnectionCallback<R> {
+        R doInConnection(Connection conn) throws SQLException;
+    }
+
+    /** Rows per round trip for streamed queries */
+    private static final int STREAM_FETCH_SIZE = AppConfig.getInt("db.streamFetchSize", 1000);
+
+    private final DatabaseConnectionPool connectionPool;
+
+    QueryExecutor(DatabaseConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Run work on one connection and release it afterwards
+     */
+    <R> R execute(Route route, ConnectionCallback<R> callback) throws SQLException {
+        Connection conn = borrow(route);
+        try {
+            return callback.doInConnection(conn);
+        } finally {
+            connectionPool.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * Run work as one transaction on the primary
+     * Commits when the callback returns and rolls back when it throws; the
+     * connection goes back to the pool with autocommit restored either way.
+     */
+    <R> R inTransaction(ConnectionCallback<R> callback) throws SQLException {
+        return execute(Route.WRITE, conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            boolean committed = false;
+            try {
+                R result = callback.doInConnection(conn);
+                conn.commit();
+                committed = true;
+                return result;
+            } finally {
+                try {
+                    if (!committed) {
+                        conn.rollback();
+                    }
+                    conn.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    LOG.warn("Error ending transaction: {}", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Every row of a query
+     */
+    <T> List<T> queryList(Route route, String sql, RowMapper<T> mapper, Object... params)
+            throws SQLException {
+        return execute(route, conn -> queryList(conn, sql, mapper, params));
+    }
+
+    /**
+     * Every row of a query on a connection the caller already holds
+     */
+    static <T> List<T> queryList(Connection conn, String sql, RowMapper<T> mapper, Object... params)
+            throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        ResultSet rs = null;
+        QueryStats.Sample sample = QueryStats.start();
+        long rows = -1;
+        try {
+            bind(pstmt, params);
+            rs = pstmt.executeQuery();
+            List<T> results = new ArrayList<>();
+            Row row = mapper.bind(sql, rs);
+            while (rs.next()) {
+                results.add(mapper.mapRow(row));
+            }
+            rows = results.size();
+            return results;
+        } finally {
+            close(rs, pstmt);
+            QueryStats.finish(sample, sql, params, rows);
+        }
+    }
+
+    /**
+     * One page of a keyset query
+     * The SQL must end with "LIMIT ?"; one row more than the page size is
+     * fetched to tell whether another page follows.
+     * @param positionOf page token for the position after a row
+     */
+    <T> Page<T> queryPage(Route route, String sql, RowMapper<T> mapper, int pageSize,
+                          Function<T, String> positionOf, Object... params) throws SQLException {
+        int size = Math.max(1, Math.min(pageSize, Page.MAX_PAGE_SIZE));
+        Object[] withLimit = Arrays.copyOf(params, params.length + 1);
+        withLimit[params.length] = size + 1;
+
+        List<T> rows = queryList(route, sql, mapper, withLimit);
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, size));
+        return new Page<>(items, positionOf.apply(items.get(size - 1)));
+    }
+
+    /**
+     * Every row of a query, handed to the callback as it is read
+     * The driver keeps only one fetch of rows in memory: a server-side cursor
+     * on PostgreSQL (autocommit off plus a fetch size) and row-by-row streaming
+     * on MySQL. The connection is held until the last row has been processed.
+     * @return number of rows processed
+     */
+    <T> long stream(Route route, String sql, RowMapper<T> mapper, RowCallback<T> callback,
+                    Object... params) throws SQLException, IOException {
+        Connection conn = borrow(route);
+        boolean autoCommit = true;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        QueryStats.Sample sample = QueryStats.start();
+        long rows = -1;
+        try {
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(streamFetchSize(conn));
+            bind(pstmt, params);
+            rs = pstmt.executeQuery();
+            Row row = mapper.bind(sql, rs);
+            long count = 0;
+            while (rs.next()) {
+                T item = mapper.mapRow(row);
+                if (sample == null) {
+                    callback.processRow(item);
+                } else {
+                    // Time spent in the callback (a slow client, say) is not query time
+                    long callbackStart = System.nanoTime();
+                    try {
+                        callback.processRow(item);
+                    } finally {
+                        sample.exclude(System.nanoTime() - callbackStart);
+                    }
+                }
+                count++;
+            }
+            rows = count;
+            return count;
+        } finally {
+            close(rs, pstmt);
+            QueryStats.finish(sample, sql, params, rows);
+            endStream(conn, autoCommit);
+            connectionPool.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * First row of a query, or null when there is none
+     */
+    <T> T queryOne(Route route, String sql, RowMapper<T> mapper, Object... params)
+            throws SQLException {
+        return execute(route, conn -> {
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            ResultSet rs = null;
+            QueryStats.Sample sample = QueryStats.start();
+            long rows = -1;
+            try {
+                bind(pstmt, params);
+                rs = pstmt.executeQuery();
+                T result = rs.next() ? mapper.mapRow(mapper.bind(sql, rs)) : null;
+                rows = result != null ? 1 : 0;
+                return result;
+            } finally {
+                close(rs, pstmt);
+                QueryStats.finish(sample, sql, params, rows);
+            }
+        });
+    }
+
+    /**
+     * First column of the first row as an int (e.g. COUNT(*)), or 0 when there is no row
+     */
+    int queryInt(Route route, String sql, Object... params) throws SQLException {
+        return execute(route, conn -> {
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            ResultSet rs = null;
+            QueryStats.Sample sample = QueryStats.start();
+            long rows = -1;
+            try {
+                bind(pstmt, params);
+                rs = pstmt.executeQuery();
+                boolean found = rs.next();
+                rows = found ? 1 : 0;
+                return found ? rs.getInt(1) : 0;
+            } finally {
+                close(rs, pstmt);
+                QueryStats.finish(sample, sql, params, rows);
+            }
+        });
+    }
+
+    /**
+     * INSERT, UPDATE or DELETE on the primary
+     * @return number of rows affected
+     */
+    int update(String sql, Object... params) throws SQLException {
+        return execute(Route.WRITE, conn -> update(conn, sql, params));
+    }
+
+    /**
+     * INSERT, UPDATE or DELETE on a connection the caller already holds
+     * @return number of rows affected
+     */
+    static int update(Connection conn, String sql, Object... params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        QueryStats.Sample sample = QueryStats.start();
+        long rows = -1;
+        try {
+            bind(pstmt, params);
+            int updated = pstmt.executeUpdate();
+            rows = updated;
+            return updated;
+        } finally {
+            close(null, pstmt);
+            QueryStats.finish(sample, sql, params, rows);
+        }
+    }
+
+    /**
+     * INSERT on the primary
+     * @return the generated key, or -1 if no row was inserted
+     */
+    int insert(String sql, Object... params) throws SQLException {
+        return execute(Route.WRITE, conn -> insert(conn, sql, params));
+    }
+
+    /**
+     * INSERT on a connection the caller already holds
+     * @return the generated key, or -1 if no row was inserted
+     */
+    static int insert(Connection conn, String sql, Object... params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        ResultSet rs = null;
+        QueryStats.Sample sample = QueryStats.start();
+        long rows = -1;
+        try {
+            bind(pstmt, params);
+            int inserted = pstmt.executeUpdate();
+            rows = inserted;
+            if (inserted > 0) {
+                rs = pstmt.getGeneratedKeys();
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+            return -1;
+        } finally {
+            close(rs, pstmt);
+            QueryStats.finish(sample, sql, params, rows);
+        }
+    }
+
+    /**
+     * Run the batch added to a statement, reported to QueryStats like any
+     * other execution
+     */
+    static int[] executeBatch(PreparedStatement pstmt, String sql) throws SQLException {
+        QueryStats.Sample sample = QueryStats.start();
+        long rows = -1;
+        try {
+            int[] counts = pstmt.executeBatch();
+            rows = counts.length;
+            return counts;
+        } finally {
+            QueryStats.finish(sample, sql, null, rows);
+        }
+    }
+
+    private Connection borrow(Route route) throws SQLException {
+        switch (route) {
+            case READ:
+                return connectionPool.getReadConnection();
+            case WRITE:
+                return connectionPool.getWriteConnection();
+            default:
+                return connectionPool.getConnection();
+        }
+    }
+
+    /**
+     * MySQL Connector/J only streams with Integer.MIN_VALUE unless the URL
+     * sets useCursorFetch=true; other drivers take the configured fetch size
+     */
+    private static int streamFetchSize(Connection conn) throws SQLException {
+        if ("MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName())
+                && !conn.getMetaData().getURL().contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return STREAM_FETCH_SIZE;
+    }
+
+    /**
+     * End the read-only transaction a stream opened and put autocommit back
+     * before the connection returns to the pool
+     */
+    private static void endStream(Connection conn, boolean autoCommit) {
+        try {
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            LOG.warn("Error ending streamed query: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Bind parameters with the typed setter for each value
+     */
+    static void bind(PreparedStatement pstmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object value = params[i];
+            int index = i + 1;
+            if (value == null) {
+                pstmt.setNull(index, Types.NULL);
+            } else if (value instanceof Integer) {
+                pstmt.setInt(index, (Integer) value);
+            } else if (value instanceof String) {
+                pstmt.setString(index, (String) value);
+            } else if (value instanceof Boolean) {
+                pstmt.setBoolean(index, (Boolean) value);
+            } else if (value instanceof Timestamp) {
+                pstmt.setTimestamp(index, (Timestamp) value);
+            } else if (value instanceof Long) {
+                pstmt.setLong(index, (Long) value);
+            } else {
+                pstmt.setObject(index, value);
+            }
+        }
+    }
+
+    /**
+     * An INSERT that skips a row duplicating the given unique key instead of
+     * failing: ON CONFLICT DO NOTHING on PostgreSQL, a no-op ON DUPLICATE KEY
+     * UPDATE on MySQL. A skipped row returns no generated key.
+     */
+    static String insertIgnoringDuplicates(Connection conn, String insertSql, String... uniqueKey)
+            throws SQLException {
+        if ("PostgreSQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName())) {
+            return insertSql + " ON CONFLICT (" + String.join(", ", uniqueKey) + ") DO NOTHING";
+        }
+        return insertSql + " ON DUPLICATE KEY UPDATE " + uniqueKey[0] + " = " + uniqueKey[0];
+    }
+
+    /**
+     * "?, ?, ?" for an IN list of the given size
+     */
+    static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    static void close(ResultSet rs, Statement stmt) {
+        try {
+            if (rs != null) rs.close();
+        } catch (SQLException e) {
+            LOG.warn("Error closing result set: {}", e.getMessage());
+        }
+        try {
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            LOG.warn("Error closing statement: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.LatencyHistogram;
+import com.assignmentportal.util.Logger;
+import com.assignmentportal.util.MetricsRegistry;
+import com.assignmentportal.util.MetricsSource;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, row counts and slow-query logging for DAO statements, per query
+ *
+ * A query is named after the DAO method that ran it, for example
+ * SubmissionDAO.getSubmissionsByAssignment, also when it went through a
+ * helper such as StatsChanges or BulkLoader; the name is only worked out for
+ * executions that are sampled or slow. db.query.sampleRate is the fraction of
+ * executions recorded in the histograms, so their counts are of sampled
+ * executions. Every execution is timed while db.query.slowThresholdMillis is
+ * above 0, and one that takes longer is logged with the SQL and the types of
+ * its bind parameters, never their values. With both off a statement costs
+ * one branch.
+ */
+final class QueryStats implements MetricsSource {
+    private static final Logger LOG = Logger.getLogger(QueryStats.class);
+
+    private static final double SAMPLE_RATE =
+        Double.parseDouble(AppConfig.get("db.query.sampleRate", "0"));
+    private static final long SLOW_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("db.query.slowThresholdMillis", 0));
+    private static final boolean ENABLED = SAMPLE_RATE > 0 || SLOW_NANOS > 0;
+    private static final int MAX_LOGGED_SQL = 1000;
+
+    private static final String DAO_PACKAGE = QueryStats.class.getPackage().getName() + ".";
+    // Run statements for a DAO method rather than being one
+    private static final Set<String> HELPER_CLASSES = new HashSet<>(Arrays.asList(
+        QueryExecutor.class.getName(), QueryStats.class.getName(), StatsChanges.class.getName(),
+        BulkLoader.class.getName(), StatsReconciler.class.getName()));
+    private static final QueryStats INSTANCE = new QueryStats();
+
+    /**
+     * Timing of one statement execution
+     */
+    static final class Sample {
+        final boolean sampled;
+        final long startNanos;
+        long excludedNanos;
+
+        Sample(boolean sampled, long startNanos) {
+            this.sampled = sampled;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Leave time spent outside the database, such as in a stream callback,
+         * out of the elapsed time
+         */
+        void exclude(long nanos) {
+            excludedNanos += nanos;
+        }
+    }
+
+    private static final class QueryMetric {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder slow = new LongAdder();
+    }
+
+    private final Map<String, QueryMetric> queries = new ConcurrentSkipListMap<>();
+
+    private QueryStats() {
+        MetricsRegistry.register(this);
+    }
+
+    /**
+     * Start timing a statement
+     * @return the sample to pass to finish, or null when this execution is not measured
+     */
+    static Sample start() {
+        if (!ENABLED) {
+            return null;
+        }
+        boolean sampled = SAMPLE_RATE >= 1
+            || (SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE);
+        if (!sampled && SLOW_NANOS <= 0) {
+            return null;
+        }
+        return new Sample(sampled, System.nanoTime());
+    }
+
+    /**
+     * Record a statement started with start()
+     * @param params bind parameters, or null for a batch
+     * @param rows rows returned or affected (statements for a batch), or -1 if it failed
+     */
+    static void finish(Sample sample, String sql, Object[] params, long rows) {
+        if (sample == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - sample.startNanos - sample.excludedNanos;
+        boolean slow = SLOW_NANOS > 0 && elapsed >= SLOW_NANOS;
+        if (!sample.sampled && !slow) {
+            return;
+        }
+
+        String name = callerName();
+        QueryMetric metric = INSTANCE.queries.computeIfAbsent(name, k -> new QueryMetric());
+        if (sample.sampled) {
+            metric.latency.record(elapsed);
+            if (rows < 0) {
+                metric.errors.increment();
+            } else {
+                metric.rows.add(rows);
+            }
+        }
+        if (slow) {
+            metric.slow.increment();
+            LOG.warn("Slow query {} took {} ms ({}): {} params {}", name,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), rows < 0 ? "failed" : rows + " rows",
+                abbreviate(sql), shapes(params));
+        }
+    }
+
+    /**
+     * The first DAO method on the stack outside the executor and the helpers,
+     * with lambdas named after the method that declares them; a helper
+     * running on its own thread, such as the reconciler, is named itself
+     */
+    private static String callerName() {
+        StackTraceElement helper = null;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            String outerName = className.contains("$")
+                ? className.substring(0, className.indexOf('$')) : className;
+            if (HELPER_CLASSES.contains(outerName)) {
+                if (helper == null && !outerName.equals(QueryExecutor.class.getName())
+                        && !outerName.equals(QueryStats.class.getName())) {
+                    helper = frame;
+                }
+                continue;
+            }
+            if (className.startsWith(DAO_PACKAGE) || helper == null) {
+                return frameName(frame);
+            }
+            break;
+        }
+        return helper != null ? frameName(helper) : "unknown";
+    }
+
+    private static String frameName(StackTraceElement frame) {
+        String className = frame.getClassName();
+        String method = frame.getMethodName();
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', 7);
+            method = method.substring(7, end > 7 ? end : method.length());
+        }
+        return className.substring(className.lastIndexOf('.') + 1).replace('$', '.') + "." + method;
+    }
+
+    /**
+     * Bind parameter types without their values, e.g. [Integer, String(12), null]
+     */
+    static String shapes(Object[] params) {
+        if (params == null) {
+            return "(batch)";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            Object value = params[i];
+            if (value == null) {
+                sb.append("null");
+            } else if (value instanceof String) {
+                sb.append("String(").append(((String) value).length()).append(')');
+            } else {
+                sb.append(value.getClass().getSimpleName());
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String abbreviate(String sql) {
+        String oneLine = sql.replaceAll("\\s+", " ").trim();
+        return oneLine.length() <= MAX_LOGGED_SQL ? oneLine : oneLine.substring(0, MAX_LOGGED_SQL) + "...";
+    }
+
+    @Override
+    public void writeMetrics(PrintWriter out) {
+        out.println("# TYPE db_query_seconds histogram");
+        for (Map.Entry<String, QueryMetric> entry : queries.entrySet()) {
+            entry.getValue().latency.writePrometheus(out, "db_query_seconds", label(entry.getKey()));
+        }
+        out.println("# TYPE db_query_rows_total counter");
+        for (Map.Entry<String, QueryMetric> entry : queries.entrySet()) {
+            out.println("db_query_rows_total{" + label(entry.getKey()) + "} " + entry.getValue().rows.sum());
+        }
+        out.println("# TYPE db_query_errors_total counter");
+        for (Map.Entry<String, QueryMetric> entry : queries.entrySet()) {
+            out.println("db_query_errors_total{" + label(entry.getKey()) + "} " + entry.getValue().errors.sum());
+        }
+        out.println("# TYPE db_query_slow_total counter");
+        for (Map.Entry<String, QueryMetric> entry : queries.entrySet()) {
+            out.println("db_query_slow_total{" + label(entry.getKey()) + "} " + entry.getValue().slow.sum());
+        }
+    }
+
+    private static String label(String name) {
+        return "query=\"" + name + "\"";
+    }
+}
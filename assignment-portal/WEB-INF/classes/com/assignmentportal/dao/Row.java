@@ -0,0 +1,64 @@
+package com.assignmentportal.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Current row of a result set, read by column position
+ * Columns are identified by the mapper's column enum; a column the query
+ * did not select reads as null / 0 / false instead of throwing
+ */
+final class Row {
+    private final ResultSet rs;
+    private final int[] positions;
+
+    Row(ResultSet rs, int[] positions) {
+        this.rs = rs;
+        this.positions = positions;
+    }
+
+    /**
+     * Whether the query selected this column
+     */
+    boolean has(Enum<?> column) {
+        return positions[column.ordinal()] > 0;
+    }
+
+    int getInt(Enum<?> column) throws SQLException {
+        int position = positions[column.ordinal()];
+        return position > 0 ? rs.getInt(position) : 0;
+    }
+
+    long getLong(Enum<?> column) throws SQLException {
+        int position = positions[column.ordinal()];
+        return position > 0 ? rs.getLong(position) : 0;
+    }
+
+    /**
+     * Nullable integer column
+     */
+    Integer getInteger(Enum<?> column) throws SQLException {
+        int position = positions[column.ordinal()];
+        if (position == 0) {
+            return null;
+        }
+        int value = rs.getInt(position);
+        return rs.wasNull() ? null : value;
+    }
+
+    String getString(Enum<?> column) throws SQLException {
+        int position = positions[column.ordinal()];
+        return position > 0 ? rs.getString(position) : null;
+    }
+
+    boolean getBoolean(Enum<?> column) throws SQLException {
+        int position = positions[column.ordinal()];
+        return position > 0 && rs.getBoolean(position);
+    }
+
+    Timestamp getTimestamp(Enum<?> column) throws SQLException {
+        int position = positions[column.ordinal()];
+        return position > 0 ? rs.getTimestamp(position) : null;
+    }
+}
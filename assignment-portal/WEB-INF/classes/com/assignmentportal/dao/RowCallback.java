@@ -0,0 +1,12 @@
+package com.assignmentportal.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed DAO query one at a time
+ * Rows are read from a server-side cursor while the callback runs, so the
+ * callback should not hold on to them or start other long work per row.
+ */
+public interface RowCallback<T> {
+    void processRow(T row) throws IOException;
+}
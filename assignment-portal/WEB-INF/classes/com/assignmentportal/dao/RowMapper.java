@@ -0,0 +1,64 @@
+package com.assignmentportal.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps result set rows to objects by column position
+ *
+ * A mapper declares its columns as an enum whose constant names are the
+ * column labels in upper case (SUBMISSION_ID for submission_id). Positions are
+ * resolved from the result set metadata once per query and cached, so each
+ * row is read by index; columns a query does not select are simply absent.
+ */
+abstract class RowMapper<T> {
+    private final String[] labels;
+    /** Resolved positions per SQL text; the last slot holds the column count */
+    private final ConcurrentHashMap<String, int[]> positionsBySql = new ConcurrentHashMap<>();
+
+    protected RowMapper(Class<? extends Enum<?>> columns) {
+        Enum<?>[] constants = columns.getEnumConstants();
+        labels = new String[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            labels[i] = constants[i].name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Map the current row
+     */
+    protected abstract T mapRow(Row row) throws SQLException;
+
+    /**
+     * Bind a result set produced by the given SQL to this mapper's columns
+     */
+    Row bind(String sql, ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        int[] positions = positionsBySql.get(sql);
+        // A different column count means the schema behind "table.*" changed
+        if (positions == null || positions[labels.length] != columnCount) {
+            positions = resolve(metaData, columnCount);
+            positionsBySql.put(sql, positions);
+        }
+        return new Row(rs, positions);
+    }
+
+    private int[] resolve(ResultSetMetaData metaData, int columnCount) throws SQLException {
+        int[] positions = new int[labels.length + 1];
+        positions[labels.length] = columnCount;
+        // The first column with a label wins, as with ResultSet.findColumn
+        for (int column = columnCount; column >= 1; column--) {
+            String label = metaData.getColumnLabel(column);
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].equalsIgnoreCase(label)) {
+                    positions[i] = column;
+                }
+            }
+        }
+        return positions;
+    }
+}
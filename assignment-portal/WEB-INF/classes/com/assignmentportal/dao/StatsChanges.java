@@ -0,0 +1,243 @@
+package com.assignmentportal.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Changes one write makes to the dashboard summary tables
+ * Writers record what they changed and call apply() on their own connection
+ * before committing, so the summary rows commit or roll back with the data.
+ * Deltas are merged per summary row and applied in a fixed table and key
+ * order, so concurrent writers lock summary rows in the same order.
+ *
+ * Every write touches a site-wide counter, so each system_stats counter is
+ * split over SYSTEM_SHARDS rows and a transaction adds to one picked at
+ * random; the counter's value is the sum of its shards. Concurrent writers
+ * then rarely wait on the same row.
+ */
+final class StatsChanges {
+    static final String USERS = "users";
+    static final String ACTIVE_STUDENTS = "active_students";
+    static final String ACTIVE_TEACHERS = "active_teachers";
+    static final String ACTIVE_COURSES = "active_courses";
+    static final String ACTIVE_ASSIGNMENTS = "active_assignments";
+    static final String SUBMISSIONS = "submissions";
+    static final String GRADED_SUBMISSIONS = "graded_submissions";
+
+    /** Every system_stats row */
+    static final String[] STAT_NAMES = {
+        ACTIVE_ASSIGNMENTS, ACTIVE_COURSES, ACTIVE_STUDENTS, ACTIVE_TEACHERS,
+        GRADED_SUBMISSIONS, SUBMISSIONS, USERS
+    };
+
+    /** Rows each system_stats counter is split over */
+    static final int SYSTEM_SHARDS = 16;
+
+    private static final String SYSTEM_UPDATE_SQL =
+        "UPDATE system_stats SET stat_value = stat_value + ? WHERE stat_name = ? AND shard = ?";
+
+    private final Set<Integer> newCourses = new TreeSet<>();
+    private final Set<Integer> newAssignments = new TreeSet<>();
+    private final Set<Long> newEnrollments = new TreeSet<>();
+    // course_id -> {assignment_count, enrollment_count}
+    private final Map<Integer, long[]> courseDeltas = new TreeMap<>();
+    // assignment_id -> {submission_count, graded_count, marks_total}
+    private final Map<Integer, long[]> assignmentDeltas = new TreeMap<>();
+    // (student_id, assignment_id) -> {submitted_count, graded_count, marks_total}
+    private final Map<Long, long[]> studentDeltas = new TreeMap<>();
+    private final Map<String, long[]> systemDeltas = new TreeMap<>();
+
+    void userAdded(String role, boolean active) {
+        add(systemDeltas, USERS, 1);
+        userCounted(role, active, 1);
+    }
+
+    void userChanged(String oldRole, boolean wasActive, String role, boolean active) {
+        userCounted(oldRole, wasActive, -1);
+        userCounted(role, active, 1);
+    }
+
+    void userRemoved(String role, boolean wasActive) {
+        add(systemDeltas, USERS, -1);
+        userCounted(role, wasActive, -1);
+    }
+
+    void courseAdded(int courseId) {
+        newCourses.add(courseId);
+        add(systemDeltas, ACTIVE_COURSES, 1);
+    }
+
+    void courseDeactivated() {
+        add(systemDeltas, ACTIVE_COURSES, -1);
+    }
+
+    void enrollmentAdded(int studentId, int courseId) {
+        newEnrollments.add(pair(studentId, courseId));
+        add(courseDeltas, courseId, 0, 1);
+    }
+
+    void assignmentAdded(int assignmentId, int courseId) {
+        newAssignments.add(assignmentId);
+        add(courseDeltas, courseId, 1, 0);
+        add(systemDeltas, ACTIVE_ASSIGNMENTS, 1);
+    }
+
+    void assignmentDeactivated(int courseId) {
+        add(courseDeltas, courseId, -1, 0);
+        add(systemDeltas, ACTIVE_ASSIGNMENTS, -1);
+    }
+
+    void submissionAdded(int assignmentId, int studentId) {
+        add(assignmentDeltas, assignmentId, 1, 0, 0);
+        add(studentDeltas, pair(studentId, assignmentId), 1, 0, 0);
+        add(systemDeltas, SUBMISSIONS, 1);
+    }
+
+    /**
+     * A submission was given marks; a regrade only moves the marks total
+     * @param oldMarks marks before this grade, ignored unless wasGraded
+     */
+    void submissionGraded(int assignmentId, int studentId, boolean wasGraded, int oldMarks, int marks) {
+        long graded = wasGraded ? 0 : 1;
+        long marksDelta = marks - (wasGraded ? oldMarks : 0);
+        add(assignmentDeltas, assignmentId, 0, graded, marksDelta);
+        add(studentDeltas, pair(studentId, assignmentId), 0, graded, marksDelta);
+        add(systemDeltas, GRADED_SUBMISSIONS, graded);
+    }
+
+    /**
+     * Write the recorded changes on the caller's connection
+     * A summary row that does not exist yet is left for the reconcile job.
+     */
+    void apply(Connection conn) throws SQLException {
+        insert(conn, "INSERT INTO course_stats (course_id) VALUES (?)", newCourses, id -> new Object[] { id });
+        insert(conn, "INSERT INTO assignment_stats (assignment_id) VALUES (?)", newAssignments,
+            id -> new Object[] { id });
+        insert(conn, "INSERT INTO student_course_stats (student_id, course_id) VALUES (?, ?)", newEnrollments,
+            key -> new Object[] { high(key), low(key) });
+
+        update(conn, "UPDATE course_stats SET assignment_count = assignment_count + ?, " +
+            "enrollment_count = enrollment_count + ? WHERE course_id = ?",
+            courseDeltas, id -> new Object[] { id });
+        update(conn, "UPDATE assignment_stats SET submission_count = submission_count + ?, " +
+            "graded_count = graded_count + ?, marks_total = marks_total + ? WHERE assignment_id = ?",
+            assignmentDeltas, id -> new Object[] { id });
+        update(conn, "UPDATE student_course_stats SET submitted_count = submitted_count + ?, " +
+            "graded_count = graded_count + ?, marks_total = marks_total + ? " +
+            "WHERE student_id = ? AND course_id = (SELECT course_id FROM assignments WHERE assignment_id = ?)",
+            studentDeltas, key -> new Object[] { high(key), low(key) });
+        applySystem(conn);
+    }
+
+    /**
+     * Add the site-wide deltas to one shard of each counter
+     */
+    private void applySystem(Connection conn) throws SQLException {
+        int shard = ThreadLocalRandom.current().nextInt(SYSTEM_SHARDS);
+        for (Map.Entry<String, long[]> entry : systemDeltas.entrySet()) {
+            long delta = entry.getValue()[0];
+            if (delta == 0) {
+                continue;
+            }
+            if (QueryExecutor.update(conn, SYSTEM_UPDATE_SQL, delta, entry.getKey(), shard) == 0 && shard != 0) {
+                // Shards other than 0 are created by the reconcile job
+                QueryExecutor.update(conn, SYSTEM_UPDATE_SQL, delta, entry.getKey(), 0);
+            }
+        }
+    }
+
+    private void userCounted(String role, boolean active, long delta) {
+        if (!active) {
+            return;
+        }
+        if ("STUDENT".equals(role)) {
+            add(systemDeltas, ACTIVE_STUDENTS, delta);
+        } else if ("TEACHER".equals(role)) {
+            add(systemDeltas, ACTIVE_TEACHERS, delta);
+        }
+    }
+
+    private static <K> void add(Map<K, long[]> deltas, K key, long... values) {
+        long[] current = deltas.computeIfAbsent(key, k -> new long[values.length]);
+        for (int i = 0; i < values.length; i++) {
+            current[i] += values[i];
+        }
+    }
+
+    private static <K> void insert(Connection conn, String sql, Set<K> keys,
+            Function<K, Object[]> keyParams) throws SQLException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        try {
+            for (K key : keys) {
+                QueryExecutor.bind(pstmt, keyParams.apply(key));
+                pstmt.addBatch();
+            }
+            QueryExecutor.executeBatch(pstmt, sql);
+        } finally {
+            QueryExecutor.close(null, pstmt);
+        }
+    }
+
+    /**
+     * One batched UPDATE per table; the deltas are bound first, then the key
+     */
+    private static <K> void update(Connection conn, String sql, Map<K, long[]> deltas,
+            Function<K, Object[]> keyParams) throws SQLException {
+        PreparedStatement pstmt = null;
+        try {
+            for (Map.Entry<K, long[]> entry : deltas.entrySet()) {
+                long[] values = entry.getValue();
+                if (isZero(values)) {
+                    continue;
+                }
+                if (pstmt == null) {
+                    pstmt = conn.prepareStatement(sql);
+                }
+                Object[] key = keyParams.apply(entry.getKey());
+                Object[] params = new Object[values.length + key.length];
+                for (int i = 0; i < values.length; i++) {
+                    params[i] = values[i];
+                }
+                System.arraycopy(key, 0, params, values.length, key.length);
+                QueryExecutor.bind(pstmt, params);
+                pstmt.addBatch();
+            }
+            if (pstmt != null) {
+                QueryExecutor.executeBatch(pstmt, sql);
+            }
+        } finally {
+            QueryExecutor.close(null, pstmt);
+        }
+    }
+
+    private static boolean isZero(long[] values) {
+        for (long value : values) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long pair(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    private static int high(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    private static int low(long pair) {
+        return (int) pair;
+    }
+}
@@ -0,0 +1,322 @@
+package com.assignmentportal.dao;
+
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.DatabaseConnectionPool;
+import com.assignmentportal.util.Logger;
+import com.assignmentportal.util.MetricsRegistry;
+import com.assignmentportal.util.MetricsSource;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rebuilds the dashboard summary tables from the base tables
+ *
+ * Creates summary rows that are missing (data written before the tables
+ * existed, or outside the DAOs) and corrects counts that drifted, e.g. after
+ * a user delete cascaded through enrollments and submissions. Each table is
+ * compared with its base tables in one statement, so both sides come from the
+ * same snapshot, and corrections are applied as deltas rather than absolute
+ * values, so writes that commit while a run is in progress are kept.
+ *
+ * Runs on a background thread when first used and then every
+ * stats.reconcileIntervalMinutes (0 disables the periodic runs).
+ */
+final class StatsReconciler implements MetricsSource {
+    private static final Logger LOG = Logger.getLogger(StatsReconciler.class);
+
+    private static class Holder {
+        static final StatsReconciler INSTANCE = new StatsReconciler();
+    }
+
+    private static final String COURSE_DRIFT_SQL =
+        "SELECT cs.course_id, " +
+        "COALESCE(a.n, 0) - cs.assignment_count AS assignment_delta, " +
+        "COALESCE(e.n, 0) - cs.enrollment_count AS enrollment_delta " +
+        "FROM course_stats cs " +
+        "LEFT JOIN (SELECT course_id, COUNT(*) AS n FROM assignments " +
+        "WHERE is_active = TRUE GROUP BY course_id) a ON a.course_id = cs.course_id " +
+        "LEFT JOIN (SELECT course_id, COUNT(*) AS n FROM enrollments " +
+        "WHERE status = 'ACTIVE' GROUP BY course_id) e ON e.course_id = cs.course_id " +
+        "WHERE COALESCE(a.n, 0) <> cs.assignment_count OR COALESCE(e.n, 0) <> cs.enrollment_count";
+
+    private static final String ASSIGNMENT_DRIFT_SQL =
+        "SELECT st.assignment_id, " +
+        "COALESCE(s.submissions, 0) - st.submission_count AS submission_delta, " +
+        "COALESCE(s.graded, 0) - st.graded_count AS graded_delta, " +
+        "COALESCE(s.marks, 0) - st.marks_total AS marks_delta " +
+        "FROM assignment_stats st " +
+        "LEFT JOIN (SELECT assignment_id, COUNT(*) AS submissions, " +
+        "SUM(CASE WHEN status = 'GRADED' THEN 1 ELSE 0 END) AS graded, " +
+        "SUM(CASE WHEN status = 'GRADED' THEN COALESCE(marks_obtained, 0) ELSE 0 END) AS marks " +
+        "FROM submissions GROUP BY assignment_id) s ON s.assignment_id = st.assignment_id " +
+        "WHERE COALESCE(s.submissions, 0) <> st.submission_count " +
+        "OR COALESCE(s.graded, 0) <> st.graded_count OR COALESCE(s.marks, 0) <> st.marks_total";
+
+    private static final String STUDENT_DRIFT_SQL =
+        "SELECT st.student_id, st.course_id, " +
+        "COALESCE(s.submissions, 0) - st.submitted_count AS submission_delta, " +
+        "COALESCE(s.graded, 0) - st.graded_count AS graded_delta, " +
+        "COALESCE(s.marks, 0) - st.marks_total AS marks_delta " +
+        "FROM student_course_stats st " +
+        "LEFT JOIN (SELECT s.student_id, a.course_id, COUNT(*) AS submissions, " +
+        "SUM(CASE WHEN s.status = 'GRADED' THEN 1 ELSE 0 END) AS graded, " +
+        "SUM(CASE WHEN s.status = 'GRADED' THEN COALESCE(s.marks_obtained, 0) ELSE 0 END) AS marks " +
+        "FROM submissions s JOIN assignments a ON s.assignment_id = a.assignment_id " +
+        "GROUP BY s.student_id, a.course_id) s " +
+        "ON s.student_id = st.student_id AND s.course_id = st.course_id " +
+        "WHERE COALESCE(s.submissions, 0) <> st.submitted_count " +
+        "OR COALESCE(s.graded, 0) <> st.graded_count OR COALESCE(s.marks, 0) <> st.marks_total";
+
+    // Column labels match the stat names; shards are summed per stat
+    private static final String SYSTEM_DRIFT_SQL =
+        "SELECT st.stat_name, st.stat_value, c.* FROM (SELECT stat_name, SUM(stat_value) AS stat_value " +
+        "FROM system_stats GROUP BY stat_name) st CROSS JOIN (SELECT " +
+        "(SELECT COUNT(*) FROM users) AS users, " +
+        "(SELECT COUNT(*) FROM users WHERE role = 'STUDENT' AND is_active = TRUE) AS active_students, " +
+        "(SELECT COUNT(*) FROM users WHERE role = 'TEACHER' AND is_active = TRUE) AS active_teachers, " +
+        "(SELECT COUNT(*) FROM courses WHERE is_active = TRUE) AS active_courses, " +
+        "(SELECT COUNT(*) FROM assignments WHERE is_active = TRUE) AS active_assignments, " +
+        "(SELECT COUNT(*) FROM submissions) AS submissions, " +
+        "(SELECT COUNT(*) FROM submissions WHERE status = 'GRADED') AS graded_submissions) c";
+
+    private final QueryExecutor queryExecutor;
+    private final ScheduledExecutorService scheduler;
+    // Held across JDBC calls, so a lock rather than a monitor that would pin
+    // a virtual thread to its carrier
+    private final ReentrantLock running = new ReentrantLock();
+    private final AtomicBoolean runRequested = new AtomicBoolean();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rowsCorrected = new AtomicLong();
+
+    private StatsReconciler() {
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-stats-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = AppConfig.getLong("stats.reconcileIntervalMinutes", 60);
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(this::runQuietly, 0, interval, TimeUnit.MINUTES);
+        } else {
+            requestRun();
+        }
+        MetricsRegistry.register(this);
+    }
+
+    static StatsReconciler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Run soon on the background thread; requests made before it starts are merged
+     */
+    void requestRun() {
+        if (runRequested.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                runRequested.set(false);
+                runQuietly();
+            });
+        }
+    }
+
+    /**
+     * Bring every summary table in line with the base tables, waiting for a
+     * run already in progress to finish first
+     * @return number of summary rows created or corrected
+     */
+    int reconcile() throws SQLException {
+        running.lock();
+        try {
+            return reconcileNow();
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private int reconcileNow() throws SQLException {
+        long start = System.nanoTime();
+        int corrected = insertMissingRows();
+        corrected += queryExecutor.inTransaction(StatsReconciler::correctCourses);
+        corrected += queryExecutor.inTransaction(StatsReconciler::correctAssignments);
+        corrected += queryExecutor.inTransaction(StatsReconciler::correctStudents);
+        corrected += queryExecutor.inTransaction(StatsReconciler::correctSystem);
+        runs.incrementAndGet();
+        rowsCorrected.addAndGet(corrected);
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (corrected > 0) {
+            LOG.warn("Dashboard stats reconciled in {} ms: {} rows created or corrected", elapsed, corrected);
+        } else {
+            LOG.debug("Dashboard stats reconciled in {} ms: no drift", elapsed);
+        }
+        return corrected;
+    }
+
+    /**
+     * Background run; skipped if a reconcile is already in progress, which
+     * will have caught the same drift
+     */
+    private void runQuietly() {
+        if (!running.tryLock()) {
+            LOG.debug("Dashboard stats reconcile already running, skipping");
+            return;
+        }
+        try {
+            reconcileNow();
+        } catch (SQLException | RuntimeException e) {
+            failures.incrementAndGet();
+            LOG.error("Error reconciling dashboard stats", e);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    /**
+     * Summary rows for base rows that have none, starting at zero for the
+     * drift pass to fill in
+     */
+    private int insertMissingRows() throws SQLException {
+        int inserted = queryExecutor.update(
+            "INSERT INTO course_stats (course_id) SELECT c.course_id FROM courses c " +
+            "WHERE NOT EXISTS (SELECT 1 FROM course_stats cs WHERE cs.course_id = c.course_id)");
+        inserted += queryExecutor.update(
+            "INSERT INTO assignment_stats (assignment_id) SELECT a.assignment_id FROM assignments a " +
+            "WHERE NOT EXISTS (SELECT 1 FROM assignment_stats st WHERE st.assignment_id = a.assignment_id)");
+        inserted += queryExecutor.update(
+            "INSERT INTO student_course_stats (student_id, course_id) " +
+            "SELECT e.student_id, e.course_id FROM enrollments e WHERE NOT EXISTS " +
+            "(SELECT 1 FROM student_course_stats st " +
+            "WHERE st.student_id = e.student_id AND st.course_id = e.course_id)");
+
+        return inserted + queryExecutor.execute(QueryExecutor.Route.WRITE, conn -> {
+            Set<String> existing = new HashSet<>();
+            String sql = "SELECT stat_name, shard FROM system_stats";
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            ResultSet rs = null;
+            QueryStats.Sample sample = QueryStats.start();
+            long rows = -1;
+            try {
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    existing.add(rs.getString(1) + "/" + rs.getInt(2));
+                }
+                rows = existing.size();
+            } finally {
+                QueryExecutor.close(rs, pstmt);
+                QueryStats.finish(sample, sql, new Object[0], rows);
+            }
+            int added = 0;
+            for (String name : StatsChanges.STAT_NAMES) {
+                for (int shard = 0; shard < StatsChanges.SYSTEM_SHARDS; shard++) {
+                    if (!existing.contains(name + "/" + shard)) {
+                        added += QueryExecutor.update(conn,
+                            "INSERT INTO system_stats (stat_name, shard) VALUES (?, ?)", name, shard);
+                    }
+                }
+            }
+            return added;
+        });
+    }
+
+    private static int correctCourses(Connection conn) throws SQLException {
+        return correct(conn, COURSE_DRIFT_SQL,
+            "UPDATE course_stats SET assignment_count = assignment_count + ?, " +
+            "enrollment_count = enrollment_count + ? WHERE course_id = ?",
+            rs -> new Object[] { rs.getLong(2), rs.getLong(3), rs.getInt(1) });
+    }
+
+    private static int correctAssignments(Connection conn) throws SQLException {
+        return correct(conn, ASSIGNMENT_DRIFT_SQL,
+            "UPDATE assignment_stats SET submission_count = submission_count + ?, " +
+            "graded_count = graded_count + ?, marks_total = marks_total + ? WHERE assignment_id = ?",
+            rs -> new Object[] { rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getInt(1) });
+    }
+
+    private static int correctStudents(Connection conn) throws SQLException {
+        return correct(conn, STUDENT_DRIFT_SQL,
+            "UPDATE student_course_stats SET submitted_count = submitted_count + ?, " +
+            "graded_count = graded_count + ?, marks_total = marks_total + ? " +
+            "WHERE student_id = ? AND course_id = ?",
+            rs -> new Object[] { rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getInt(1), rs.getInt(2) });
+    }
+
+    private static int correctSystem(Connection conn) throws SQLException {
+        return correct(conn, SYSTEM_DRIFT_SQL,
+            "UPDATE system_stats SET stat_value = stat_value + ? WHERE stat_name = ? AND shard = 0",
+            rs -> {
+                String name = rs.getString("stat_name");
+                for (String known : StatsChanges.STAT_NAMES) {
+                    if (known.equals(name)) {
+                        long delta = rs.getLong(name) - rs.getLong("stat_value");
+                        return delta != 0 ? new Object[] { delta, name } : null;
+                    }
+                }
+                return null;
+            });
+    }
+
+    /**
+     * Parameters of the correcting UPDATE for one drifted row, or null for none
+     */
+    private interface Correction {
+        Object[] params(ResultSet rs) throws SQLException;
+    }
+
+    private static int correct(Connection conn, String driftSql, String updateSql, Correction correction)
+            throws SQLException {
+        PreparedStatement select = conn.prepareStatement(driftSql);
+        PreparedStatement update = conn.prepareStatement(updateSql);
+        ResultSet rs = null;
+        int corrected = 0;
+        try {
+            QueryStats.Sample sample = QueryStats.start();
+            long rows = -1;
+            try {
+                rs = select.executeQuery();
+                rows = 0;
+                while (rs.next()) {
+                    rows++;
+                    Object[] params = correction.params(rs);
+                    if (params != null) {
+                        QueryExecutor.bind(update, params);
+                        update.addBatch();
+                        corrected++;
+                    }
+                }
+            } finally {
+                QueryStats.finish(sample, driftSql, new Object[0], rows);
+            }
+            if (corrected > 0) {
+                QueryExecutor.executeBatch(update, updateSql);
+            }
+            return corrected;
+        } finally {
+            QueryExecutor.close(rs, select);
+            QueryExecutor.close(null, update);
+        }
+    }
+
+    @Override
+    public void writeMetrics(PrintWriter out) {
+        out.println("# TYPE app_stats_reconcile_runs_total counter");
+        out.println("app_stats_reconcile_runs_total " + runs.get());
+        out.println("# TYPE app_stats_reconcile_failures_total counter");
+        out.println("app_stats_reconcile_failures_total " + failures.get());
+        out.println("# TYPE app_stats_reconcile_rows_corrected_total counter");
+        out.println("app_stats_reconcile_rows_corrected_total " + rowsCorrected.get());
+    }
+}
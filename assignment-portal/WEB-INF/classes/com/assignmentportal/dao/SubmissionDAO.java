@@ -1,224 +1,465 @@
 package com.assignmentportal.dao;
 
+import com.assignmentportal.dao.QueryExecutor.Route;
 import com.assignmentportal.model.Submission;
 import com.assignmentportal.util.DatabaseConnectionPool;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 public class SubmissionDAO {
-    private DatabaseConnectionPool connectionPool;
+    private enum Column {
+        SUBMISSION_ID, ASSIGNMENT_ID, STUDENT_ID, FILE_PATH, ORIGINAL_FILENAME,
+        FILE_SIZE_KB, SUBMISSION_DATE, STATUS, IS_LATE, MARKS_OBTAINED, FEEDBACK,
+        ASSIGNMENT_TITLE, MAX_MARKS, STUDENT_NAME, COURSE_NAME, COURSE_CODE
+    }
+    
+    private static final RowMapper<Submission> SUBMISSION_MAPPER = new RowMapper<Submission>(Column.class) {
+        @Override
+        protected Submission mapRow(Row row) throws SQLException {
+            Submission submission = new Submission();
+            submission.setSubmissionId(row.getInt(Column.SUBMISSION_ID));
+            submission.setAssignmentId(row.getInt(Column.ASSIGNMENT_ID));
+            submission.setStudentId(row.getInt(Column.STUDENT_ID));
+            submission.setFilePath(row.getString(Column.FILE_PATH));
+            submission.setOriginalFilename(row.getString(Column.ORIGINAL_FILENAME));
+            submission.setFileSizeKb(row.getInt(Column.FILE_SIZE_KB));
+            submission.setSubmissionDate(row.getTimestamp(Column.SUBMISSION_DATE));
+            submission.setStatus(row.getString(Column.STATUS));
+            submission.setLate(row.getBoolean(Column.IS_LATE));
+            submission.setMarksObtained(row.getInteger(Column.MARKS_OBTAINED));
+            submission.setFeedback(row.getString(Column.FEEDBACK));
+            
+            // Joined columns, present depending on the query
+            submission.setAssignmentTitle(row.getString(Column.ASSIGNMENT_TITLE));
+            submission.setMaxMarks(row.getInt(Column.MAX_MARKS));
+            submission.setStudentName(row.getString(Column.STUDENT_NAME));
+            submission.setCourseName(row.getString(Column.COURSE_NAME));
+            submission.setCourseCode(row.getString(Column.COURSE_CODE));
+            return submission;
+        }
+    };
+    
+    private static final Function<Submission, String> SUBMISSION_POSITION =
+        submission -> PageToken.encode(submission.getSubmissionDate(), submission.getSubmissionId());
+    
+    /**
+     * One entry of a batch grading request
+     */
+    public static final class Grade {
+        private final int submissionId;
+        private final int marks;
+        private final String feedback;
+        
+        public Grade(int submissionId, int marks, String feedback) {
+            this.submissionId = submissionId;
+            this.marks = marks;
+            this.feedback = feedback;
+        }
+        
+        public int getSubmissionId() {
+            return submissionId;
+        }
+        
+        public int getMarks() {
+            return marks;
+        }
+        
+        public String getFeedback() {
+            return feedback;
+        }
+    }
+    
+    /**
+     * Work to finish just before a submission commits, such as moving the
+     * uploaded file into place; if it throws, the submission rolls back
+     */
+    public interface CommitHook {
+        void beforeCommit() throws IOException;
+    }
+    
+    private static final String INSERT_SQL = "INSERT INTO submissions (assignment_id, student_id, file_path, " +
+                "original_filename, file_size_kb, is_late, status) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    private final QueryExecutor queryExecutor;
     
     public SubmissionDAO() {
-        this.connectionPool = DatabaseConnectionPool.getInstance();
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
     }
     
     public int createSubmission(Submission submission) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
+        return queryExecutor.inTransaction(conn -> {
+            int submissionId = insertSubmission(conn, INSERT_SQL, submission);
+            if (submissionId > 0) {
+                recordStats(conn, submission);
+            }
+            return submissionId;
+        });
+    }
+    
+    /**
+     * Record a student's submission and run beforeCommit in one transaction
+     * A student has at most one submission per assignment. A duplicate, such
+     * as a double-clicked submit, is skipped by the unique key instead of
+     * being checked for first, and beforeCommit is not run for it.
+     * The summary rows are updated after beforeCommit, so their locks are
+     * held only for the commit and not while it does file I/O.
+     * @return the new submission id, or -1 if the student had already submitted
+     */
+    public int submitAssignment(Submission submission, CommitHook beforeCommit)
+            throws SQLException, IOException {
         try {
-            conn = connectionPool.getConnection();
-            String sql = "INSERT INTO submissions (assignment_id, student_id, file_path, " +
-                        "original_filename, file_size_kb, is_late, status) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            pstmt.setInt(1, submission.getAssignmentId());
-            pstmt.setInt(2, submission.getStudentId());
-            pstmt.setString(3, submission.getFilePath());
-            pstmt.setString(4, submission.getOriginalFilename());
-            pstmt.setInt(5, submission.getFileSizeKb());
-            pstmt.setBoolean(6, submission.isLate());
-            pstmt.setString(7, submission.getStatus());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                rs = pstmt.getGeneratedKeys();
-                if (rs.next()) {
-                    return rs.getInt(1);
+            return queryExecutor.inTransaction(conn -> {
+                String sql = QueryExecutor.insertIgnoringDuplicates(conn, INSERT_SQL,
+                    "assignment_id", "student_id");
+                int submissionId = insertSubmission(conn, sql, submission);
+                if (submissionId > 0) {
+                    try {
+                        beforeCommit.beforeCommit();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    recordStats(conn, submission);
                 }
-            }
-            return -1;
-        } finally {
-            closeResources(rs, pstmt, conn);
+                return submissionId;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
     
+    private static int insertSubmission(Connection conn, String sql, Submission submission)
+            throws SQLException {
+        return QueryExecutor.insert(conn, sql,
+            submission.getAssignmentId(), submission.getStudentId(), submission.getFilePath(),
+            submission.getOriginalFilename(), submission.getFileSizeKb(), submission.isLate(),
+            submission.getStatus());
+    }
+    
+    /**
+     * Count a new submission in the summary tables; the last statement before commit
+     */
+    private static void recordStats(Connection conn, Submission submission) throws SQLException {
+        StatsChanges changes = new StatsChanges();
+        changes.submissionAdded(submission.getAssignmentId(), submission.getStudentId());
+        changes.apply(conn);
+    }
+    
     public List<Submission> getSubmissionsByAssignment(int assignmentId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<Submission> submissions = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT s.*, u.full_name as student_name, u.email as student_email, " +
-                        "a.title as assignment_title, a.max_marks, " +
-                        "g.full_name as graded_by_name " +
-                        "FROM submissions s " +
-                        "JOIN users u ON s.student_id = u.user_id " +
-                        "JOIN assignments a ON s.assignment_id = a.assignment_id " +
-                        "LEFT JOIN users g ON s.graded_by = g.user_id " +
-                        "WHERE s.assignment_id = ? " +
-                        "ORDER BY s.submission_date DESC";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, assignmentId);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                submissions.add(extractSubmissionFromResultSet(rs));
-            }
-            return submissions;
-        } finally {
-            closeResources(rs, pstmt, conn);
+        String sql = "SELECT s.*, u.full_name as student_name, u.email as student_email, " +
+                    "a.title as assignment_title, a.max_marks, " +
+                    "g.full_name as graded_by_name " +
+                    "FROM submissions s " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "LEFT JOIN users g ON s.graded_by = g.user_id " +
+                    "WHERE s.assignment_id = ? " +
+                    "ORDER BY s.submission_date DESC";
+        return queryExecutor.queryList(Route.READ, sql, SUBMISSION_MAPPER, assignmentId);
+    }
+    
+    /**
+     * Stream an assignment's submissions, newest first, without loading them into memory
+     * @return number of submissions processed
+     */
+    public long forEachSubmissionByAssignment(int assignmentId, RowCallback<Submission> callback)
+            throws SQLException, IOException {
+        String sql = "SELECT s.*, u.full_name as student_name, u.email as student_email, " +
+                    "a.title as assignment_title, a.max_marks, " +
+                    "g.full_name as graded_by_name " +
+                    "FROM submissions s " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "LEFT JOIN users g ON s.graded_by = g.user_id " +
+                    "WHERE s.assignment_id = ? " +
+                    "ORDER BY s.submission_date DESC, s.submission_id DESC";
+        return queryExecutor.stream(Route.READ, sql, SUBMISSION_MAPPER, callback, assignmentId);
+    }
+    
+    /**
+     * One page of an assignment's submissions, newest first
+     * @param pageToken token from the previous page, or null for the first page
+     */
+    public Page<Submission> getSubmissionsByAssignmentPage(int assignmentId, String pageToken, int pageSize)
+            throws SQLException {
+        PageToken after = PageToken.decode(pageToken);
+        Timestamp afterDate = after != null ? after.getTimestampKey() : null;
+        String select = "SELECT s.*, u.full_name as student_name, u.email as student_email, " +
+                    "a.title as assignment_title, a.max_marks, " +
+                    "g.full_name as graded_by_name " +
+                    "FROM submissions s " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "LEFT JOIN users g ON s.graded_by = g.user_id " +
+                    "WHERE s.assignment_id = ? ";
+        String order = "ORDER BY s.submission_date DESC, s.submission_id DESC LIMIT ?";
+        if (afterDate == null) {
+            return queryExecutor.queryPage(Route.READ, select + order, SUBMISSION_MAPPER,
+                pageSize, SUBMISSION_POSITION, assignmentId);
         }
+        return queryExecutor.queryPage(Route.READ,
+            select + "AND (s.submission_date, s.submission_id) < (?, ?) " + order,
+            SUBMISSION_MAPPER, pageSize, SUBMISSION_POSITION, assignmentId, afterDate, after.getId());
     }
     
     public List<Submission> getSubmissionsByStudent(int studentId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<Submission> submissions = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT s.*, a.title as assignment_title, a.max_marks, " +
-                        "c.course_name, c.course_code " +
-                        "FROM submissions s " +
-                        "JOIN assignments a ON s.assignment_id = a.assignment_id " +
-                        "JOIN courses c ON a.course_id = c.course_id " +
-                        "WHERE s.student_id = ? " +
-                        "ORDER BY s.submission_date DESC";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, studentId);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                submissions.add(extractSubmissionFromResultSet(rs));
-            }
-            return submissions;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT s.*, a.title as assignment_title, a.max_marks, " +
+                    "c.course_name, c.course_code " +
+                    "FROM submissions s " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "WHERE s.student_id = ? " +
+                    "ORDER BY s.submission_date DESC";
+        return queryExecutor.queryList(Route.READ, sql, SUBMISSION_MAPPER, studentId);
     }
     
-    public Submission getSubmissionById(int submissionId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT s.*, u.full_name as student_name, " +
-                        "a.title as assignment_title, a.max_marks " +
-                        "FROM submissions s " +
-                        "JOIN users u ON s.student_id = u.user_id " +
-                        "JOIN assignments a ON s.assignment_id = a.assignment_id " +
-                        "WHERE s.submission_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, submissionId);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractSubmissionFromResultSet(rs);
-            }
-            return null;
-        } finally {
-            closeResources(rs, pstmt, conn);
+    /**
+     * One page of a student's submissions, newest first
+     * @param pageToken token from the previous page, or null for the first page
+     */
+    public Page<Submission> getSubmissionsByStudentPage(int studentId, String pageToken, int pageSize)
+            throws SQLException {
+        PageToken after = PageToken.decode(pageToken);
+        Timestamp afterDate = after != null ? after.getTimestampKey() : null;
+        String select = "SELECT s.*, a.title as assignment_title, a.max_marks, " +
+                    "c.course_name, c.course_code " +
+                    "FROM submissions s " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "WHERE s.student_id = ? ";
+        String order = "ORDER BY s.submission_date DESC, s.submission_id DESC LIMIT ?";
+        if (afterDate == null) {
+            return queryExecutor.queryPage(Route.READ, select + order, SUBMISSION_MAPPER,
+                pageSize, SUBMISSION_POSITION, studentId);
         }
+        return queryExecutor.queryPage(Route.READ,
+            select + "AND (s.submission_date, s.submission_id) < (?, ?) " + order,
+            SUBMISSION_MAPPER, pageSize, SUBMISSION_POSITION, studentId, afterDate, after.getId());
+    }
+    
+    /**
+     * Submissions to the active assignments of all of a teacher's active courses, in one query
+     * Ordered like getAssignmentsByTeacher, newest submission first within an assignment
+     */
+    public List<Submission> getSubmissionsByTeacher(int teacherId) throws SQLException {
+        String sql = "SELECT s.*, u.full_name as student_name, " +
+                    "a.title as assignment_title, a.max_marks, " +
+                    "c.course_name, c.course_code " +
+                    "FROM submissions s " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "WHERE c.teacher_id = ? AND c.is_active = TRUE AND a.is_active = TRUE " +
+                    "ORDER BY c.course_code, a.due_date DESC, s.submission_date DESC";
+        return queryExecutor.queryList(Route.READ, sql, SUBMISSION_MAPPER, teacherId);
     }
     
-    public boolean gradeSubmission(int submissionId, int marks, String feedback, int gradedBy) 
+    /**
+     * One page of the submissions to a teacher's active assignments, newest first
+     * @param pageToken token from the previous page, or null for the first page
+     */
+    public Page<Submission> getSubmissionsByTeacherPage(int teacherId, String pageToken, int pageSize)
             throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE submissions SET marks_obtained = ?, feedback = ?, " +
-                        "graded_by = ?, graded_at = CURRENT_TIMESTAMP, status = 'GRADED' " +
-                        "WHERE submission_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, marks);
-            pstmt.setString(2, feedback);
-            pstmt.setInt(3, gradedBy);
-            pstmt.setInt(4, submissionId);
-            
-            return pstmt.executeUpdate() > 0;
-        } finally {
-            closeResources(null, pstmt, conn);
+        PageToken after = PageToken.decode(pageToken);
+        Timestamp afterDate = after != null ? after.getTimestampKey() : null;
+        String select = "SELECT s.*, u.full_name as student_name, " +
+                    "a.title as assignment_title, a.max_marks, " +
+                    "c.course_name, c.course_code " +
+                    "FROM submissions s " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "WHERE c.teacher_id = ? AND c.is_active = TRUE AND a.is_active = TRUE ";
+        String order = "ORDER BY s.submission_date DESC, s.submission_id DESC LIMIT ?";
+        if (afterDate == null) {
+            return queryExecutor.queryPage(Route.READ, select + order, SUBMISSION_MAPPER,
+                pageSize, SUBMISSION_POSITION, teacherId);
         }
+        return queryExecutor.queryPage(Route.READ,
+            select + "AND (s.submission_date, s.submission_id) < (?, ?) " + order,
+            SUBMISSION_MAPPER, pageSize, SUBMISSION_POSITION, teacherId, afterDate, after.getId());
     }
     
-    public Submission getStudentSubmissionForAssignment(int studentId, int assignmentId) 
+    public Submission getSubmissionById(int submissionId) throws SQLException {
+        String sql = "SELECT s.*, u.full_name as student_name, " +
+                    "a.title as assignment_title, a.max_marks " +
+                    "FROM submissions s " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "WHERE s.submission_id = ?";
+        return queryExecutor.queryOne(Route.PRIMARY, sql, SUBMISSION_MAPPER, submissionId);
+    }
+    
+    /**
+     * A submission as seen by the student who made it or the teacher of its
+     * course; null when it does not exist or belongs to neither
+     */
+    public Submission getSubmissionForUser(int submissionId, int userId) throws SQLException {
+        String sql = "SELECT s.*, u.full_name as student_name, " +
+                    "a.title as assignment_title, a.max_marks " +
+                    "FROM submissions s " +
+                    "JOIN users u ON s.student_id = u.user_id " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "JOIN courses c ON a.course_id = c.course_id " +
+                    "WHERE s.submission_id = ? AND (s.student_id = ? OR c.teacher_id = ?)";
+        return queryExecutor.queryOne(Route.READ, sql, SUBMISSION_MAPPER, submissionId, userId, userId);
+    }
+    
+    public boolean gradeSubmission(int submissionId, int marks, String feedback, int gradedBy)
             throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT s.*, a.title as assignment_title, a.max_marks " +
-                        "FROM submissions s " +
-                        "JOIN assignments a ON s.assignment_id = a.assignment_id " +
-                        "WHERE s.student_id = ? AND s.assignment_id = ? " +
-                        "ORDER BY s.submission_date DESC LIMIT 1";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, studentId);
-            pstmt.setInt(2, assignmentId);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractSubmissionFromResultSet(rs);
+        String sql = "UPDATE submissions SET marks_obtained = ?, feedback = ?, " +
+                    "graded_by = ?, graded_at = CURRENT_TIMESTAMP, status = 'GRADED' " +
+                    "WHERE submission_id = ?";
+        return queryExecutor.inTransaction(conn -> {
+            Submission current = lockForGrading(conn, null, submissionId).get(submissionId);
+            if (current == null) {
+                return false;
             }
-            return null;
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+            QueryExecutor.update(conn, sql, marks, feedback, gradedBy, submissionId);
+            StatsChanges changes = new StatsChanges();
+            recordGrade(changes, current, marks);
+            changes.apply(conn);
+            return true;
+        });
     }
     
-    private Submission extractSubmissionFromResultSet(ResultSet rs) throws SQLException {
-        Submission submission = new Submission();
-        submission.setSubmissionId(rs.getInt("submission_id"));
-        submission.setAssignmentId(rs.getInt("assignment_id"));
-        submission.setStudentId(rs.getInt("student_id"));
-        submission.setFilePath(rs.getString("file_path"));
-        submission.setOriginalFilename(rs.getString("original_filename"));
-        submission.setFileSizeKb(rs.getInt("file_size_kb"));
-        submission.setSubmissionDate(rs.getTimestamp("submission_date"));
-        submission.setStatus(rs.getString("status"));
-        submission.setLate(rs.getBoolean("is_late"));
-        
-        Integer marks = (Integer) rs.getObject("marks_obtained");
-        submission.setMarksObtained(marks);
-        submission.setFeedback(rs.getString("feedback"));
+    /**
+     * Grade many submissions in one transaction
+     * All submissions are checked and locked with one query, which only
+     * returns (and locks) those in the teacher's courses; marks must be
+     * within the assignment's max_marks. If any grade is invalid nothing is saved.
+     * @return reason for each rejected grade by submission id; empty when
+     *         every grade was saved
+     */
+    public Map<Integer, String> gradeSubmissions(List<Grade> grades, int gradedBy)
+            throws SQLException {
+        Map<Integer, String> errors = new LinkedHashMap<>();
+        if (grades.isEmpty()) {
+            return errors;
+        }
         
-        if (rs.getMetaData().getColumnCount() > 10) {
-            submission.setAssignmentTitle(rs.getString("assignment_title"));
-            submission.setMaxMarks(rs.getInt("max_marks"));
+        return queryExecutor.inTransaction(conn -> {
+            Object[] submissionIds = new Object[grades.size()];
+            for (int i = 0; i < grades.size(); i++) {
+                submissionIds[i] = grades.get(i).getSubmissionId();
+            }
+            Map<Integer, Submission> current = lockForGrading(conn, gradedBy, submissionIds);
             
-            try {
-                submission.setStudentName(rs.getString("student_name"));
-            } catch (SQLException e) { }
+            Set<Integer> seen = new HashSet<>();
+            for (Grade grade : grades) {
+                int submissionId = grade.getSubmissionId();
+                Submission submission = current.get(submissionId);
+                if (!seen.add(submissionId)) {
+                    errors.put(submissionId, "Graded more than once");
+                } else if (submission == null) {
+                    errors.put(submissionId, "Submission not found");
+                } else if (grade.getMarks() < 0 || grade.getMarks() > submission.getMaxMarks()) {
+                    errors.put(submissionId, "Marks must be between 0 and " + submission.getMaxMarks());
+                }
+            }
+            if (!errors.isEmpty()) {
+                return errors;
+            }
             
+            String updateSql = "UPDATE submissions SET marks_obtained = ?, feedback = ?, " +
+                        "graded_by = ?, graded_at = CURRENT_TIMESTAMP, status = 'GRADED' " +
+                        "WHERE submission_id = ?";
+            PreparedStatement pstmt = conn.prepareStatement(updateSql);
             try {
-                submission.setCourseName(rs.getString("course_name"));
-                submission.setCourseCode(rs.getString("course_code"));
-            } catch (SQLException e) { }
+                for (Grade grade : grades) {
+                    QueryExecutor.bind(pstmt, grade.getMarks(), grade.getFeedback(), gradedBy,
+                        grade.getSubmissionId());
+                    pstmt.addBatch();
+                }
+                QueryExecutor.executeBatch(pstmt, updateSql);
+            } finally {
+                QueryExecutor.close(null, pstmt);
+            }
+            
+            StatsChanges changes = new StatsChanges();
+            for (Grade grade : grades) {
+                recordGrade(changes, current.get(grade.getSubmissionId()), grade.getMarks());
+            }
+            changes.apply(conn);
+            return errors;
+        });
+    }
+    
+    public Submission getStudentSubmissionForAssignment(int studentId, int assignmentId)
+            throws SQLException {
+        String sql = "SELECT s.*, a.title as assignment_title, a.max_marks " +
+                    "FROM submissions s " +
+                    "JOIN assignments a ON s.assignment_id = a.assignment_id " +
+                    "WHERE s.student_id = ? AND s.assignment_id = ? " +
+                    "ORDER BY s.submission_date DESC LIMIT 1";
+        return queryExecutor.queryOne(Route.PRIMARY, sql, SUBMISSION_MAPPER, studentId, assignmentId);
+    }
+    
+    /**
+     * Those of the given file paths that at least one submission still records
+     * Content-addressed uploads are shared, so this is their reference count.
+     */
+    public Set<String> findReferencedFiles(Collection<String> filePaths) throws SQLException {
+        Set<String> referenced = new HashSet<>();
+        if (filePaths.isEmpty()) {
+            return referenced;
         }
-        
-        return submission;
+        String sql = "SELECT DISTINCT file_path FROM submissions WHERE file_path IN (" +
+                    QueryExecutor.placeholders(filePaths.size()) + ")";
+        for (Submission submission : queryExecutor.queryList(Route.PRIMARY, sql, SUBMISSION_MAPPER,
+                filePaths.toArray())) {
+            referenced.add(submission.getFilePath());
+        }
+        return referenced;
     }
     
-    private void closeResources(ResultSet rs, Statement stmt, Connection conn) {
-        try {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
-            if (conn != null) connectionPool.releaseConnection(conn);
-        } catch (SQLException e) {
-            System.err.println("Error closing resources: " + e.getMessage());
+    /**
+     * Current grading state and max_marks of submissions, locked until the
+     * transaction ends so summary deltas are taken from the values a grade
+     * replaces
+     * Ownership is checked in a subquery so that only submission rows are
+     * locked, never the assignment or course rows.
+     * @param teacherId only lock and return submissions in this teacher's
+     *        courses, or null for any
+     */
+    private static Map<Integer, Submission> lockForGrading(Connection conn, Integer teacherId,
+            Object... submissionIds) throws SQLException {
+        String sql = "SELECT s.submission_id, s.assignment_id, s.student_id, s.status, s.marks_obtained, " +
+                    "(SELECT a.max_marks FROM assignments a WHERE a.assignment_id = s.assignment_id) AS max_marks " +
+                    "FROM submissions s WHERE s.submission_id IN (" +
+                    QueryExecutor.placeholders(submissionIds.length) + ") ";
+        Object[] params = submissionIds;
+        if (teacherId != null) {
+            sql += "AND s.assignment_id IN (SELECT a.assignment_id FROM assignments a " +
+                   "JOIN courses c ON a.course_id = c.course_id WHERE c.teacher_id = ?) ";
+            params = Arrays.copyOf(submissionIds, submissionIds.length + 1);
+            params[submissionIds.length] = teacherId;
+        }
+        sql += "FOR UPDATE";
+        Map<Integer, Submission> submissions = new HashMap<>();
+        for (Submission submission : QueryExecutor.queryList(conn, sql, SUBMISSION_MAPPER, params)) {
+            submissions.put(submission.getSubmissionId(), submission);
         }
+        return submissions;
+    }
+    
+    private static void recordGrade(StatsChanges changes, Submission current, int marks) {
+        boolean wasGraded = "GRADED".equals(current.getStatus());
+        int oldMarks = current.getMarksObtained() != null ? current.getMarksObtained() : 0;
+        changes.submissionGraded(current.getAssignmentId(), current.getStudentId(), wasGraded, oldMarks, marks);
     }
 }
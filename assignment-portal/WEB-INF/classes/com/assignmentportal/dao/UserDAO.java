@@ -1,205 +1,175 @@
 package com.assignmentportal.dao;
 
+import com.assignmentportal.dao.QueryExecutor.Route;
 import com.assignmentportal.model.User;
 import com.assignmentportal.util.DatabaseConnectionPool;
 import com.assignmentportal.util.ValidationUtil;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * User Data Access Object
  * Handles all database operations for User entity
  */
 public class UserDAO {
-    private DatabaseConnectionPool connectionPool;
+    private enum Column {
+        USER_ID, USERNAME, EMAIL, FULL_NAME, ROLE, IS_ACTIVE, CREATED_AT, UPDATED_AT
+    }
+    
+    private static final RowMapper<User> USER_MAPPER = new RowMapper<User>(Column.class) {
+        @Override
+        protected User mapRow(Row row) throws SQLException {
+            User user = new User();
+            user.setUserId(row.getInt(Column.USER_ID));
+            user.setUsername(row.getString(Column.USERNAME));
+            user.setEmail(row.getString(Column.EMAIL));
+            user.setFullName(row.getString(Column.FULL_NAME));
+            user.setRole(row.getString(Column.ROLE));
+            user.setActive(row.getBoolean(Column.IS_ACTIVE));
+            user.setCreatedAt(row.getTimestamp(Column.CREATED_AT));
+            user.setUpdatedAt(row.getTimestamp(Column.UPDATED_AT));
+            return user;
+        }
+    };
+    
+    private static final Function<User, String> USER_POSITION =
+        user -> PageToken.encode(user.getCreatedAt(), user.getUserId());
+    
+    private static final EntityCache<Integer, User> USER_CACHE = new EntityCache<>("users");
+    
+    private final QueryExecutor queryExecutor;
     
     public UserDAO() {
-        this.connectionPool = DatabaseConnectionPool.getInstance();
+        this.queryExecutor = new QueryExecutor(DatabaseConnectionPool.getInstance());
     }
     
     /**
      * Authenticate user login
      */
     public User authenticate(String username, String password) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT * FROM users WHERE username = ? AND password = SHA2(?, 256) AND is_active = TRUE";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, username);
-            pstmt.setString(2, password);
-            
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractUserFromResultSet(rs);
-            }
-            return null;
-            
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT * FROM users WHERE username = ? AND password = SHA2(?, 256) AND is_active = TRUE";
+        return queryExecutor.queryOne(Route.PRIMARY, sql, USER_MAPPER, username, password);
     }
     
     /**
      * Create a new user
      */
     public boolean createUser(User user) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "INSERT INTO users (username, password, email, full_name, role, is_active) " +
-                        "VALUES (?, SHA2(?, 256), ?, ?, ?, ?)";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, user.getUsername());
-            pstmt.setString(2, user.getPassword());
-            pstmt.setString(3, user.getEmail());
-            pstmt.setString(4, user.getFullName());
-            pstmt.setString(5, user.getRole());
-            pstmt.setBoolean(6, user.isActive());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-            
-        } finally {
-            closeResources(null, pstmt, conn);
-        }
+        String sql = "INSERT INTO users (username, password, email, full_name, role, is_active) " +
+                    "VALUES (?, SHA2(?, 256), ?, ?, ?, ?)";
+        return queryExecutor.inTransaction(conn -> {
+            if (QueryExecutor.update(conn, sql,
+                    user.getUsername(), user.getPassword(), user.getEmail(), user.getFullName(),
+                    user.getRole(), user.isActive()) == 0) {
+                return false;
+            }
+            StatsChanges changes = new StatsChanges();
+            changes.userAdded(user.getRole(), user.isActive());
+            changes.apply(conn);
+            return true;
+        });
+    }
+    
+    /**
+     * Import users from CSV with the header username,password,email,full_name,role
+     * Passwords are hashed here rather than with SHA2() in the statement, so
+     * the rows can be sent as plain batched inserts.
+     */
+    public ImportResult importUsers(Reader csv) throws SQLException, IOException {
+        return new UserLoader(queryExecutor).load(csv);
     }
     
     /**
-     * Get user by ID
+     * Get user by ID, served from the entity cache when possible
+     * The returned object is shared and must not be modified.
      */
     public User getUserById(int userId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
+        return USER_CACHE.get(userId, id -> {
             String sql = "SELECT * FROM users WHERE user_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, userId);
-            
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractUserFromResultSet(rs);
-            }
-            return null;
-            
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+            return queryExecutor.queryOne(Route.PRIMARY, sql, USER_MAPPER, id);
+        });
     }
     
     /**
      * Get user by username
      */
     public User getUserByUsername(String username) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT * FROM users WHERE username = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, username);
-            
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return extractUserFromResultSet(rs);
-            }
-            return null;
-            
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT * FROM users WHERE username = ?";
+        return queryExecutor.queryOne(Route.PRIMARY, sql, USER_MAPPER, username);
     }
     
     /**
      * Get all users by role
      */
     public List<User> getUsersByRole(String role) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        List<User> users = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT * FROM users WHERE role = ? ORDER BY full_name";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, role);
-            
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                users.add(extractUserFromResultSet(rs));
-            }
-            return users;
-            
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT * FROM users WHERE role = ? ORDER BY full_name";
+        return queryExecutor.queryList(Route.READ, sql, USER_MAPPER, role);
     }
     
     /**
      * Get all users
      */
     public List<User> getAllUsers() throws SQLException {
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
-        List<User> users = new ArrayList<>();
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT * FROM users ORDER BY created_at DESC";
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
-            
-            while (rs.next()) {
-                users.add(extractUserFromResultSet(rs));
-            }
-            return users;
-            
-        } finally {
-            closeResources(rs, stmt, conn);
+        String sql = "SELECT * FROM users ORDER BY created_at DESC";
+        return queryExecutor.queryList(Route.READ, sql, USER_MAPPER);
+    }
+    
+    /**
+     * Stream all users, newest first, without loading them into memory
+     * @return number of users processed
+     */
+    public long forEachUser(RowCallback<User> callback) throws SQLException, IOException {
+        String sql = "SELECT * FROM users ORDER BY created_at DESC, user_id DESC";
+        return queryExecutor.stream(Route.READ, sql, USER_MAPPER, callback);
+    }
+    
+    /**
+     * Get one page of all users, newest first
+     * @param pageToken token from the previous page, or null for the first page
+     */
+    public Page<User> getUsersPage(String pageToken, int pageSize) throws SQLException {
+        PageToken after = PageToken.decode(pageToken);
+        Timestamp afterCreatedAt = after != null ? after.getTimestampKey() : null;
+        if (afterCreatedAt == null) {
+            String sql = "SELECT * FROM users ORDER BY created_at DESC, user_id DESC LIMIT ?";
+            return queryExecutor.queryPage(Route.READ, sql, USER_MAPPER, pageSize, USER_POSITION);
         }
+        String sql = "SELECT * FROM users WHERE (created_at, user_id) < (?, ?) " +
+                    "ORDER BY created_at DESC, user_id DESC LIMIT ?";
+        return queryExecutor.queryPage(Route.READ, sql, USER_MAPPER, pageSize, USER_POSITION,
+            afterCreatedAt, after.getId());
     }
     
     /**
      * Update user
      */
     public boolean updateUser(User user) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "UPDATE users SET email = ?, full_name = ?, role = ?, " +
+                    "is_active = ? WHERE user_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE users SET email = ?, full_name = ?, role = ?, " +
-                        "is_active = ? WHERE user_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, user.getEmail());
-            pstmt.setString(2, user.getFullName());
-            pstmt.setString(3, user.getRole());
-            pstmt.setBoolean(4, user.isActive());
-            pstmt.setInt(5, user.getUserId());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-            
+            return queryExecutor.inTransaction(conn -> {
+                User current = lockUser(conn, user.getUserId());
+                if (current == null) {
+                    return false;
+                }
+                QueryExecutor.update(conn, sql,
+                    user.getEmail(), user.getFullName(), user.getRole(), user.isActive(),
+                    user.getUserId());
+                StatsChanges changes = new StatsChanges();
+                changes.userChanged(current.getRole(), current.isActive(), user.getRole(), user.isActive());
+                changes.apply(conn);
+                return true;
+            });
         } finally {
-            closeResources(null, pstmt, conn);
+            USER_CACHE.invalidate(user.getUserId());
         }
     }
     
@@ -207,64 +177,57 @@ public class UserDAO {
      * Update user password
      */
     public boolean updatePassword(int userId, String newPassword) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE users SET password = md5(?) WHERE user_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, newPassword);
-            pstmt.setInt(2, userId);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-            
-        } finally {
-            closeResources(null, pstmt, conn);
-        }
+        String sql = "UPDATE users SET password = md5(?) WHERE user_id = ?";
+        return queryExecutor.update(sql, newPassword, userId) > 0;
     }
     
     /**
      * Activate/Deactivate user
      */
     public boolean toggleUserStatus(int userId, boolean isActive) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "UPDATE users SET is_active = ? WHERE user_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "UPDATE users SET is_active = ? WHERE user_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setBoolean(1, isActive);
-            pstmt.setInt(2, userId);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-            
+            return queryExecutor.inTransaction(conn -> {
+                User current = lockUser(conn, userId);
+                if (current == null) {
+                    return false;
+                }
+                QueryExecutor.update(conn, sql, isActive, userId);
+                StatsChanges changes = new StatsChanges();
+                changes.userChanged(current.getRole(), current.isActive(), current.getRole(), isActive);
+                changes.apply(conn);
+                return true;
+            });
         } finally {
-            closeResources(null, pstmt, conn);
+            USER_CACHE.invalidate(userId);
         }
     }
     
     /**
      * Delete user
+     * The delete cascades to the user's courses, enrollments and submissions,
+     * whose summary counts are corrected by a reconcile run started afterwards.
      */
     public boolean deleteUser(int userId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
+        String sql = "DELETE FROM users WHERE user_id = ?";
         try {
-            conn = connectionPool.getConnection();
-            String sql = "DELETE FROM users WHERE user_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, userId);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-            
+            boolean deleted = queryExecutor.inTransaction(conn -> {
+                User current = lockUser(conn, userId);
+                if (current == null) {
+                    return false;
+                }
+                QueryExecutor.update(conn, sql, userId);
+                StatsChanges changes = new StatsChanges();
+                changes.userRemoved(current.getRole(), current.isActive());
+                changes.apply(conn);
+                return true;
+            });
+            if (deleted) {
+                StatsReconciler.getInstance().requestRun();
+            }
+            return deleted;
         } finally {
-            closeResources(null, pstmt, conn);
+            USER_CACHE.invalidate(userId);
         }
     }
     
@@ -272,80 +235,101 @@ public class UserDAO {
      * Check if username exists
      */
     public boolean usernameExists(String username) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, username);
-            
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-            return false;
-            
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
+        return queryExecutor.queryInt(Route.PRIMARY, sql, username) > 0;
     }
     
     /**
      * Check if email exists
      */
     public boolean emailExists(String email) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        
-        try {
-            conn = connectionPool.getConnection();
-            String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, email);
-            
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-            return false;
-            
-        } finally {
-            closeResources(rs, pstmt, conn);
-        }
+        String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
+        return queryExecutor.queryInt(Route.PRIMARY, sql, email) > 0;
     }
     
     /**
-     * Extract User object from ResultSet
+     * Role and status of a user, locked until the transaction ends
      */
-    private User extractUserFromResultSet(ResultSet rs) throws SQLException {
-        User user = new User();
-        user.setUserId(rs.getInt("user_id"));
-        user.setUsername(rs.getString("username"));
-        user.setEmail(rs.getString("email"));
-        user.setFullName(rs.getString("full_name"));
-        user.setRole(rs.getString("role"));
-        user.setActive(rs.getBoolean("is_active"));
-        user.setCreatedAt(rs.getTimestamp("created_at"));
-        user.setUpdatedAt(rs.getTimestamp("updated_at"));
-        return user;
+    private static User lockUser(Connection conn, int userId) throws SQLException {
+        List<User> users = QueryExecutor.queryList(conn,
+            "SELECT user_id, role, is_active FROM users WHERE user_id = ? FOR UPDATE", USER_MAPPER, userId);
+        return users.isEmpty() ? null : users.get(0);
     }
     
     /**
-     * Close database resources
+     * Rejects rows whose username or email is already taken, checking each
+     * chunk with one query instead of one per row
      */
-    private void closeResources(ResultSet rs, Statement stmt, Connection conn) {
-        try {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
-            if (conn != null) connectionPool.releaseConnection(conn);
-        } catch (SQLException e) {
-            System.err.println("Error closing resources: " + e.getMessage());
+    private static final class UserLoader extends BulkLoader<User> {
+        UserLoader(QueryExecutor queryExecutor) {
+            super(queryExecutor,
+                "INSERT INTO users (username, password, email, full_name, role, is_active) " +
+                "VALUES (?, ?, ?, ?, ?, TRUE)",
+                "username", "password", "email", "full_name", "role");
+        }
+        
+        @Override
+        protected User parse(String[] fields) {
+            String role = fields[4].toUpperCase();
+            if (!ValidationUtil.isValidUsername(fields[0])) {
+                throw new IllegalArgumentException("Invalid username " + fields[0]);
+            }
+            if (!ValidationUtil.isValidPassword(fields[1])) {
+                throw new IllegalArgumentException("Password must be at least 6 characters");
+            }
+            if (!ValidationUtil.isValidEmail(fields[2])) {
+                throw new IllegalArgumentException("Invalid email " + fields[2]);
+            }
+            if (!ValidationUtil.isNotEmpty(fields[3])) {
+                throw new IllegalArgumentException("Full name is required");
+            }
+            if (!ValidationUtil.isValidRole(role)) {
+                throw new IllegalArgumentException("Invalid role " + fields[4]);
+            }
+            return new User(fields[0], ValidationUtil.hashPassword(fields[1]), fields[2], fields[3], role);
+        }
+        
+        @Override
+        protected void prepareChunk(Connection conn, List<Entry<User>> chunk) throws SQLException {
+            Object[] chunkUsernames = new Object[chunk.size()];
+            Object[] chunkEmails = new Object[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                chunkUsernames[i] = chunk.get(i).row.getUsername();
+                chunkEmails[i] = chunk.get(i).row.getEmail();
+            }
+            // Two lookups so each can use its unique index; an OR of the IN lists often cannot
+            String in = QueryExecutor.placeholders(chunk.size());
+            Set<String> usernames = new HashSet<>();
+            for (User existing : QueryExecutor.queryList(conn,
+                    "SELECT username FROM users WHERE username IN (" + in + ")", USER_MAPPER, chunkUsernames)) {
+                usernames.add(existing.getUsername());
+            }
+            Set<String> emails = new HashSet<>();
+            for (User existing : QueryExecutor.queryList(conn,
+                    "SELECT email FROM users WHERE email IN (" + in + ")", USER_MAPPER, chunkEmails)) {
+                emails.add(existing.getEmail());
+            }
+            
+            // The sets also catch duplicates within the chunk
+            for (Entry<User> entry : chunk) {
+                if (!usernames.add(entry.row.getUsername())) {
+                    entry.reject("Username already exists: " + entry.row.getUsername());
+                } else if (!emails.add(entry.row.getEmail())) {
+                    entry.reject("Email already exists: " + entry.row.getEmail());
+                }
+            }
+        }
+        
+        @Override
+        protected Object[] params(User user) {
+            return new Object[] {
+                user.getUsername(), user.getPassword(), user.getEmail(), user.getFullName(), user.getRole()
+            };
+        }
+        
+        @Override
+        protected void recordStats(User user, StatsChanges changes) {
+            changes.userAdded(user.getRole(), true);
         }
     }
 }
@@ -0,0 +1,68 @@
+package com.assignmentportal.filter;
+
+import com.assignmentportal.util.ReadConsistency;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.IOException;
+
+/**
+ * Carries the read-your-writes pin between a user's requests
+ * A write on one request (e.g. a submission POST) keeps the following
+ * requests of the same session reading from the primary database
+ */
+public class ReadConsistencyFilter implements Filter {
+    private static final String SESSION_ATTRIBUTE = "readPrimaryUntil";
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpSession session = httpRequest.getSession(false);
+        Long before = session != null ? (Long) session.getAttribute(SESSION_ATTRIBUTE) : null;
+        ReadConsistency.setPrimaryUntil(before);
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Long after = ReadConsistency.getPrimaryUntil();
+            ReadConsistency.clear();
+            if (after != null && !after.equals(before)) {
+                // The servlet may have created or invalidated the session
+                HttpSession current = httpRequest.getSession(false);
+                if (current != null) {
+                    try {
+                        current.setAttribute(SESSION_ATTRIBUTE, after);
+                    } catch (IllegalStateException e) {
+                        // Session invalidated during the request
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the current thread's pin to the session
+     * For a request completed asynchronously, whose writes happen after
+     * doFilter has returned.
+     */
+    public static void savePin(HttpSession session) {
+        Long until = ReadConsistency.getPrimaryUntil();
+        if (until != null && session != null) {
+            try {
+                session.setAttribute(SESSION_ATTRIBUTE, until);
+            } catch (IllegalStateException e) {
+                // Session invalidated meanwhile
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
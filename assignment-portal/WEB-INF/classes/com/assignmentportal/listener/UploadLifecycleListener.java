@@ -0,0 +1,29 @@
+package com.assignmentportal.listener;
+
+import com.assignmentportal.util.DatabaseConnectionPool;
+import com.assignmentportal.util.FileUploadHandler;
+import com.assignmentportal.util.Logger;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Stops the upload executor, then the connection pools, when the webapp is
+ * undeployed
+ * Uploads already accepted get upload.shutdownTimeoutSeconds to finish;
+ * new ones are refused from then on. The log writer is stopped last, so
+ * whatever the shutdown logs is still written.
+ */
+public class UploadLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        FileUploadHandler.shutdown();
+        DatabaseConnectionPool.shutdownInstance();
+        Logger.shutdown();
+    }
+}
@@ -27,6 +27,7 @@ public class Assignment {
     // Additional fields for display
     private int totalSubmissions;
     private int gradedSubmissions;
+    private String submissionStatus; // For display
     
     // Constructors
     public Assignment() {}
@@ -189,6 +190,17 @@ public class Assignment {
         this.gradedSubmissions = gradedSubmissions;
     }
     
+    /**
+     * Status of the viewing student's submission, or null if not submitted
+     */
+    public String getSubmissionStatus() {
+        return submissionStatus;
+    }
+    
+    public void setSubmissionStatus(String submissionStatus) {
+        this.submissionStatus = submissionStatus;
+    }
+    
     public boolean isOverdue() {
         return dueDate != null && dueDate.before(new Timestamp(System.currentTimeMillis()));
     }
@@ -0,0 +1,102 @@
+package com.assignmentportal.model;
+
+/**
+ * Course Progress Model Class
+ * A student's submission and grading totals in one enrolled course
+ */
+public class CourseProgress {
+    private int studentId;
+    private int courseId;
+    private String courseCode; // For display
+    private String courseName; // For display
+    private int totalAssignments;
+    private int submittedCount;
+    private int gradedCount;
+    private long marksTotal;
+    
+    // Constructors
+    public CourseProgress() {}
+    
+    // Getters and Setters
+    public int getStudentId() {
+        return studentId;
+    }
+    
+    public void setStudentId(int studentId) {
+        this.studentId = studentId;
+    }
+    
+    public int getCourseId() {
+        return courseId;
+    }
+    
+    public void setCourseId(int courseId) {
+        this.courseId = courseId;
+    }
+    
+    public String getCourseCode() {
+        return courseCode;
+    }
+    
+    public void setCourseCode(String courseCode) {
+        this.courseCode = courseCode;
+    }
+    
+    public String getCourseName() {
+        return courseName;
+    }
+    
+    public void setCourseName(String courseName) {
+        this.courseName = courseName;
+    }
+    
+    public int getTotalAssignments() {
+        return totalAssignments;
+    }
+    
+    public void setTotalAssignments(int totalAssignments) {
+        this.totalAssignments = totalAssignments;
+    }
+    
+    public int getSubmittedCount() {
+        return submittedCount;
+    }
+    
+    public void setSubmittedCount(int submittedCount) {
+        this.submittedCount = submittedCount;
+    }
+    
+    public int getGradedCount() {
+        return gradedCount;
+    }
+    
+    public void setGradedCount(int gradedCount) {
+        this.gradedCount = gradedCount;
+    }
+    
+    public long getMarksTotal() {
+        return marksTotal;
+    }
+    
+    public void setMarksTotal(long marksTotal) {
+        this.marksTotal = marksTotal;
+    }
+    
+    /**
+     * Average marks over graded submissions, or null before the first grade
+     */
+    public Double getAverageMarks() {
+        return gradedCount > 0 ? (double) marksTotal / gradedCount : null;
+    }
+    
+    @Override
+    public String toString() {
+        return "CourseProgress{" +
+                "studentId=" + studentId +
+                ", courseId=" + courseId +
+                ", totalAssignments=" + totalAssignments +
+                ", submittedCount=" + submittedCount +
+                ", gradedCount=" + gradedCount +
+                '}';
+    }
+}
@@ -11,6 +11,7 @@ public class Enrollment {
     private int studentId;
     private String studentName; // For display
     private String studentEmail; // For display
+    private String studentUsername; // For display
     private int courseId;
     private String courseCode; // For display
     private String courseName; // For display
@@ -59,6 +60,14 @@ public class Enrollment {
         this.studentEmail = studentEmail;
     }
     
+    public String getStudentUsername() {
+        return studentUsername;
+    }
+    
+    public void setStudentUsername(String studentUsername) {
+        this.studentUsername = studentUsername;
+    }
+    
     public int getCourseId() {
         return courseId;
     }
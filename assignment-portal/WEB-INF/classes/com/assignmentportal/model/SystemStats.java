@@ -0,0 +1,88 @@
+package com.assignmentportal.model;
+
+/**
+ * System Stats Model Class
+ * Site-wide counts shown on the admin dashboard
+ */
+public class SystemStats {
+    private long totalUsers;
+    private long activeStudents;
+    private long activeTeachers;
+    private long activeCourses;
+    private long activeAssignments;
+    private long totalSubmissions;
+    private long gradedSubmissions;
+    
+    // Constructors
+    public SystemStats() {}
+    
+    // Getters and Setters
+    public long getTotalUsers() {
+        return totalUsers;
+    }
+    
+    public void setTotalUsers(long totalUsers) {
+        this.totalUsers = totalUsers;
+    }
+    
+    public long getActiveStudents() {
+        return activeStudents;
+    }
+    
+    public void setActiveStudents(long activeStudents) {
+        this.activeStudents = activeStudents;
+    }
+    
+    public long getActiveTeachers() {
+        return activeTeachers;
+    }
+    
+    public void setActiveTeachers(long activeTeachers) {
+        this.activeTeachers = activeTeachers;
+    }
+    
+    public long getActiveCourses() {
+        return activeCourses;
+    }
+    
+    public void setActiveCourses(long activeCourses) {
+        this.activeCourses = activeCourses;
+    }
+    
+    public long getActiveAssignments() {
+        return activeAssignments;
+    }
+    
+    public void setActiveAssignments(long activeAssignments) {
+        this.activeAssignments = activeAssignments;
+    }
+    
+    public long getTotalSubmissions() {
+        return totalSubmissions;
+    }
+    
+    public void setTotalSubmissions(long totalSubmissions) {
+        this.totalSubmissions = totalSubmissions;
+    }
+    
+    public long getGradedSubmissions() {
+        return gradedSubmissions;
+    }
+    
+    public void setGradedSubmissions(long gradedSubmissions) {
+        this.gradedSubmissions = gradedSubmissions;
+    }
+    
+    @Override
+    public String toString() {
+        return "SystemStats{" +
+                "totalUsers=" + totalUsers +
+                ", activeStudents=" + activeStudents +
+                ", activeTeachers=" + activeTeachers +
+                ", activeCourses=" + activeCourses +
+                ", activeAssignments=" + activeAssignments +
+                ", totalSubmissions=" + totalSubmissions +
+                ", gradedSubmissions=" + gradedSubmissions +
+                '}';
+    }
+}
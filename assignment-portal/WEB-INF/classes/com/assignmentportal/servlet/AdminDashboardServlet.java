@@ -1,12 +1,32 @@
 package com.assignmentportal.servlet;
 
+import com.assignmentportal.dao.CourseDAO;
+import com.assignmentportal.dao.DashboardStatsDAO;
+import com.assignmentportal.dao.Page;
+import com.assignmentportal.dao.UserDAO;
+import com.assignmentportal.model.Course;
 import com.assignmentportal.model.User;
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.Logger;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
 import java.io.IOException;
+import java.sql.SQLException;
 
 public class AdminDashboardServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(AdminDashboardServlet.class);
+
+    private UserDAO userDAO;
+    private CourseDAO courseDAO;
+    private DashboardStatsDAO statsDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        userDAO = new UserDAO();
+        courseDAO = new CourseDAO();
+        statsDAO = new DashboardStatsDAO();
+    }
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -24,6 +44,28 @@ public class AdminDashboardServlet extends HttpServlet {
             return;
         }
         
+        try {
+            request.setAttribute("systemStats", statsDAO.getSystemStats());
+            
+            int pageSize = AppConfig.getInt("page.size", 50);
+            
+            // Paging one table keeps the other on its current page, so the
+            // current tokens go back into the links, but only valid ones
+            String usersPage = Page.validToken(request.getParameter("usersPage"));
+            Page<User> users = userDAO.getUsersPage(usersPage, pageSize);
+            request.setAttribute("users", users.getItems());
+            request.setAttribute("usersPage", usersPage);
+            request.setAttribute("usersNextPage", users.getNextPageToken());
+            
+            String coursesPage = Page.validToken(request.getParameter("coursesPage"));
+            Page<Course> courses = courseDAO.getCoursesPage(coursesPage, pageSize);
+            request.setAttribute("courses", courses.getItems());
+            request.setAttribute("coursesPage", coursesPage);
+            request.setAttribute("coursesNextPage", courses.getNextPageToken());
+        } catch (SQLException e) {
+            LOG.error("Error fetching data for admin dashboard", e);
+        }
+        
         request.getRequestDispatcher("/jsp/admin-dashboard.jsp").forward(request, response);
     }
 }
@@ -0,0 +1,100 @@
+package com.assignmentportal.servlet;
+
+import com.assignmentportal.dao.UserDAO;
+import com.assignmentportal.model.User;
+import com.assignmentportal.util.Logger;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.SQLException;
+
+/**
+ * CSV export of all users for admins
+ * Rows are streamed from the database straight to the response, so memory
+ * use does not grow with the number of users.
+ */
+public class AdminExportServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(AdminExportServlet.class);
+
+    private UserDAO userDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        userDAO = new UserDAO();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("user") == null) {
+            response.sendRedirect(request.getContextPath() + "/login");
+            return;
+        }
+        
+        User user = (User) session.getAttribute("user");
+        if (!"ADMIN".equals(user.getRole())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"users.csv\"");
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter out = response.getWriter();
+        out.print("user_id,username,full_name,email,role,is_active,created_at\r\n");
+        
+        try {
+            long count = userDAO.forEachUser(u -> {
+                out.print(u.getUserId());
+                out.print(',');
+                out.print(csv(u.getUsername()));
+                out.print(',');
+                out.print(csv(u.getFullName()));
+                out.print(',');
+                out.print(csv(u.getEmail()));
+                out.print(',');
+                out.print(u.getRole());
+                out.print(',');
+                out.print(u.isActive());
+                out.print(',');
+                out.print(u.getCreatedAt() != null ? u.getCreatedAt() : "");
+                out.print("\r\n");
+                // PrintWriter swallows write errors; stop reading rows once the client is gone
+                if (out.checkError()) {
+                    throw new IOException("Client closed the connection");
+                }
+            });
+            LOG.info("Admin {} exported {} users", user.getUserId(), count);
+        } catch (IOException e) {
+            LOG.warn("User export for admin {} stopped: {}", user.getUserId(), e.getMessage());
+            return;
+        } catch (SQLException e) {
+            // Headers are usually committed by now, so the truncated file is all we can signal
+            LOG.error("Error exporting users", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
+        }
+        out.flush();
+    }
+    
+    /**
+     * Quote a CSV field when it contains a separator, quote or line break
+     */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,105 @@
+package com.assignmentportal.servlet;
+
+import com.assignmentportal.dao.EnrollmentDAO;
+import com.assignmentportal.dao.ImportResult;
+import com.assignmentportal.dao.UserDAO;
+import com.assignmentportal.model.User;
+import com.assignmentportal.util.Logger;
+import com.assignmentportal.util.ValidationUtil;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Bulk import of users or enrollments from an uploaded CSV file
+ * The upload is parsed as it is read and loaded in chunked batches, so large
+ * rosters are never held in memory.
+ */
+public class AdminImportServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(AdminImportServlet.class);
+    
+    /** Rejected rows listed in the dashboard message; the rest are only counted */
+    private static final int ERRORS_SHOWN = 10;
+    
+    private UserDAO userDAO;
+    private EnrollmentDAO enrollmentDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        userDAO = new UserDAO();
+        enrollmentDAO = new EnrollmentDAO();
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("user") == null) {
+            response.sendRedirect(request.getContextPath() + "/login");
+            return;
+        }
+        
+        User user = (User) session.getAttribute("user");
+        if (!"ADMIN".equals(user.getRole())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        String type = request.getParameter("type");
+        Part filePart = request.getPart("file");
+        if (filePart == null || filePart.getSize() == 0) {
+            session.setAttribute("error", "Please choose a CSV file to import");
+            response.sendRedirect(request.getContextPath() + "/admin/dashboard");
+            return;
+        }
+        
+        long start = System.nanoTime();
+        try (Reader csv = new BufferedReader(
+                new InputStreamReader(filePart.getInputStream(), StandardCharsets.UTF_8), 64 * 1024)) {
+            ImportResult result;
+            if ("enrollments".equals(type)) {
+                result = enrollmentDAO.importEnrollments(csv);
+            } else if ("users".equals(type)) {
+                result = userDAO.importUsers(csv);
+            } else {
+                session.setAttribute("error", "Unknown import type");
+                response.sendRedirect(request.getContextPath() + "/admin/dashboard");
+                return;
+            }
+            
+            LOG.info("Admin {} imported {}: {} in {} ms", user.getUserId(), type, result,
+                (System.nanoTime() - start) / 1_000_000);
+            session.setAttribute("success", "Imported " + result.getRowsImported() + " of " +
+                result.getRowsRead() + " " + type);
+            if (result.getErrorCount() > 0) {
+                session.setAttribute("error", describeErrors(result));
+            }
+        } catch (SQLException | IOException e) {
+            LOG.error("Error importing {}", type, e);
+            session.setAttribute("error", "Import failed: " + ValidationUtil.escapeHtml(e.getMessage()));
+        }
+        
+        response.sendRedirect(request.getContextPath() + "/admin/dashboard");
+    }
+    
+    private static String describeErrors(ImportResult result) {
+        StringBuilder message = new StringBuilder();
+        message.append(result.getErrorCount()).append(" rows rejected");
+        List<ImportResult.RowError> errors = result.getErrors();
+        for (int i = 0; i < errors.size() && i < ERRORS_SHOWN; i++) {
+            message.append("<br>").append(ValidationUtil.escapeHtml(errors.get(i).toString()));
+        }
+        if (result.getErrorCount() > ERRORS_SHOWN) {
+            message.append("<br>...");
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package com.assignmentportal.servlet;
+
+import com.assignmentportal.dao.SubmissionDAO;
+import com.assignmentportal.dao.SubmissionDAO.Grade;
+import com.assignmentportal.util.Logger;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves many grades from one POST
+ * Takes parallel submissionId, marks and feedback parameters; rows with blank
+ * marks are skipped. The grades are validated and saved all-or-nothing.
+ */
+public class BatchGradeServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(BatchGradeServlet.class);
+    
+    /** Upper bound on grades accepted in one request */
+    private static final int MAX_GRADES = 1000;
+    
+    private SubmissionDAO submissionDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        submissionDAO = new SubmissionDAO();
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        HttpSession session = request.getSession(false);
+        if (session == null || !"TEACHER".equals(session.getAttribute("role"))) {
+            response.sendRedirect(request.getContextPath() + "/login");
+            return;
+        }
+        
+        int teacherId = (Integer) session.getAttribute("userId");
+        
+        String[] submissionIds = request.getParameterValues("submissionId");
+        String[] marks = request.getParameterValues("marks");
+        String[] feedback = request.getParameterValues("feedback");
+        if (submissionIds == null || marks == null || submissionIds.length != marks.length
+                || (feedback != null && feedback.length != submissionIds.length)) {
+            session.setAttribute("error", "Each grade needs a submission ID and marks");
+            response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
+            return;
+        }
+        
+        List<Grade> grades = new ArrayList<>();
+        try {
+            for (int i = 0; i < submissionIds.length; i++) {
+                if (marks[i] == null || marks[i].trim().isEmpty()) {
+                    continue;
+                }
+                String comment = feedback != null && !feedback[i].trim().isEmpty() ? feedback[i] : null;
+                grades.add(new Grade(Integer.parseInt(submissionIds[i]), Integer.parseInt(marks[i].trim()), comment));
+            }
+        } catch (NumberFormatException e) {
+            session.setAttribute("error", "Invalid marks value");
+            response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
+            return;
+        }
+        
+        if (grades.isEmpty()) {
+            session.setAttribute("error", "Enter marks for at least one submission");
+        } else if (grades.size() > MAX_GRADES) {
+            session.setAttribute("error", "At most " + MAX_GRADES + " grades can be saved at once");
+        } else {
+            try {
+                Map<Integer, String> errors = submissionDAO.gradeSubmissions(grades, teacherId);
+                if (errors.isEmpty()) {
+                    session.setAttribute("success", grades.size() + " submissions graded successfully!");
+                    LOG.info("Teacher {} graded {} submissions", teacherId, grades.size());
+                } else {
+                    StringBuilder message = new StringBuilder("No grades were saved:");
+                    for (Map.Entry<Integer, String> error : errors.entrySet()) {
+                        message.append("<br>Submission #").append(error.getKey())
+                            .append(": ").append(error.getValue());
+                    }
+                    session.setAttribute("error", message.toString());
+                }
+            } catch (SQLException e) {
+                LOG.error("Database error saving {} grades", grades.size(), e);
+                session.setAttribute("error", "Database error: " + e.getMessage());
+            }
+        }
+        
+        response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
+    }
+}
@@ -3,8 +3,8 @@ package com.assignmentportal.servlet;
 import com.assignmentportal.dao.AssignmentDAO;
 import com.assignmentportal.dao.CourseDAO;
 import com.assignmentportal.model.Assignment;
-import com.assignmentportal.model.Course;
 import com.assignmentportal.model.User;
+import com.assignmentportal.util.Logger;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -14,9 +14,10 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 
 public class CreateAssignmentServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(CreateAssignmentServlet.class);
+
     
     private AssignmentDAO assignmentDAO;
     private CourseDAO courseDAO;
@@ -52,7 +53,7 @@ public class CreateAssignmentServlet extends HttpServlet {
             int maxMarks = Integer.parseInt(request.getParameter("maxMarks"));
             
             // Find course by code
-            int courseId = getCourseIdByCode(courseCode, user.getUserId());
+            int courseId = courseDAO.findTeacherCourseId(user.getUserId(), courseCode);
             
             if (courseId == -1) {
                 session.setAttribute("error", "Course not found or you don't have permission to create assignments for this course.");
@@ -82,29 +83,18 @@ public class CreateAssignmentServlet extends HttpServlet {
             }
             
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Database error creating assignment", e);
             session.setAttribute("error", "Database error: " + e.getMessage());
         } catch (NumberFormatException e) {
             session.setAttribute("error", "Invalid marks value. Please enter a valid number.");
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error creating assignment", e);
             session.setAttribute("error", "Error creating assignment: " + e.getMessage());
         }
         
         response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
     }
     
-    private int getCourseIdByCode(String courseCode, int teacherId) throws SQLException {
-        // Get courses by teacher and find the matching course code
-        List<Course> courses = courseDAO.getCoursesByTeacher(teacherId);
-        for (Course course : courses) {
-            if (course.getCourseCode().equals(courseCode)) {
-                return course.getCourseId();
-            }
-        }
-        return -1;
-    }
-    
     private Timestamp parseDateTime(String dateTimeStr) throws ParseException {
         // Input format from HTML5 datetime-local: "2025-11-30T23:59"
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
@@ -2,6 +2,7 @@ package com.assignmentportal.servlet;
 
 import com.assignmentportal.dao.SubmissionDAO;
 import com.assignmentportal.model.Submission;
+import com.assignmentportal.util.Logger;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -9,6 +10,8 @@ import java.io.IOException;
 import java.sql.SQLException;
 
 public class GradeSubmissionServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(GradeSubmissionServlet.class);
+
     private SubmissionDAO submissionDAO;
     
     @Override
@@ -32,7 +35,7 @@ public class GradeSubmissionServlet extends HttpServlet {
         String marksStr = request.getParameter("marks");
         String feedback = request.getParameter("feedback");
         
-        System.out.println("Grading request - Submission ID: " + submissionIdStr + ", Marks: " + marksStr);
+        LOG.debug("Grading request - Submission ID: {}, Marks: {}", submissionIdStr, marksStr);
         
         if (submissionIdStr == null || marksStr == null) {
             session.setAttribute("error", "Submission ID and marks are required");
@@ -65,7 +68,7 @@ public class GradeSubmissionServlet extends HttpServlet {
             
             if (success) {
                 session.setAttribute("success", "Submission graded successfully!");
-                System.out.println("Submission graded successfully: " + submissionId);
+                LOG.info("Submission graded successfully: {}", submissionId);
             } else {
                 session.setAttribute("error", "Failed to grade submission");
             }
@@ -76,11 +79,11 @@ public class GradeSubmissionServlet extends HttpServlet {
             session.setAttribute("error", "Invalid marks value");
             response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Database error grading submission {}", submissionIdStr, e);
             session.setAttribute("error", "Database error: " + e.getMessage());
             response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error grading submission {}", submissionIdStr, e);
             session.setAttribute("error", "Error grading submission: " + e.getMessage());
             response.sendRedirect(request.getContextPath() + "/teacher/dashboard");
         }
@@ -2,6 +2,7 @@ package com.assignmentportal.servlet;
 
 import com.assignmentportal.dao.UserDAO;
 import com.assignmentportal.model.User;
+import com.assignmentportal.util.Logger;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -9,6 +10,8 @@ import java.io.IOException;
 import java.sql.SQLException;
 
 public class LoginServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(LoginServlet.class);
+
     private UserDAO userDAO;
     
     @Override
@@ -62,7 +65,7 @@ public class LoginServlet extends HttpServlet {
             }
             
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Database error during login", e);
             request.setAttribute("error", "Database error: " + e.getMessage());
             request.getRequestDispatcher("/jsp/login.jsp").forward(request, response);
         }
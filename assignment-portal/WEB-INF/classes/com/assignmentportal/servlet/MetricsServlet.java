@@ -0,0 +1,77 @@
+package com.assignmentportal.servlet;
+
+import com.assignmentportal.model.User;
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.DatabaseConnectionPool;
+import com.assignmentportal.util.MetricsRegistry;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Prometheus-style text endpoint for pool and application metrics
+ * Readable by admins or with the metricsToken context param. Local scrapers
+ * are let in only with metrics.allowLoopback, since behind a reverse proxy on
+ * the same host every request arrives from loopback.
+ */
+public class MetricsServlet extends HttpServlet {
+    private String metricsToken;
+    private boolean allowLoopback;
+
+    @Override
+    public void init() throws ServletException {
+        metricsToken = getServletContext().getInitParameter("metricsToken");
+        allowLoopback = AppConfig.getBoolean("metrics.allowLoopback", false);
+        // Make sure the pool exists so its metrics are registered
+        DatabaseConnectionPool.getInstance();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        if (!isAuthorized(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter out = response.getWriter();
+        MetricsRegistry.writeAll(out);
+        out.flush();
+    }
+
+    private boolean isAuthorized(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute("user") != null) {
+            User user = (User) session.getAttribute("user");
+            if ("ADMIN".equals(user.getRole())) {
+                return true;
+            }
+        }
+
+        if (metricsToken != null && !metricsToken.isEmpty()) {
+            String header = request.getHeader("Authorization");
+            if (header != null && MessageDigest.isEqual(
+                    ("Bearer " + metricsToken).getBytes(StandardCharsets.UTF_8),
+                    header.getBytes(StandardCharsets.UTF_8))) {
+                return true;
+            }
+        }
+
+        if (!allowLoopback) {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -2,9 +2,14 @@ package com.assignmentportal.servlet;
 
 import com.assignmentportal.dao.SubmissionDAO;
 import com.assignmentportal.dao.AssignmentDAO;
+import com.assignmentportal.dao.DashboardStatsDAO;
+import com.assignmentportal.dao.Page;
 import com.assignmentportal.model.User;
 import com.assignmentportal.model.Submission;
 import com.assignmentportal.model.Assignment;
+import com.assignmentportal.model.CourseProgress;
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.Logger;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -13,13 +18,17 @@ import java.sql.SQLException;
 import java.util.List;
 
 public class StudentDashboardServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(StudentDashboardServlet.class);
+
     private SubmissionDAO submissionDAO;
     private AssignmentDAO assignmentDAO;
+    private DashboardStatsDAO statsDAO;
     
     @Override
     public void init() throws ServletException {
         submissionDAO = new SubmissionDAO();
         assignmentDAO = new AssignmentDAO();
+        statsDAO = new DashboardStatsDAO();
     }
     
     @Override
@@ -28,22 +37,15 @@ public class StudentDashboardServlet extends HttpServlet {
         
         HttpSession session = request.getSession(false);
         
-        System.out.println("StudentDashboardServlet - Session: " + session);
-        if (session != null) {
-            System.out.println("StudentDashboardServlet - User in session: " + session.getAttribute("user"));
-            System.out.println("StudentDashboardServlet - UserId: " + session.getAttribute("userId"));
-            System.out.println("StudentDashboardServlet - Role: " + session.getAttribute("role"));
-        }
-        
         if (session == null || session.getAttribute("user") == null) {
-            System.out.println("StudentDashboardServlet - No session or user, redirecting to login");
+            LOG.debug("No session or user, redirecting to login");
             response.sendRedirect(request.getContextPath() + "/login");
             return;
         }
         
         User user = (User) session.getAttribute("user");
         if (!"STUDENT".equals(user.getRole())) {
-            System.out.println("StudentDashboardServlet - Not a student, redirecting to login");
+            LOG.debug("User {} is not a student, redirecting to login", user.getUserId());
             response.sendRedirect(request.getContextPath() + "/login");
             return;
         }
@@ -54,18 +56,22 @@ public class StudentDashboardServlet extends HttpServlet {
             // Fetch student's assignments (from enrolled courses)
             List<Assignment> assignments = assignmentDAO.getAssignmentsByStudent(studentId);
             request.setAttribute("assignments", assignments);
-            System.out.println("StudentDashboardServlet - Found " + assignments.size() + " assignments for student " + studentId);
+            LOG.debug("Found {} assignments for student {}", assignments.size(), studentId);
+            
+            // Per-course totals from the summary tables
+            List<CourseProgress> courseProgress = statsDAO.getCourseProgress(studentId);
+            request.setAttribute("courseProgress", courseProgress);
             
-            // Fetch student's submissions
-            List<Submission> submissions = submissionDAO.getSubmissionsByStudent(studentId);
-            request.setAttribute("submissions", submissions);
-            System.out.println("StudentDashboardServlet - Found " + submissions.size() + " submissions for student " + studentId);
+            // Fetch one page of the student's submissions, newest first
+            Page<Submission> submissions = submissionDAO.getSubmissionsByStudentPage(studentId,
+                request.getParameter("submissionsPage"), AppConfig.getInt("page.size", 50));
+            request.setAttribute("submissions", submissions.getItems());
+            request.setAttribute("submissionsNextPage", submissions.getNextPageToken());
+            LOG.debug("Found {} submissions for student {}", submissions.getItems().size(), studentId);
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error fetching data: " + e.getMessage());
+            LOG.error("Error fetching data for student dashboard", e);
         }
         
-        System.out.println("StudentDashboardServlet - Forwarding to student dashboard");
         request.getRequestDispatcher("/jsp/student-dashboard.jsp").forward(request, response);
     }
     
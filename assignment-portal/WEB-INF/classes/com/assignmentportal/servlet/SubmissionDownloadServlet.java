@@ -0,0 +1,265 @@
+package com.assignmentportal.servlet;
+
+import com.assignmentportal.dao.SubmissionDAO;
+import com.assignmentportal.model.Submission;
+import com.assignmentportal.util.Logger;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+/**
+ * Download of a submitted file by its student, the course teacher or an admin
+ *
+ * Supports a single byte range, ETag / Last-Modified validators and HEAD.
+ * A content-addressed blob's ETag is its SHA-256, since the blob is touched
+ * whenever another submission reuses it; other files use size and mtime.
+ * On Tomcat with sendfile enabled the body is handed to the connector, which
+ * sends it from the file with sendfile(2); elsewhere it goes out through
+ * FileChannel.transferTo.
+ */
+public class SubmissionDownloadServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(SubmissionDownloadServlet.class);
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final Pattern BLOB_NAME = Pattern.compile("[0-9a-f]{64}");
+    
+    private SubmissionDAO submissionDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        submissionDAO = new SubmissionDAO();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("userId") == null) {
+            response.sendRedirect(request.getContextPath() + "/login");
+            return;
+        }
+        
+        int userId = (Integer) session.getAttribute("userId");
+        int submissionId;
+        try {
+            submissionId = Integer.parseInt(request.getParameter("id"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid submission ID");
+            return;
+        }
+        
+        Submission submission;
+        try {
+            // Someone else's submission is reported as missing, not forbidden
+            submission = "ADMIN".equals(session.getAttribute("role"))
+                ? submissionDAO.getSubmissionById(submissionId)
+                : submissionDAO.getSubmissionForUser(submissionId, userId);
+        } catch (SQLException e) {
+            LOG.error("Database error loading submission {}", submissionId, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (submission == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        Path path = Paths.get(submission.getFilePath());
+        if (!Files.isRegularFile(path)) {
+            LOG.warn("File for submission {} is missing: {}", submissionId, path);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String etag = etag(path, length, lastModified);
+        
+        // The session is checked on every request, so caches must revalidate
+        response.setHeader("Cache-Control", "private, no-cache");
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        if (range != null && isIfRangeCurrent(request, etag, lastModified)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        
+        String contentType = getServletContext().getMimeType(submission.getOriginalFilename());
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        response.setContentLengthLong(count);
+        response.setHeader("Content-Disposition", contentDisposition(submission.getOriginalFilename()));
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break; // file shrank underneath us
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+    
+    /**
+     * Strong validator for the file: the hash a blob is named by, which stays
+     * the same when the blob is touched, or else its size and mtime
+     */
+    private static String etag(Path path, long length, long lastModified) {
+        String name = path.getFileName().toString();
+        Path parent = path.getParent();
+        if (BLOB_NAME.matcher(name).matches() && parent != null
+                && name.startsWith(parent.getFileName().toString())) {
+            return "\"" + name + "\"";
+        }
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+    
+    /**
+     * If-None-Match wins over If-Modified-Since, which has one-second precision
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+    
+    /**
+     * A Range request is only honoured if its If-Range, when present, still
+     * names the current file; otherwise the whole file is sent
+     */
+    private static boolean isIfRangeCurrent(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"")) {
+            return ifRange.trim().equals(etag);
+        }
+        long date = dateHeader(request, "If-Range");
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+    
+    private static boolean matchesEtag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * First and last byte of a single "bytes=" range
+     * @return {start, end}; an empty array to ignore the header (multiple
+     *         ranges or an unknown unit); null when it cannot be satisfied
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || length == 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+                end = Math.min(end, length - 1);
+            }
+            return start < 0 || start >= length || start > end ? null : new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+    
+    /**
+     * attachment with a plain ASCII filename and the exact name as filename*
+     */
+    static String contentDisposition(String fileName) {
+        String name = fileName != null ? new File(fileName).getName() : "submission";
+        String ascii = name.replaceAll("[^\\x20-\\x7E]", "_").replace("\"", "_").replace("\\", "_");
+        String encoded;
+        try {
+            encoded = URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not available", e);
+        }
+        return "attachment; filename=\"" + ascii + "\"; filename*=UTF-8''" + encoded;
+    }
+}
@@ -0,0 +1,205 @@
+package com.assignmentportal.servlet;
+
+import com.assignmentportal.dao.AssignmentDAO;
+import com.assignmentportal.dao.CourseDAO;
+import com.assignmentportal.dao.Page;
+import com.assignmentportal.dao.SubmissionDAO;
+import com.assignmentportal.model.Assignment;
+import com.assignmentportal.model.Course;
+import com.assignmentportal.model.Submission;
+import com.assignmentportal.util.Logger;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP of every submission to an assignment, for the course teacher or an admin
+ *
+ * The archive is written to the response as each file is read, one page of
+ * submissions at a time, so memory use does not grow with the number of
+ * submissions and no connection is held while a slow client downloads.
+ * Formats that are already compressed are stored as they are; every file
+ * sits in a folder named after its student.
+ */
+public class SubmissionExportServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(SubmissionExportServlet.class);
+
+    private static final int PAGE_SIZE = 100;
+    private static final List<String> STORED_EXTENSIONS = Arrays.asList("zip", "rar", "docx", "pdf");
+    
+    private SubmissionDAO submissionDAO;
+    private AssignmentDAO assignmentDAO;
+    private CourseDAO courseDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        submissionDAO = new SubmissionDAO();
+        assignmentDAO = new AssignmentDAO();
+        courseDAO = new CourseDAO();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("userId") == null) {
+            response.sendRedirect(request.getContextPath() + "/login");
+            return;
+        }
+        
+        int userId = (Integer) session.getAttribute("userId");
+        String role = (String) session.getAttribute("role");
+        if (!"TEACHER".equals(role) && !"ADMIN".equals(role)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        int assignmentId;
+        try {
+            assignmentId = Integer.parseInt(request.getParameter("assignmentId"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid assignment ID");
+            return;
+        }
+        
+        Assignment assignment;
+        try {
+            assignment = assignmentDAO.getAssignmentById(assignmentId);
+            // Another teacher's assignment is reported as missing, not forbidden
+            if (assignment != null && "TEACHER".equals(role)) {
+                Course course = courseDAO.getCourseById(assignment.getCourseId());
+                if (course == null || course.getTeacherId() != userId) {
+                    assignment = null;
+                }
+            }
+        } catch (SQLException e) {
+            LOG.error("Database error loading assignment {}", assignmentId, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (assignment == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        response.setContentType("application/zip");
+        response.setHeader("Content-Disposition", SubmissionDownloadServlet.contentDisposition(
+            safeName(assignment.getTitle(), "assignment-" + assignmentId) + ".zip"));
+        response.setHeader("Cache-Control", "no-store");
+        
+        ZipOutputStream zip = new ZipOutputStream(response.getOutputStream(), StandardCharsets.UTF_8);
+        byte[] buffer = new byte[64 * 1024];
+        int written = 0;
+        int missing = 0;
+        try {
+            String pageToken = null;
+            do {
+                Page<Submission> page = submissionDAO.getSubmissionsByAssignmentPage(
+                    assignmentId, pageToken, PAGE_SIZE);
+                for (Submission submission : page.getItems()) {
+                    if (writeEntry(zip, submission, buffer)) {
+                        written++;
+                    } else {
+                        missing++;
+                    }
+                }
+                pageToken = page.getNextPageToken();
+            } while (pageToken != null);
+        } catch (SQLException e) {
+            // Left without its central directory, so the client sees a broken
+            // archive rather than one that silently lacks files
+            LOG.error("Error exporting submissions for assignment {}", assignmentId, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+            return;
+        }
+        zip.finish();
+        zip.flush();
+        LOG.info("User {} exported {} submissions for assignment {} ({} files missing)",
+            userId, written, assignmentId, missing);
+    }
+    
+    /**
+     * Add one submission's file under its student's folder
+     * @return false if the file is missing from disk
+     */
+    private static boolean writeEntry(ZipOutputStream zip, Submission submission, byte[] buffer)
+            throws IOException {
+        Path path = Paths.get(submission.getFilePath());
+        if (!Files.isRegularFile(path)) {
+            LOG.warn("File for submission {} is missing: {}", submission.getSubmissionId(), path);
+            return false;
+        }
+        
+        String fileName = safeName(submission.getOriginalFilename(), "submission");
+        ZipEntry entry = new ZipEntry(safeName(submission.getStudentName(), "student")
+            + "_" + submission.getStudentId() + "/" + fileName);
+        if (submission.getSubmissionDate() != null) {
+            entry.setTime(submission.getSubmissionDate().getTime());
+        }
+        if (STORED_EXTENSIONS.contains(extension(fileName))) {
+            // A stored entry's header carries its size and CRC, so the file is
+            // read once for the CRC before it is copied
+            long size = Files.size(path);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc(path, buffer));
+        }
+        
+        zip.putNextEntry(entry);
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+        }
+        zip.closeEntry();
+        return true;
+    }
+    
+    private static long crc(Path path, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+    
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot + 1).toLowerCase() : "";
+    }
+    
+    /**
+     * A name usable as a path segment on any system, or the fallback if
+     * nothing is left of it
+     */
+    private static String safeName(String name, String fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        String safe = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        // Leading dots would make ".." or hidden entries
+        safe = safe.replaceAll("^\\.+", "_");
+        return safe.isEmpty() ? fallback : safe;
+    }
+}
@@ -4,24 +4,51 @@ import com.assignmentportal.dao.AssignmentDAO;
 import com.assignmentportal.dao.SubmissionDAO;
 import com.assignmentportal.model.Assignment;
 import com.assignmentportal.model.Submission;
+import com.assignmentportal.filter.ReadConsistencyFilter;
+import com.assignmentportal.util.AppConfig;
 import com.assignmentportal.util.FileUploadHandler;
+import com.assignmentportal.util.Logger;
+import com.assignmentportal.util.MultipartSpooler;
 
 import javax.servlet.*;
 import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.*;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Student submission of an assignment file
+ *
+ * With upload.async=true a multipart POST is handled asynchronously: the body
+ * is read with a ReadListener as it arrives, so no container thread waits on
+ * a slow client, and the submission is saved on the upload executor, which
+ * then sends the redirect and completes the request.
+ */
 @MultipartConfig(
     fileSizeThreshold = 1024 * 1024 * 2,  // 2MB
     maxFileSize = 1024 * 1024 * 10,       // 10MB
     maxRequestSize = 1024 * 1024 * 15     // 15MB
 )
 public class SubmitAssignmentServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(SubmitAssignmentServlet.class);
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final long MAX_REQUEST_SIZE = 1024 * 1024 * 15; // as in @MultipartConfig
+
     private SubmissionDAO submissionDAO;
     private AssignmentDAO assignmentDAO;
     private FileUploadHandler fileHandler;
+    private boolean asyncUploads;
+    private long asyncTimeoutMillis;
+    private Path spoolDirectory;
     
     @Override
     public void init() throws ServletException {
@@ -40,11 +67,22 @@ public class SubmitAssignmentServlet extends HttpServlet {
         java.io.File uploadDir = new java.io.File(uploadPath);
         if (!uploadDir.exists()) {
             uploadDir.mkdirs();
-            System.out.println("Created upload directory: " + uploadPath);
+            LOG.info("Created upload directory: {}", uploadPath);
         }
         
         fileHandler = new FileUploadHandler(uploadPath);
-        System.out.println("SubmitAssignmentServlet initialized with upload path: " + uploadPath);
+        fileHandler.startBlobSweeper(submissionDAO::findReferencedFiles);
+        
+        asyncUploads = AppConfig.getBoolean("upload.async", false);
+        asyncTimeoutMillis = TimeUnit.SECONDS.toMillis(AppConfig.getLong("upload.asyncTimeoutSeconds", 300));
+        File tempDir = (File) getServletContext().getAttribute(ServletContext.TEMPDIR);
+        spoolDirectory = (tempDir != null ? tempDir : new File(System.getProperty("java.io.tmpdir"))).toPath();
+        LOG.info("SubmitAssignmentServlet initialized with upload path: {}", uploadPath);
+    }
+    
+    @Override
+    public void destroy() {
+        fileHandler.stopBlobSweeper();
     }
     
     @Override
@@ -58,107 +96,369 @@ public class SubmitAssignmentServlet extends HttpServlet {
         }
         
         int studentId = (Integer) session.getAttribute("userId");
+        
+        String contentType = request.getContentType();
+        if (asyncUploads && request.isAsyncSupported()
+                && contentType != null && contentType.toLowerCase().startsWith("multipart/form-data")) {
+            startAsyncUpload(request, response, session, studentId);
+            return;
+        }
+        
         String assignmentIdStr = request.getParameter("assignmentId");
         
-        System.out.println("Submission request - Student ID: " + studentId + ", Assignment ID: " + assignmentIdStr);
+        LOG.debug("Submission request - Student ID: {}, Assignment ID: {}", studentId, assignmentIdStr);
         
-        if (assignmentIdStr == null || assignmentIdStr.isEmpty()) {
-            session.setAttribute("error", "Assignment ID is required");
+        try {
+            // Get uploaded file
+            Part filePart = request.getPart("file");
+            
+            Assignment assignment = checkSubmission(session, assignmentIdStr, filePart);
+            if (assignment != null) {
+                // Staging and saving run on the bounded upload executor; when
+                // too many uploads are already waiting the request is turned
+                // away instead of being held with its file
+                Future<Integer> saved;
+                try {
+                    saved = fileHandler.submitUpload(fairnessKey(assignment),
+                        () -> saveSubmission(assignment, studentId, filePart));
+                } catch (RejectedExecutionException e) {
+                    rejectBusy(response, studentId, assignment, e);
+                    return;
+                }
+                reportResult(session, awaitSubmission(saved), studentId, assignment);
+            }
+        } catch (Exception e) {
+            reportFailure(session, assignmentIdStr, e);
+        }
+        
+        response.sendRedirect(request.getContextPath() + "/student/dashboard");
+    }
+    
+    private void startAsyncUpload(HttpServletRequest request, HttpServletResponse response,
+            HttpSession session, int studentId) throws IOException {
+        if (request.getContentLengthLong() > MAX_REQUEST_SIZE) {
+            session.setAttribute("error", tooLargeMessage());
             response.sendRedirect(request.getContextPath() + "/student/dashboard");
             return;
         }
+        MultipartSpooler spooler;
+        try {
+            spooler = new MultipartSpooler(request.getContentType(), spoolDirectory);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        new AsyncUpload(request, session, studentId, spooler);
+    }
+    
+    /**
+     * Look up the assignment and check the uploaded file
+     * @return the assignment, or null after putting the reason in the session
+     */
+    private Assignment checkSubmission(HttpSession session, String assignmentIdStr, Part filePart)
+            throws SQLException {
+        if (assignmentIdStr == null || assignmentIdStr.isEmpty()) {
+            session.setAttribute("error", "Assignment ID is required");
+            return null;
+        }
         
         int assignmentId;
         try {
             assignmentId = Integer.parseInt(assignmentIdStr);
         } catch (NumberFormatException e) {
             session.setAttribute("error", "Invalid assignment ID");
-            response.sendRedirect(request.getContextPath() + "/student/dashboard");
-            return;
+            return null;
         }
         
-        try {
-            // Get assignment details
-            Assignment assignment = assignmentDAO.getAssignmentById(assignmentId);
-            if (assignment == null) {
-                session.setAttribute("error", "Assignment not found");
-                response.sendRedirect(request.getContextPath() + "/student/dashboard");
-                return;
-            }
-            
-            // Check if already submitted
-            Submission existing = submissionDAO.getStudentSubmissionForAssignment(
-                studentId, assignmentId);
-            if (existing != null) {
-                session.setAttribute("error", "You have already submitted this assignment");
-                response.sendRedirect(request.getContextPath() + "/student/dashboard");
-                return;
-            }
-            
-            // Get uploaded file
-            Part filePart = request.getPart("file");
-            
-            if (filePart == null || filePart.getSize() == 0) {
-                session.setAttribute("error", "Please select a file to upload");
-                response.sendRedirect(request.getContextPath() + "/student/dashboard");
-                return;
-            }
-            
-            System.out.println("File part received - Size: " + filePart.getSize() + ", Name: " + filePart.getSubmittedFileName());
-            
-            // Validate file
-            FileUploadHandler.ValidationResult validation = fileHandler.validateFile(filePart);
-            if (!validation.isValid()) {
-                session.setAttribute("error", validation.getMessage());
-                response.sendRedirect(request.getContextPath() + "/student/dashboard");
-                return;
-            }
-            
-            // Upload file
-            String subfolder = "assignments/" + assignmentId;
-            FileUploadHandler.UploadResult uploadResult = 
-                fileHandler.uploadFile(filePart, subfolder);
-            
-            if (!uploadResult.isSuccess()) {
-                session.setAttribute("error", uploadResult.getMessage());
-                response.sendRedirect(request.getContextPath() + "/student/dashboard");
-                return;
-            }
-            
-            System.out.println("File uploaded successfully: " + uploadResult.getFilePath());
-            
+        // Get assignment details
+        Assignment assignment = assignmentDAO.getAssignmentById(assignmentId);
+        if (assignment == null) {
+            session.setAttribute("error", "Assignment not found");
+            return null;
+        }
+        
+        if (filePart == null || filePart.getSize() == 0) {
+            session.setAttribute("error", "Please select a file to upload");
+            return null;
+        }
+        
+        LOG.debug("File part received - Size: {}, Name: {}", filePart.getSize(), filePart.getSubmittedFileName());
+        
+        // Validate file
+        FileUploadHandler.ValidationResult validation = fileHandler.validateFile(filePart);
+        if (!validation.isValid()) {
+            session.setAttribute("error", validation.getMessage());
+            return null;
+        }
+        return assignment;
+    }
+    
+    /**
+     * Uploads are queued per course, so a deadline in one course does not
+     * hold up the others
+     */
+    private static String fairnessKey(Assignment assignment) {
+        return "course-" + assignment.getCourseId();
+    }
+    
+    private static void reportResult(HttpSession session, int submissionId, int studentId, Assignment assignment) {
+        if (submissionId > 0) {
+            session.setAttribute("success", "Assignment submitted successfully!");
+            LOG.info("Submission {} created by student {} for assignment {}",
+                submissionId, studentId, assignment.getAssignmentId());
+        } else {
+            session.setAttribute("error", "You have already submitted this assignment");
+        }
+    }
+    
+    private static void reportFailure(HttpSession session, String assignmentId, Exception e) {
+        if (e instanceof SQLException) {
+            LOG.error("Database error submitting assignment {}", assignmentId, e);
+            session.setAttribute("error", "Database error: " + e.getMessage());
+        } else {
+            LOG.error("Error submitting assignment {}", assignmentId, e);
+            session.setAttribute("error", "Error submitting assignment: " + e.getMessage());
+        }
+    }
+    
+    private static void rejectBusy(HttpServletResponse response, int studentId, Assignment assignment,
+            RejectedExecutionException e) throws IOException {
+        LOG.warn("Upload from student {} for assignment {} rejected: {}",
+            studentId, assignment.getAssignmentId(), e.getMessage());
+        response.setHeader("Retry-After", String.valueOf(AppConfig.getInt("upload.retryAfterSeconds", 5)));
+        response.sendError(SC_TOO_MANY_REQUESTS, "Too many uploads in progress, please try again shortly");
+    }
+    
+    private static String tooLargeMessage() {
+        return String.format("Upload exceeds the maximum request size of %d MB", MAX_REQUEST_SIZE / (1024 * 1024));
+    }
+    
+    /**
+     * Stage the file and save the submission, on an upload worker
+     * The file is written under a temporary name before taking a connection;
+     * it is renamed into place inside the submission's transaction and removed
+     * again if the submission is not saved.
+     * @return the new submission's ID, or -1 if the student already submitted
+     */
+    private int saveSubmission(Assignment assignment, int studentId, Part filePart)
+            throws SQLException, IOException {
+        String subfolder = "assignments/" + assignment.getAssignmentId();
+        try (FileUploadHandler.StagedFile upload = fileHandler.stageFile(filePart, subfolder)) {
             // Check if late
             boolean isLate = assignment.getDueDate().before(new Timestamp(System.currentTimeMillis()));
             
             // Create submission
             Submission submission = new Submission();
-            submission.setAssignmentId(assignmentId);
+            submission.setAssignmentId(assignment.getAssignmentId());
             submission.setStudentId(studentId);
-            submission.setFilePath(uploadResult.getFilePath());
+            submission.setFilePath(upload.getFilePath());
             submission.setOriginalFilename(filePart.getSubmittedFileName());
-            submission.setFileSizeKb((int) (uploadResult.getFileSize() / 1024));
+            submission.setFileSizeKb((int) (upload.getFileSize() / 1024));
             submission.setLate(isLate);
             submission.setStatus(isLate ? "LATE" : "SUBMITTED");
             
-            int submissionId = submissionDAO.createSubmission(submission);
-            
+            // Duplicates, including a concurrent double submit, are caught
+            // by the insert rather than by checking first
+            int submissionId = submissionDAO.submitAssignment(submission, upload::publish);
             if (submissionId > 0) {
-                session.setAttribute("success", "Assignment submitted successfully!");
-                System.out.println("Submission created with ID: " + submissionId);
-            } else {
-                session.setAttribute("error", "Failed to submit assignment");
+                upload.keep();
             }
+            return submissionId;
+        }
+    }
+    
+    /**
+     * Wait for saveSubmission, rethrowing what it threw
+     */
+    private static int awaitSubmission(Future<Integer> saved) throws SQLException, IOException {
+        try {
+            return saved.get();
+        } catch (InterruptedException e) {
+            saved.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the upload to be saved");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    /**
+     * One submission in async mode
+     * The container calls the ReadListener as body data arrives, and the
+     * spooler parses it on the spot; once it is all read the save is queued
+     * on the upload executor. Whichever of the save, a failure or the async
+     * timeout comes first sends the response. The spooled file belongs to
+     * the save once it has been queued.
+     */
+    private final class AsyncUpload implements ReadListener, AsyncListener {
+        private final HttpSession session;
+        private final int studentId;
+        private final String dashboardUrl;
+        private final MultipartSpooler spooler;
+        private final AsyncContext asyncContext;
+        private final ServletInputStream input;
+        private final byte[] buffer = new byte[8192];
+        private final AtomicBoolean responded = new AtomicBoolean();
+        private volatile boolean queued;
+        private long received;
+        
+        AsyncUpload(HttpServletRequest request, HttpSession session, int studentId, MultipartSpooler spooler)
+                throws IOException {
+            this.session = session;
+            this.studentId = studentId;
+            this.dashboardUrl = request.getContextPath() + "/student/dashboard";
+            this.spooler = spooler;
+            this.asyncContext = request.startAsync();
+            asyncContext.setTimeout(asyncTimeoutMillis);
+            asyncContext.addListener(this);
+            this.input = request.getInputStream();
+            input.setReadListener(this);
+        }
+        
+        @Override
+        public void onDataAvailable() throws IOException {
+            int count;
+            while (!responded.get() && input.isReady() && (count = input.read(buffer)) != -1) {
+                received += count;
+                if (received > MAX_REQUEST_SIZE) {
+                    fail(tooLargeMessage());
+                    return;
+                }
+                spooler.write(buffer, 0, count);
+            }
+        }
+        
+        @Override
+        public void onAllDataRead() throws IOException {
+            if (responded.get()) {
+                return;
+            }
+            spooler.finish();
+            String assignmentIdStr = spooler.getParameter("assignmentId");
+            Part filePart = spooler.getPart("file");
+            LOG.debug("Async submission request - Student ID: {}, Assignment ID: {}", studentId, assignmentIdStr);
             
-            response.sendRedirect(request.getContextPath() + "/student/dashboard");
+            Assignment checked;
+            try {
+                checked = checkSubmission(session, assignmentIdStr, filePart);
+            } catch (SQLException e) {
+                reportFailure(session, assignmentIdStr, e);
+                checked = null;
+            }
+            if (checked == null) {
+                spooler.close();
+                respond();
+                return;
+            }
+            Assignment assignment = checked;
             
-        } catch (SQLException e) {
-            e.printStackTrace();
-            session.setAttribute("error", "Database error: " + e.getMessage());
-            response.sendRedirect(request.getContextPath() + "/student/dashboard");
-        } catch (Exception e) {
-            e.printStackTrace();
-            session.setAttribute("error", "Error submitting assignment: " + e.getMessage());
-            response.sendRedirect(request.getContextPath() + "/student/dashboard");
+            queued = true;
+            try {
+                fileHandler.submitUpload(fairnessKey(assignment), () -> {
+                    try {
+                        reportResult(session, saveSubmission(assignment, studentId, filePart), studentId, assignment);
+                    } catch (Exception e) {
+                        reportFailure(session, assignmentIdStr, e);
+                    } finally {
+                        spooler.close();
+                        ReadConsistencyFilter.savePin(session);
+                        respond();
+                    }
+                    return null;
+                }, () -> {
+                    // Still queued when the webapp stopped
+                    queued = false;
+                    fail("The server was restarting, please submit again");
+                });
+            } catch (RejectedExecutionException e) {
+                queued = false;
+                spooler.close();
+                if (responded.compareAndSet(false, true)) {
+                    try {
+                        rejectBusy((HttpServletResponse) asyncContext.getResponse(), studentId, assignment, e);
+                    } finally {
+                        complete();
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            LOG.warn("Upload from student {} failed after {} bytes: {}", studentId, received, t.getMessage());
+            fail("Error submitting assignment: " + t.getMessage());
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            LOG.warn("Upload from student {} timed out after {} bytes", studentId, received);
+            if (!queued) {
+                fail("The upload took too long, please try again");
+            } else {
+                // The result is left in the session when the save finishes
+                respond();
+            }
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            if (!queued) {
+                spooler.close();
+            }
+            complete();
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+        
+        private void fail(String message) {
+            if (!responded.get()) {
+                session.setAttribute("error", message);
+            }
+            if (!queued) {
+                spooler.close();
+            }
+            respond();
+        }
+        
+        /**
+         * Redirect to the dashboard, which shows the message left in the
+         * session, and complete the request; only the first call responds
+         */
+        private void respond() {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                ((HttpServletResponse) asyncContext.getResponse()).sendRedirect(dashboardUrl);
+            } catch (IOException | IllegalStateException e) {
+                LOG.debug("Could not redirect after upload from student {}: {}", studentId, e.getMessage());
+            } finally {
+                complete();
+            }
+        }
+        
+        private void complete() {
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container after an error
+            }
         }
     }
 }
@@ -3,10 +3,14 @@ package com.assignmentportal.servlet;
 import com.assignmentportal.dao.SubmissionDAO;
 import com.assignmentportal.dao.AssignmentDAO;
 import com.assignmentportal.dao.CourseDAO;
+import com.assignmentportal.dao.DashboardStatsDAO;
+import com.assignmentportal.dao.Page;
 import com.assignmentportal.model.User;
 import com.assignmentportal.model.Submission;
 import com.assignmentportal.model.Assignment;
 import com.assignmentportal.model.Course;
+import com.assignmentportal.util.AppConfig;
+import com.assignmentportal.util.Logger;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -15,15 +19,19 @@ import java.sql.SQLException;
 import java.util.List;
 
 public class TeacherDashboardServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(TeacherDashboardServlet.class);
+
     private SubmissionDAO submissionDAO;
     private AssignmentDAO assignmentDAO;
     private CourseDAO courseDAO;
+    private DashboardStatsDAO statsDAO;
     
     @Override
     public void init() throws ServletException {
         submissionDAO = new SubmissionDAO();
         assignmentDAO = new AssignmentDAO();
         courseDAO = new CourseDAO();
+        statsDAO = new DashboardStatsDAO();
     }
     
     @Override
@@ -32,12 +40,8 @@ public class TeacherDashboardServlet extends HttpServlet {
         
         HttpSession session = request.getSession(false);
         
-        System.out.println("TeacherDashboardServlet - Session: " + session);
-        if (session != null) {
-            System.out.println("TeacherDashboardServlet - User in session: " + session.getAttribute("user"));
-        }
-        
         if (session == null || session.getAttribute("user") == null) {
+            LOG.debug("No session or user, redirecting to login");
             response.sendRedirect(request.getContextPath() + "/login");
             return;
         }
@@ -49,33 +53,30 @@ public class TeacherDashboardServlet extends HttpServlet {
         }
         
         try {
-            // Fetch teacher's courses
-            List<Course> courses = courseDAO.getCoursesByTeacher(user.getUserId());
+            // Four queries per page load, however many courses the teacher has;
+            // counts come from the summary tables
+            int teacherId = user.getUserId();
+            List<Course> courses = courseDAO.getCoursesByTeacher(teacherId);
             request.setAttribute("courses", courses);
-            System.out.println("TeacherDashboardServlet - Found " + courses.size() + " courses");
             
-            // Fetch all assignments for teacher's courses
-            List<Assignment> allAssignments = new java.util.ArrayList<>();
-            for (Course course : courses) {
-                List<Assignment> assignments = assignmentDAO.getAssignmentsByCourse(course.getCourseId());
-                allAssignments.addAll(assignments);
-            }
-            request.setAttribute("assignments", allAssignments);
-            System.out.println("TeacherDashboardServlet - Found " + allAssignments.size() + " assignments");
+            List<Assignment> assignments = assignmentDAO.getAssignmentsByTeacher(teacherId);
+            request.setAttribute("assignments", assignments);
             
-            // Fetch all submissions for teacher's courses
-            List<Submission> allSubmissions = new java.util.ArrayList<>();
-            for (Assignment assignment : allAssignments) {
-                List<Submission> submissions = submissionDAO.getSubmissionsByAssignment(assignment.getAssignmentId());
-                allSubmissions.addAll(submissions);
-            }
+            // One page of submissions, newest first, across all the teacher's courses
+            Page<Submission> submissions = submissionDAO.getSubmissionsByTeacherPage(teacherId,
+                request.getParameter("submissionsPage"), AppConfig.getInt("page.size", 50));
+            request.setAttribute("submissions", submissions.getItems());
+            request.setAttribute("submissionsNextPage", submissions.getNextPageToken());
+            
+            request.setAttribute("enrollmentCount", statsDAO.getEnrollmentCountByTeacher(teacherId));
             
-            request.setAttribute("submissions", allSubmissions);
-            System.out.println("TeacherDashboardServlet - Found " + allSubmissions.size() + " submissions");
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Teacher {}: {} courses, {} assignments, {} submissions",
+                    teacherId, courses.size(), assignments.size(), submissions.getItems().size());
+            }
             
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error fetching data: " + e.getMessage());
+            LOG.error("Error fetching data for teacher dashboard", e);
         }
         
         request.getRequestDispatcher("/jsp/teacher-dashboard.jsp").forward(request, response);
@@ -0,0 +1,94 @@
+package com.assignmentportal.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the connection pool's size limit from what happened since the last tick
+ *
+ * Grows the limit when borrowers waited longer than the target or timed out,
+ * unless connection hold time (a proxy for query latency) has risen well above
+ * its baseline: then the database is the bottleneck and more connections would
+ * only add load, so the limit steps back instead. Shrinks toward the observed
+ * average concurrency when nobody had to wait.
+ */
+final class AdaptivePoolSizer {
+    /** Hold time this many times the baseline means the database is saturated */
+    private static final double SATURATION_FACTOR = 2.0;
+    /** Headroom kept above the average number of connections in use */
+    private static final double HEADROOM = 1.5;
+    /** Weight of the newest calm window in the hold-time baseline */
+    private static final double BASELINE_WEIGHT = 0.2;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetWaitNanos;
+
+    private long lastTick;
+    private long lastWaitCount;
+    private long lastWaitSum;
+    private long lastHoldCount;
+    private long lastHoldSum;
+    private long lastTimeouts;
+    private double baselineHoldNanos;
+
+    AdaptivePoolSizer(int minSize, int maxSize, long targetWaitMillis) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+        this.lastTick = System.nanoTime();
+    }
+
+    int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @param currentLimit the limit in force now
+     * @param pendingThreads borrowers waiting at this moment
+     * @return the limit to use until the next tick
+     */
+    int nextLimit(PoolMetrics metrics, int currentLimit, int pendingThreads) {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastTick);
+
+        long waitCount = metrics.borrowWait.getCount();
+        long waitSum = metrics.borrowWait.getSumNanos();
+        long holdCount = metrics.holdTime.getCount();
+        long holdSum = metrics.holdTime.getSumNanos();
+        long timeouts = metrics.timeouts.sum();
+
+        long borrows = waitCount - lastWaitCount;
+        double meanWait = borrows > 0 ? (waitSum - lastWaitSum) / (double) borrows : 0.0;
+        long releases = holdCount - lastHoldCount;
+        double meanHold = releases > 0 ? (holdSum - lastHoldSum) / (double) releases : 0.0;
+        // Little's law: average number of connections in use over the window
+        double avgInUse = (holdSum - lastHoldSum) / (double) elapsed;
+        boolean timedOut = timeouts > lastTimeouts;
+
+        lastTick = now;
+        lastWaitCount = waitCount;
+        lastWaitSum = waitSum;
+        lastHoldCount = holdCount;
+        lastHoldSum = holdSum;
+        lastTimeouts = timeouts;
+
+        boolean starved = timedOut || meanWait > targetWaitNanos || pendingThreads > 0;
+        boolean dbSaturated = baselineHoldNanos > 0 && meanHold > baselineHoldNanos * SATURATION_FACTOR;
+        int step = Math.max(1, currentLimit / 4);
+
+        if (!starved && meanHold > 0) {
+            baselineHoldNanos = baselineHoldNanos == 0 ? meanHold
+                : baselineHoldNanos * (1 - BASELINE_WEIGHT) + meanHold * BASELINE_WEIGHT;
+        }
+
+        int limit = currentLimit;
+        if (starved && dbSaturated) {
+            limit = currentLimit - 1;
+        } else if (starved) {
+            limit = currentLimit + step;
+        } else if (avgInUse * HEADROOM < currentLimit) {
+            limit = Math.max((int) Math.ceil(avgInUse * HEADROOM), currentLimit - step);
+        }
+        return Math.max(minSize, Math.min(maxSize, limit));
+    }
+}
@@ -0,0 +1,67 @@
+package com.assignmentportal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Application settings from db.properties on the classpath
+ * A JVM system property with the same key overrides the file, which lets
+ * deployments and tools change a setting without editing the webapp
+ */
+public class AppConfig {
+
+    private AppConfig() {
+    }
+
+    /**
+     * Lazy holder: the file is read once, on first use, without locking afterwards
+     */
+    private static class Holder {
+        static final Properties PROPERTIES = load();
+    }
+
+    private static Properties load() {
+        // Logger reads its settings from here, so this reports on the console directly
+        Properties props = new Properties();
+        try (InputStream input = AppConfig.class.getClassLoader()
+                .getResourceAsStream("db.properties")) {
+            if (input == null) {
+                System.out.println("Unable to find db.properties");
+            } else {
+                props.load(input);
+            }
+        } catch (IOException ex) {
+            System.err.println("Error loading configuration: " + ex.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Get a setting, or null if it is not configured
+     */
+    public static String get(String key) {
+        String value = System.getProperty(key);
+        return value != null ? value : Holder.PROPERTIES.getProperty(key);
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        return value != null ? Long.parseLong(value.trim()) : defaultValue;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,345 @@
+package com.assignmentportal.util;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes log events to the console from a single background thread
+ *
+ * Callers claim a slot in a pre-allocated ring buffer with one CAS and return;
+ * the message is formatted and written by the writer thread, so request
+ * threads never wait on the console stream lock. When the buffer is full the
+ * drop policy decides what happens to the event.
+ */
+final class AsyncLogAppender implements MetricsSource {
+
+    /**
+     * What to do with an event when the ring buffer is full
+     */
+    enum DropPolicy {
+        /** Drop the event, whatever its level */
+        DISCARD,
+        /** Drop DEBUG and INFO; write WARN and ERROR on the calling thread */
+        DISCARD_BELOW_WARN
+    }
+
+    private static final DateTimeFormatter TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final class Slot {
+        volatile long sequence;
+        long timestamp;
+        LogLevel level;
+        String logger;
+        String thread;
+        String message;
+        int argCount;
+        Object arg0;
+        Object arg1;
+        Object[] args;
+
+        Object arg(int index) {
+            if (args != null) {
+                return args[index];
+            }
+            return index == 0 ? arg0 : arg1;
+        }
+
+        void clear() {
+            level = null;
+            logger = null;
+            thread = null;
+            message = null;
+            arg0 = null;
+            arg1 = null;
+            args = null;
+        }
+    }
+
+    private final boolean async;
+    private final DropPolicy dropPolicy;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private long droppedReported;
+
+    private final Thread writer;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+
+    // Held while rendering and writing to the console; a lock rather than a
+    // monitor so a virtual thread blocked on console output can unmount
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Guarded by writeLock
+    private final StringBuilder outBuffer = new StringBuilder(4096);
+    private final StringBuilder errBuffer = new StringBuilder(1024);
+
+    AsyncLogAppender(boolean async, int bufferSize, DropPolicy dropPolicy) {
+        this.async = async;
+        this.dropPolicy = dropPolicy;
+
+        int capacity = 64;
+        while (capacity < bufferSize) {
+            capacity <<= 1;
+        }
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+
+        if (async) {
+            writer = new Thread(this::drainLoop, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Queue one event; arguments beyond two must be passed as an array
+     */
+    void append(LogLevel level, String logger, String message,
+                int argCount, Object arg0, Object arg1, Object[] args) {
+        if (!async || !running) {
+            writeNow(level, logger, message, argCount, arg0, arg1, args);
+            return;
+        }
+
+        long pos = tail.get();
+        for (;;) {
+            Slot slot = slots[(int) (pos & mask)];
+            long diff = slot.sequence - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slot.timestamp = System.currentTimeMillis();
+                    slot.level = level;
+                    slot.logger = logger;
+                    slot.thread = Thread.currentThread().getName();
+                    slot.message = message;
+                    slot.argCount = argCount;
+                    slot.arg0 = arg0;
+                    slot.arg1 = arg1;
+                    slot.args = args;
+                    slot.sequence = pos + 1;
+                    if (sleeping) {
+                        LockSupport.unpark(writer);
+                    }
+                    return;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // Buffer is full
+                if (dropPolicy == DropPolicy.DISCARD_BELOW_WARN && level.compareTo(LogLevel.WARN) >= 0) {
+                    writeNow(level, logger, message, argCount, arg0, arg1, args);
+                } else {
+                    dropped.increment();
+                }
+                return;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private void writeNow(LogLevel level, String logger, String message,
+                          int argCount, Object arg0, Object arg1, Object[] args) {
+        Slot slot = new Slot();
+        slot.timestamp = System.currentTimeMillis();
+        slot.level = level;
+        slot.logger = logger;
+        slot.thread = Thread.currentThread().getName();
+        slot.message = message;
+        slot.argCount = argCount;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.args = args;
+        writeLock.lock();
+        try {
+            render(slot);
+            flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void drainLoop() {
+        while (running || hasPending()) {
+            if (!drain()) {
+                sleeping = true;
+                if (!hasPending() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    private boolean hasPending() {
+        return slots[(int) (head & mask)].sequence == head + 1;
+    }
+
+    /**
+     * Write everything currently published, then flush once
+     * @return true if any event was written
+     */
+    private boolean drain() {
+        boolean any = false;
+        writeLock.lock();
+        try {
+            for (;;) {
+                Slot slot = slots[(int) (head & mask)];
+                if (slot.sequence != head + 1) {
+                    break;
+                }
+                render(slot);
+                slot.clear();
+                slot.sequence = head + slots.length;
+                head++;
+                any = true;
+                if (outBuffer.length() > 32768) {
+                    flush();
+                }
+            }
+            reportDropped();
+            flush();
+        } finally {
+            writeLock.unlock();
+        }
+        return any;
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total > droppedReported) {
+            errBuffer.append(TIMESTAMP.format(Instant.now()))
+                .append(" WARN  [log-writer] AsyncLogAppender - Dropped ")
+                .append(total - droppedReported)
+                .append(" log events, ring buffer full\n");
+            droppedReported = total;
+        }
+    }
+
+    private void render(Slot slot) {
+        StringBuilder sb = slot.level.compareTo(LogLevel.WARN) >= 0 ? errBuffer : outBuffer;
+        sb.append(TIMESTAMP.format(Instant.ofEpochMilli(slot.timestamp))).append(' ');
+        String levelName = slot.level.name();
+        sb.append(levelName);
+        for (int i = levelName.length(); i < 6; i++) {
+            sb.append(' ');
+        }
+        sb.append('[').append(slot.thread).append("] ")
+            .append(slot.logger).append(" - ");
+        Throwable thrown = format(sb, slot);
+        sb.append('\n');
+        if (thrown != null) {
+            StringWriter trace = new StringWriter();
+            thrown.printStackTrace(new PrintWriter(trace));
+            sb.append(trace);
+        }
+        written.increment();
+    }
+
+    /**
+     * Substitute {} placeholders in order
+     * @return a trailing Throwable argument not consumed by a placeholder
+     */
+    private static Throwable format(StringBuilder sb, Slot slot) {
+        String message = slot.message;
+        int next = 0;
+        int start = 0;
+        if (message == null) {
+            sb.append("null");
+        } else {
+            int index;
+            while (next < slot.argCount && (index = message.indexOf("{}", start)) >= 0) {
+                sb.append(message, start, index);
+                Object arg = slot.arg(next++);
+                if (arg instanceof Object[]) {
+                    sb.append(Arrays.toString((Object[]) arg));
+                } else {
+                    sb.append(arg);
+                }
+                start = index + 2;
+            }
+            sb.append(message, start, message.length());
+        }
+        if (next < slot.argCount && slot.arg(slot.argCount - 1) instanceof Throwable) {
+            return (Throwable) slot.arg(slot.argCount - 1);
+        }
+        return null;
+    }
+
+    private void flush() {
+        if (outBuffer.length() > 0) {
+            write(System.out, outBuffer);
+        }
+        if (errBuffer.length() > 0) {
+            write(System.err, errBuffer);
+        }
+    }
+
+    private static void write(PrintStream stream, StringBuilder buffer) {
+        stream.print(buffer);
+        stream.flush();
+        buffer.setLength(0);
+    }
+
+    /**
+     * Stop accepting queued events and write out what is left
+     */
+    void shutdown() {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Events published while the writer was exiting
+            drain();
+        }
+    }
+
+    long getWrittenCount() {
+        return written.sum();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    @Override
+    public void writeMetrics(PrintWriter out) {
+        out.println("# TYPE app_log_events_written_total counter");
+        out.println("app_log_events_written_total " + getWrittenCount());
+        out.println("# TYPE app_log_events_dropped_total counter");
+        out.println("app_log_events_dropped_total " + getDroppedCount());
+        out.println("# TYPE app_log_queue_depth gauge");
+        out.println("app_log_queue_depth " + getQueueDepth());
+        out.println("# TYPE app_log_queue_capacity gauge");
+        out.println("app_log_queue_capacity " + slots.length);
+    }
+}
@@ -0,0 +1,188 @@
+package com.assignmentportal.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free container for pooled connections
+ *
+ * Borrowing tries, in order: the connection this thread released last
+ * (thread affinity), a CAS scan of the shared list, and finally a direct
+ * handoff from a releasing thread through a SynchronousQueue.
+ * Releasing is O(1): it flips the entry state and hands it to a waiter if any.
+ * Waiting parks in SynchronousQueue rather than a monitor, so virtual threads
+ * unmount while they wait.
+ */
+final class ConnectionBag {
+    private final CopyOnWriteArrayList<PooledConnection> sharedList = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<WeakReference<PooledConnection>> lastUsed = new ThreadLocal<>();
+    private final SynchronousQueue<PooledConnection> handoffQueue = new SynchronousQueue<>(true);
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * Borrow an idle connection, waiting up to the timeout for one to be released
+     * @return the borrowed entry (now IN_USE) or null on timeout
+     */
+    PooledConnection borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        WeakReference<PooledConnection> ref = lastUsed.get();
+        if (ref != null) {
+            PooledConnection pooled = ref.get();
+            if (pooled != null && pooled.compareAndSetState(
+                    PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_IN_USE)) {
+                return pooled;
+            }
+        }
+
+        waiters.incrementAndGet();
+        try {
+            for (PooledConnection pooled : sharedList) {
+                if (pooled.compareAndSetState(
+                        PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_IN_USE)) {
+                    return pooled;
+                }
+            }
+
+            long remaining = unit.toNanos(timeout);
+            while (remaining > 0) {
+                long start = System.nanoTime();
+                PooledConnection pooled = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (pooled == null) {
+                    return null;
+                }
+                if (pooled.compareAndSetState(
+                        PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_IN_USE)) {
+                    return pooled;
+                }
+                remaining -= System.nanoTime() - start;
+            }
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return a borrowed connection to the bag
+     * @return false if the entry was no longer IN_USE (e.g. reclaimed as a leak)
+     */
+    boolean requite(PooledConnection pooled) {
+        if (!pooled.compareAndSetState(
+                PooledConnection.STATE_IN_USE, PooledConnection.STATE_NOT_IN_USE)) {
+            return false;
+        }
+        handoff(pooled);
+        // A virtual thread serves a single request, so affinity would never be
+        // used again and would only cost a thread-local map per request
+        if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+            lastUsed.set(new WeakReference<>(pooled));
+        }
+        return true;
+    }
+
+    /**
+     * Add a new connection; it is handed straight to a waiting thread if there is one
+     */
+    void add(PooledConnection pooled) {
+        sharedList.add(pooled);
+        handoff(pooled);
+    }
+
+    /**
+     * Add a new connection that the calling thread already owns
+     */
+    void addInUse(PooledConnection pooled) {
+        pooled.setState(PooledConnection.STATE_IN_USE);
+        sharedList.add(pooled);
+    }
+
+    /**
+     * Remove a connection the caller owns (IN_USE or RESERVED)
+     */
+    boolean remove(PooledConnection pooled) {
+        if (!pooled.compareAndSetState(PooledConnection.STATE_IN_USE, PooledConnection.STATE_REMOVED)
+                && !pooled.compareAndSetState(PooledConnection.STATE_RESERVED, PooledConnection.STATE_REMOVED)) {
+            return false;
+        }
+        return sharedList.remove(pooled);
+    }
+
+    /**
+     * Take an idle connection out of circulation without borrowing it
+     */
+    boolean reserve(PooledConnection pooled) {
+        return pooled.compareAndSetState(
+            PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_RESERVED);
+    }
+
+    /**
+     * Put a reserved connection back into circulation
+     */
+    void unreserve(PooledConnection pooled) {
+        if (pooled.compareAndSetState(
+                PooledConnection.STATE_RESERVED, PooledConnection.STATE_NOT_IN_USE)) {
+            handoff(pooled);
+        }
+    }
+
+    /**
+     * Spin until a waiter takes the connection, someone else claims it, or nobody waits
+     */
+    private void handoff(PooledConnection pooled) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (pooled.getState() != PooledConnection.STATE_NOT_IN_USE
+                    || handoffQueue.offer(pooled)) {
+                return;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the entries currently in the given state
+     */
+    List<PooledConnection> values(int state) {
+        List<PooledConnection> result = new ArrayList<>();
+        for (PooledConnection pooled : sharedList) {
+            if (pooled.getState() == state) {
+                result.add(pooled);
+            }
+        }
+        return result;
+    }
+
+    List<PooledConnection> values() {
+        return new ArrayList<>(sharedList);
+    }
+
+    int count(int state) {
+        int count = 0;
+        for (PooledConnection pooled : sharedList) {
+            if (pooled.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return sharedList.size();
+    }
+
+    int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    void clear() {
+        sharedList.clear();
+    }
+}
@@ -0,0 +1,134 @@
+package com.assignmentportal.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader
+ * Reads one record at a time, so input of any size is parsed in constant
+ * memory. Handles quoted fields with embedded commas, doubled quotes and line
+ * breaks, CRLF or LF line endings, and a leading UTF-8 byte order mark.
+ * Blank lines are skipped. Unquoted fields are trimmed.
+ */
+public final class CsvReader implements Closeable {
+    private static final int NONE = -2;
+
+    private final Reader in;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int line = 1;
+    private int recordLine;
+    private boolean started;
+    private int pushedBack = NONE;
+
+    public CsvReader(Reader in) {
+        this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+    }
+
+    /**
+     * @return the next record's fields, or null at the end of the input
+     * @throws IOException on read errors or a quoted field left open at the end
+     */
+    public String[] readRecord() throws IOException {
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = read();
+            }
+        }
+        while (c == '\r' || c == '\n') {
+            skipLineEnd(c);
+            c = read();
+        }
+        if (c < 0) {
+            return null;
+        }
+
+        recordLine = line;
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.toString().trim().isEmpty()) {
+                field.setLength(0);
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                addField(wasQuoted);
+                wasQuoted = false;
+            } else if (c < 0 || c == '\r' || c == '\n') {
+                addField(wasQuoted);
+                if (c >= 0) {
+                    skipLineEnd(c);
+                }
+                return fields.toArray(new String[0]);
+            } else if (!wasQuoted) {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Line number on which the last record returned by readRecord started
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void addField(boolean wasQuoted) {
+        fields.add(wasQuoted ? field.toString() : field.toString().trim());
+        field.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return in.read();
+    }
+
+    /**
+     * Consume the rest of a line ending that starts with c
+     */
+    private void skipLineEnd(int c) throws IOException {
+        line++;
+        if (c == '\r') {
+            int next = read();
+            if (next != '\n') {
+                pushedBack = next;
+            }
+        }
+    }
+}
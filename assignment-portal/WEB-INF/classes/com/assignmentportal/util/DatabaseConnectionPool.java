@@ -1,23 +1,48 @@
 package com.assignmentportal.util;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Database Connection Pool using Multithreading
- * Thread-safe connection pool implementation with blocking queue
+ * Thread-safe connection pool built on a lock-free connection bag:
+ * borrow and release never take a shared lock, and a thread usually gets
+ * back the connection it released last
  */
-public class DatabaseConnectionPool {
-    private static DatabaseConnectionPool instance;
-    private BlockingQueue<Connection> connectionPool;
-    private BlockingQueue<Connection> usedConnections;
+public class DatabaseConnectionPool implements DatabaseConnectionPoolMXBean, MetricsSource {
+    private static final Logger LOG = Logger.getLogger(DatabaseConnectionPool.class);
+    private static final String PRIMARY_PREFIX = "db.";
+    private static final String REPLICA_PREFIX = "db.replica.";
+    
+    private static volatile DatabaseConnectionPool instance;
+    // Taken only while the pool is created; a lock rather than a monitor so
+    // callers waiting on a slow first start do not pin virtual threads
+    private static final ReentrantLock INSTANCE_LOCK = new ReentrantLock();
+    
+    private ConnectionBag connectionBag;
+    private final ConcurrentHashMap<Connection, PooledConnection> pooledByConnection =
+        new ConcurrentHashMap<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger warmupPending = new AtomicInteger();
+    /** Current cap on totalConnections: maxPoolSize, or the adaptive limit */
+    private final AtomicInteger sizeLimit = new AtomicInteger();
+    private final PoolMetrics metrics = new PoolMetrics();
+    private final String poolName;
+    private final String mbeanName;
+    
+    /** Read replica pool, or null when db.replica.url is not configured */
+    private DatabaseConnectionPool replica;
     
     private String url;
     private String username;
@@ -26,64 +51,140 @@ public class DatabaseConnectionPool {
     private int initialPoolSize;
     private int maxPoolSize;
     private long maxWaitTime;
+    private long idleTimeout;
+    private long maxLifetime;
+    private long keepaliveTime;
+    private int validationTimeoutSeconds;
+    private long housekeepingPeriod;
+    private int statementCacheSize;
+    private long leakDetectionThreshold;
+    private double leakDetectionSampleRate;
+    private boolean leakReclaim;
+    private int warmupThreads;
+    private AdaptivePoolSizer adaptiveSizer;
+    private long adaptiveInterval;
+    
+    private ScheduledExecutorService housekeeper;
+    private ExecutorService warmupExecutor;
+    private volatile boolean closed;
     
-    private DatabaseConnectionPool() {
-        loadConfiguration();
+    private DatabaseConnectionPool(String poolName, String prefix) {
+        this.poolName = poolName;
+        this.mbeanName = "com.assignmentportal:type=DatabaseConnectionPool,name=" + poolName;
+        loadConfiguration(prefix);
         initializePool();
+        startHousekeeper();
+        MetricsRegistry.register(this);
+        MetricsRegistry.registerMBean(this, mbeanName);
     }
     
     /**
      * Singleton pattern with thread-safe lazy initialization
+     * Once created the pool is returned without locking. If creating it
+     * fails, the next call tries again.
      */
-    public static synchronized DatabaseConnectionPool getInstance() {
-        if (instance == null) {
-            instance = new DatabaseConnectionPool();
+    public static DatabaseConnectionPool getInstance() {
+        DatabaseConnectionPool pool = instance;
+        if (pool != null) {
+            return pool;
+        }
+        INSTANCE_LOCK.lock();
+        try {
+            if (instance == null) {
+                instance = createPrimary();
+            }
+            return instance;
+        } finally {
+            INSTANCE_LOCK.unlock();
         }
-        return instance;
     }
     
     /**
-     * Load database configuration from properties file
+     * Shut the pools down if they were ever started; called when the webapp
+     * stops. A later getInstance() starts new ones.
      */
-    private void loadConfiguration() {
-        Properties props = new Properties();
-        try (InputStream input = getClass().getClassLoader()
-                .getResourceAsStream("db.properties")) {
-            if (input == null) {
-                System.out.println("Unable to find db.properties");
-                setDefaultConfiguration();
-                return;
+    public static void shutdownInstance() {
+        INSTANCE_LOCK.lock();
+        try {
+            if (instance != null) {
+                instance.shutdown();
+                instance = null;
             }
-            props.load(input);
-            
-            this.url = props.getProperty("db.url");
-            this.username = props.getProperty("db.username");
-            this.password = props.getProperty("db.password");
-            this.driver = props.getProperty("db.driver");
-            this.initialPoolSize = Integer.parseInt(
-                props.getProperty("db.pool.initialSize", "5"));
-            this.maxPoolSize = Integer.parseInt(
-                props.getProperty("db.pool.maxTotal", "20"));
-            this.maxWaitTime = Long.parseLong(
-                props.getProperty("db.pool.maxWaitMillis", "10000"));
-            
-        } catch (IOException ex) {
-            System.err.println("Error loading database configuration: " + ex.getMessage());
-            setDefaultConfiguration();
+        } finally {
+            INSTANCE_LOCK.unlock();
+        }
+    }
+    
+    private static DatabaseConnectionPool createPrimary() {
+        DatabaseConnectionPool primary = new DatabaseConnectionPool("primary", PRIMARY_PREFIX);
+        if (AppConfig.get(REPLICA_PREFIX + "url") != null) {
+            try {
+                primary.replica = new DatabaseConnectionPool("replica", REPLICA_PREFIX);
+            } catch (RuntimeException e) {
+                // Not kept, so the next attempt starts both pools afresh
+                primary.shutdown();
+                throw e;
+            }
+            ReadConsistency.setStickinessMillis(
+                AppConfig.getLong(REPLICA_PREFIX + "stickinessMillis", 10000));
         }
+        return primary;
     }
     
     /**
-     * Set default configuration if properties file is not found
+     * Look up prefix + key, falling back to the primary db.* setting
+     * so a replica only needs to override what differs
      */
-    private void setDefaultConfiguration() {
-        this.url = "jdbc:mysql://localhost:3306/assignment_portal";
-        this.username = "root";
-        this.password = "root";
-        this.driver = "com.mysql.cj.jdbc.Driver";
-        this.initialPoolSize = 5;
-        this.maxPoolSize = 20;
-        this.maxWaitTime = 10000;
+    private static String setting(String prefix, String key, String defaultValue) {
+        return AppConfig.get(prefix + key, AppConfig.get(PRIMARY_PREFIX + key, defaultValue));
+    }
+    
+    /**
+     * Load database configuration from db.properties (see AppConfig)
+     */
+    private void loadConfiguration(String prefix) {
+        this.url = setting(prefix, "url", "jdbc:mysql://localhost:3306/assignment_portal");
+        this.username = setting(prefix, "username", "root");
+        this.password = setting(prefix, "password", "root");
+        this.driver = setting(prefix, "driver", "com.mysql.cj.jdbc.Driver");
+        this.initialPoolSize = Integer.parseInt(
+            setting(prefix, "pool.initialSize", "5"));
+        this.maxPoolSize = Integer.parseInt(
+            setting(prefix, "pool.maxTotal", "20"));
+        this.maxWaitTime = Long.parseLong(
+            setting(prefix, "pool.maxWaitMillis", "10000"));
+        this.idleTimeout = Long.parseLong(
+            setting(prefix, "pool.idleTimeoutMillis", "600000"));
+        this.maxLifetime = Long.parseLong(
+            setting(prefix, "pool.maxLifetimeMillis", "1800000"));
+        this.keepaliveTime = Long.parseLong(
+            setting(prefix, "pool.keepaliveMillis", "120000"));
+        this.validationTimeoutSeconds = Integer.parseInt(
+            setting(prefix, "pool.validationTimeoutSeconds", "5"));
+        this.housekeepingPeriod = Long.parseLong(
+            setting(prefix, "pool.housekeepingPeriodMillis", "30000"));
+        this.statementCacheSize = Integer.parseInt(
+            setting(prefix, "pool.statementCacheSize", "64"));
+        this.leakDetectionThreshold = Long.parseLong(
+            setting(prefix, "pool.leakDetectionThresholdMillis", "0"));
+        this.leakDetectionSampleRate = Double.parseDouble(
+            setting(prefix, "pool.leakDetectionSampleRate", "0.05"));
+        this.leakReclaim = Boolean.parseBoolean(
+            setting(prefix, "pool.leakReclaim", "false"));
+        this.warmupThreads = Math.max(1, Integer.parseInt(
+            setting(prefix, "pool.warmupThreads", "4")));
+        
+        this.sizeLimit.set(maxPoolSize);
+        if (Boolean.parseBoolean(setting(prefix, "pool.adaptive", "false"))) {
+            int minSize = Integer.parseInt(setting(prefix, "pool.adaptive.minSize",
+                String.valueOf(initialPoolSize)));
+            this.adaptiveSizer = new AdaptivePoolSizer(minSize, maxPoolSize, Long.parseLong(
+                setting(prefix, "pool.adaptive.targetWaitMillis", "5")));
+            this.adaptiveInterval = Long.parseLong(
+                setting(prefix, "pool.adaptive.intervalMillis", "5000"));
+            // Start small and let observed waits grow the limit
+            this.sizeLimit.set(Math.min(maxPoolSize, Math.max(minSize, initialPoolSize)));
+        }
     }
     
     /**
@@ -92,27 +193,65 @@ public class DatabaseConnectionPool {
     private void initializePool() {
         try {
             Class.forName(driver);
-            connectionPool = new ArrayBlockingQueue<>(maxPoolSize);
-            usedConnections = new ArrayBlockingQueue<>(maxPoolSize);
-            
-            // Create initial connections
-            for (int i = 0; i < initialPoolSize; i++) {
-                connectionPool.add(createConnection());
-            }
-            
-            System.out.println("Database connection pool initialized with " 
-                + initialPoolSize + " connections");
+            connectionBag = new ConnectionBag();
             
+            startWarmup();
         } catch (ClassNotFoundException e) {
-            System.err.println("Database driver not found: " + e.getMessage());
+            LOG.error("Database driver not found: {}", e.getMessage());
             throw new RuntimeException("Failed to load database driver", e);
         }
     }
     
+    /**
+     * Open the initial connections in parallel on background threads
+     * Each connection is handed to a waiting borrower as soon as it is ready,
+     * so the first request does not wait for the whole warm-up
+     */
+    private void startWarmup() {
+        // Claim every warm-up slot up front so the housekeeper's refill
+        // does not race the warm-up threads
+        int target = 0;
+        while (target < initialPoolSize && reserveSlot()) {
+            target++;
+        }
+        if (target == 0) {
+            return;
+        }
+        warmupPending.set(target);
+        long start = System.nanoTime();
+        
+        warmupExecutor = Executors.newFixedThreadPool(
+            Math.min(target, warmupThreads), runnable -> {
+                Thread thread = new Thread(runnable, "db-pool-warmup-" + poolName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        for (int i = 0; i < target; i++) {
+            warmupExecutor.execute(() -> warmupOne(start));
+        }
+        warmupExecutor.shutdown();
+    }
+    
+    private void warmupOne(long start) {
+        try {
+            addNew(createConnection());
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            metrics.warmupFailures.increment();
+        } finally {
+            if (warmupPending.decrementAndGet() == 0) {
+                LOG.info("Database connection pool ({}) warmed up with {} connections in {} ms ({} failed)",
+                    poolName, totalConnections.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    metrics.warmupFailures.sum());
+            }
+        }
+    }
+    
     /**
      * Create a new database connection
      */
-    private Connection createConnection() {
+    private Connection createConnection() throws SQLException {
         try {
             // Set login timeout
             DriverManager.setLoginTimeout(30);
@@ -123,52 +262,367 @@ public class DatabaseConnectionPool {
             props.setProperty("password", password);
             props.setProperty("sslmode", "require");
             
+            long start = System.nanoTime();
             Connection conn = DriverManager.getConnection(url, props);
-            System.out.println("New database connection created");
+            metrics.connectionCreation.record(System.nanoTime() - start);
+            metrics.connectionsCreated.increment();
+            LOG.debug("New database connection created for pool {}", poolName);
             return conn;
         } catch (SQLException e) {
-            System.err.println("Error creating connection: " + e.getMessage());
-            System.err.println("SQL State: " + e.getSQLState());
-            System.err.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to create database connection", e);
+            LOG.error("Error creating connection: {} (SQL state {}, error code {})",
+                e.getMessage(), e.getSQLState(), e.getErrorCode());
+            throw e;
         }
     }
     
     /**
-     * Get a connection from the pool (Thread-safe)
-     * Blocks if no connection is available until timeout
+     * Make a newly opened connection available, unless the pool was shut
+     * down while it was being opened
      */
-    public Connection getConnection() throws SQLException {
+    private void addNew(Connection connection) {
+        PooledConnection pooled = register(connection);
+        connectionBag.add(pooled);
+        if (closed) {
+            // shutdown() may have cleared the bag before the add
+            removeAndClose(pooled);
+        }
+    }
+    
+    /**
+     * Close a connection whatever its state, once
+     */
+    private void removeAndClose(PooledConnection pooled) {
+        int state;
+        do {
+            state = pooled.getState();
+            if (state == PooledConnection.STATE_REMOVED) {
+                return;
+            }
+        } while (!pooled.compareAndSetState(state, PooledConnection.STATE_REMOVED));
+        pooled.closeQuietly();
+        metrics.connectionsClosed.increment();
+    }
+    
+    private PooledConnection register(Connection connection) {
+        StatementCache statementCache = statementCacheSize > 0
+            ? new StatementCache(statementCacheSize, metrics.statementCacheHits, metrics.statementCacheMisses)
+            : null;
+        PooledConnection pooled = new PooledConnection(connection, maxLifetime, statementCache);
+        pooledByConnection.put(pooled.getConnection(), pooled);
+        return pooled;
+    }
+    
+    /**
+     * Atomically claim room for one more connection
+     * @return false if the pool is already at its size limit
+     */
+    private boolean reserveSlot() {
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= sizeLimit.get()) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Open a new connection already owned by the calling thread, if the pool may grow
+     */
+    private PooledConnection tryGrow() throws SQLException {
+        if (!reserveSlot()) {
+            return null;
+        }
         try {
-            Connection connection = connectionPool.poll(maxWaitTime, TimeUnit.MILLISECONDS);
-            
-            if (connection == null) {
-                // If pool is not at max capacity, create new connection
-                if (usedConnections.size() < maxPoolSize) {
-                    connection = createConnection();
+            PooledConnection pooled = register(createConnection());
+            connectionBag.addInUse(pooled);
+            metrics.overflowCreated.increment();
+            return pooled;
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+    
+    /**
+     * Drop a connection the caller owns from the pool and close it
+     */
+    private void discard(PooledConnection pooled) {
+        if (connectionBag.remove(pooled)) {
+            pooledByConnection.remove(pooled.getConnection());
+            totalConnections.decrementAndGet();
+            pooled.closeQuietly();
+            metrics.connectionsClosed.increment();
+        }
+    }
+    
+    /**
+     * Start the background thread that keeps the pool healthy
+     */
+    private void startHousekeeper() {
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-housekeeper-" + poolName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+            housekeepingPeriod, housekeepingPeriod, TimeUnit.MILLISECONDS);
+        
+        if (adaptiveSizer != null) {
+            housekeeper.scheduleWithFixedDelay(this::adjustSize,
+                adaptiveInterval, adaptiveInterval, TimeUnit.MILLISECONDS);
+        }
+        
+        if (leakDetectionThreshold > 0) {
+            long period = Math.max(1000, leakDetectionThreshold / 2);
+            housekeeper.scheduleWithFixedDelay(this::detectLeaks,
+                period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Report connections held longer than the leak threshold and, if enabled,
+     * take them back from their borrower
+     */
+    private void detectLeaks() {
+        try {
+            long now = System.nanoTime();
+            for (PooledConnection pooled : connectionBag.values(PooledConnection.STATE_IN_USE)) {
+                long borrowedAt = pooled.getBorrowedAtNanos();
+                if (borrowedAt == 0) {
+                    // Claimed by getConnection but not marked borrowed yet
+                    continue;
+                }
+                long heldFor = TimeUnit.NANOSECONDS.toMillis(now - borrowedAt);
+                if (heldFor < leakDetectionThreshold || !pooled.markLeakReported()) {
+                    continue;
+                }
+                metrics.leaksDetected.increment();
+                
+                Throwable site = pooled.getBorrowSite();
+                if (site != null) {
+                    LOG.warn("Possible connection leak: held for {} ms by thread {}",
+                        heldFor, pooled.getBorrowThread(), site);
                 } else {
-                    throw new SQLException("Connection pool timeout - no available connections");
+                    LOG.warn("Possible connection leak: held for {} ms by thread {} (borrow site not sampled)",
+                        heldFor, pooled.getBorrowThread());
+                }
+                
+                if (leakReclaim && connectionBag.remove(pooled)) {
+                    // The borrower may still be using the statement cache, so only
+                    // the physical connection is closed here
+                    pooledByConnection.remove(pooled.getConnection());
+                    totalConnections.decrementAndGet();
+                    pooled.abortQuietly();
+                    metrics.connectionsClosed.increment();
+                    metrics.leaksReclaimed.increment();
+                    LOG.warn("Leaked connection reclaimed from thread {}", pooled.getBorrowThread());
                 }
             }
-            
-            // Verify connection is valid
-            if (connection != null && connection.isClosed()) {
-                connection = createConnection();
+        } catch (RuntimeException e) {
+            LOG.error("Error during leak detection", e);
+        }
+    }
+    
+    /**
+     * Adaptive mode: move the size limit based on the last interval and close
+     * idle connections above a lowered limit
+     */
+    private void adjustSize() {
+        try {
+            int current = sizeLimit.get();
+            int next = adaptiveSizer.nextLimit(metrics, current, connectionBag.getWaitingThreadCount());
+            if (next == current) {
+                return;
             }
+            sizeLimit.set(next);
+            metrics.adaptiveResizes.increment();
+            LOG.info("Database connection pool ({}) size limit {} -> {}", poolName, current, next);
             
-            usedConnections.add(connection);
-            System.out.println("Connection obtained from pool. Available: " 
-                + connectionPool.size() + ", Used: " + usedConnections.size());
+            for (PooledConnection pooled : connectionBag.values(PooledConnection.STATE_NOT_IN_USE)) {
+                if (totalConnections.get() <= Math.max(next, minimumSize())) {
+                    break;
+                }
+                if (connectionBag.reserve(pooled)) {
+                    discard(pooled);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Error adjusting pool size", e);
+        }
+    }
+    
+    /**
+     * Number of connections the pool keeps open even when idle
+     */
+    private int minimumSize() {
+        return adaptiveSizer != null ? adaptiveSizer.getMinSize() : initialPoolSize;
+    }
+    
+    /**
+     * One housekeeping pass: retire expired connections, evict idle ones above
+     * the minimum size, validate connections idle past the keepalive interval,
+     * then refill back up to the minimum size
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            int idleAboveFloor = totalConnections.get() - minimumSize();
             
-            return connection;
+            for (PooledConnection pooled : connectionBag.values()) {
+                if (pooled.getState() == PooledConnection.STATE_IN_USE) {
+                    if (pooled.isExpired(now)) {
+                        pooled.markEvicted();
+                    }
+                    continue;
+                }
+                if (!connectionBag.reserve(pooled)) {
+                    continue;
+                }
+                
+                long idleFor = now - pooled.getLastAccessed();
+                if (pooled.isExpired(now)) {
+                    metrics.lifetimeRetired.increment();
+                    discard(pooled);
+                } else if (idleTimeout > 0 && idleFor >= idleTimeout && idleAboveFloor > 0) {
+                    metrics.idleEvicted.increment();
+                    idleAboveFloor--;
+                    discard(pooled);
+                } else if (keepaliveTime > 0 && idleFor >= keepaliveTime && !isValid(pooled)) {
+                    metrics.keepaliveFailures.increment();
+                    discard(pooled);
+                } else {
+                    connectionBag.unreserve(pooled);
+                }
+            }
             
+            fillPool();
+        } catch (RuntimeException e) {
+            LOG.error("Error during pool housekeeping", e);
+        }
+    }
+    
+    /**
+     * Cheap liveness check; refreshes the idle clock on success
+     */
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            if (pooled.getPhysicalConnection().isValid(validationTimeoutSeconds)) {
+                pooled.touch();
+                return true;
+            }
+            return false;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Open connections until the pool is back at its minimum size
+     */
+    private void fillPool() {
+        while (totalConnections.get() < minimumSize() && reserveSlot()) {
+            try {
+                addNew(createConnection());
+            } catch (SQLException e) {
+                totalConnections.decrementAndGet();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Get a connection from the pool (Thread-safe)
+     * Blocks if no connection is available until timeout
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitTime);
+        try {
+            while (true) {
+                PooledConnection pooled = connectionBag.borrow(0, TimeUnit.NANOSECONDS);
+                if (pooled == null && warmupPending.get() == 0) {
+                    // If pool is not at max capacity, create new connection;
+                    // during warm-up, wait for the connections already being opened
+                    pooled = tryGrow();
+                }
+                if (pooled == null) {
+                    pooled = connectionBag.borrow(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                if (pooled == null) {
+                    throw timeout(start);
+                }
+                
+                // Verify connection is valid and not past its lifetime
+                if (!pooled.isEvicted() && !pooled.isExpired(System.currentTimeMillis())
+                        && !pooled.isClosed()) {
+                    metrics.borrowWait.record(System.nanoTime() - start);
+                    pooled.markBorrowed(System.nanoTime(),
+                        leakDetectionThreshold > 0 ? sampleBorrowSite() : null);
+                    return pooled.getConnection();
+                }
+                discard(pooled);
+                if (System.nanoTime() - deadline >= 0) {
+                    throw timeout(start);
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new SQLException("Interrupted while waiting for connection", e);
         }
     }
     
+    /**
+     * Capture the caller's stack for a sampled fraction of borrows only;
+     * filling in a stack trace on every borrow is too costly under load
+     */
+    private Throwable sampleBorrowSite() {
+        if (leakDetectionSampleRate <= 0
+                || ThreadLocalRandom.current().nextDouble() >= leakDetectionSampleRate) {
+            return null;
+        }
+        return new Throwable("Connection borrowed here");
+    }
+    
+    private SQLException timeout(long start) {
+        metrics.timeouts.increment();
+        metrics.borrowWait.record(System.nanoTime() - start);
+        return new SQLException("Connection pool timeout - no available connections");
+    }
+    
+    /**
+     * Get a connection for a statement that writes
+     * Pins the current user's reads to the primary for the stickiness window
+     * so they see their own write even if the replica lags
+     */
+    public Connection getWriteConnection() throws SQLException {
+        if (replica != null) {
+            ReadConsistency.markWrite();
+        }
+        return getConnection();
+    }
+    
+    /**
+     * Get a connection for a replica-eligible read
+     * Falls back to the primary when no replica is configured or the current
+     * user wrote recently
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (replica == null || ReadConsistency.isPinnedToPrimary()) {
+            return getConnection();
+        }
+        return replica.getConnection();
+    }
+    
+    /**
+     * Get the read replica pool, or null if none is configured
+     */
+    public DatabaseConnectionPool getReplica() {
+        return replica;
+    }
+    
     /**
      * Release a connection back to the pool (Thread-safe)
      */
@@ -177,67 +631,195 @@ public class DatabaseConnectionPool {
             return false;
         }
         
-        try {
-            if (usedConnections.remove(connection)) {
-                connectionPool.add(connection);
-                System.out.println("Connection released back to pool. Available: " 
-                    + connectionPool.size() + ", Used: " + usedConnections.size());
-                return true;
-            }
-            return false;
-        } catch (Exception e) {
-            System.err.println("Error releasing connection: " + e.getMessage());
+        PooledConnection pooled = pooledByConnection.get(connection);
+        if (pooled == null && replica != null) {
+            return replica.releaseConnection(connection);
+        }
+        if (pooled == null || pooled.getState() != PooledConnection.STATE_IN_USE) {
             return false;
         }
+        metrics.holdTime.record(System.nanoTime() - pooled.getBorrowedAtNanos());
+        if (pooled.isEvicted() || totalConnections.get() > sizeLimit.get()) {
+            // Retired, or the adaptive limit shrank below the current size
+            discard(pooled);
+            return true;
+        }
+        pooled.touch();
+        pooled.resetStatements();
+        pooled.clearBorrowed();
+        return connectionBag.requite(pooled);
     }
     
     /**
      * Get current pool size
      */
     public int getPoolSize() {
-        return connectionPool.size() + usedConnections.size();
+        return totalConnections.get();
     }
     
     /**
      * Get available connections count
      */
     public int getAvailableConnections() {
-        return connectionPool.size();
+        return connectionBag.count(PooledConnection.STATE_NOT_IN_USE);
     }
     
     /**
      * Get used connections count
      */
     public int getUsedConnections() {
-        return usedConnections.size();
+        return connectionBag.count(PooledConnection.STATE_IN_USE);
+    }
+    
+    /**
+     * Get number of threads currently waiting for a connection
+     */
+    public int getPendingThreads() {
+        return connectionBag.getWaitingThreadCount();
+    }
+    
+    public long getBorrowCount() {
+        return metrics.borrowWait.getCount() - metrics.timeouts.sum();
+    }
+    
+    public long getTimeoutCount() {
+        return metrics.timeouts.sum();
+    }
+    
+    public long getConnectionsCreated() {
+        return metrics.connectionsCreated.sum();
+    }
+    
+    public long getOverflowConnectionsCreated() {
+        return metrics.overflowCreated.sum();
+    }
+    
+    public double getMeanWaitMillis() {
+        return metrics.borrowWait.getMeanMillis();
+    }
+    
+    public double getWaitP95Millis() {
+        return metrics.borrowWait.getPercentileMillis(95);
+    }
+    
+    public double getWaitP99Millis() {
+        return metrics.borrowWait.getPercentileMillis(99);
+    }
+    
+    public double getMeanConnectionCreationMillis() {
+        return metrics.connectionCreation.getMeanMillis();
+    }
+    
+    public long getStatementCacheHits() {
+        return metrics.statementCacheHits.sum();
+    }
+    
+    public long getStatementCacheMisses() {
+        return metrics.statementCacheMisses.sum();
+    }
+    
+    public long getLeaksDetected() {
+        return metrics.leaksDetected.sum();
+    }
+    
+    public long getLeaksReclaimed() {
+        return metrics.leaksReclaimed.sum();
+    }
+    
+    public int getWarmupPending() {
+        return warmupPending.get();
+    }
+    
+    public long getWarmupFailures() {
+        return metrics.warmupFailures.sum();
+    }
+    
+    /**
+     * Get the current cap on pool size (maxTotal unless adaptive sizing lowered it)
+     */
+    public int getSizeLimit() {
+        return sizeLimit.get();
+    }
+    
+    public double getMeanHoldMillis() {
+        return metrics.holdTime.getMeanMillis();
+    }
+    
+    public long getAdaptiveResizes() {
+        return metrics.adaptiveResizes.sum();
+    }
+    
+    /**
+     * Write pool metrics in Prometheus text format
+     */
+    @Override
+    public void writeMetrics(PrintWriter out) {
+        String labels = "pool=\"" + poolName + "\"";
+        out.println("# TYPE db_pool_connections gauge");
+        out.println("db_pool_connections{" + labels + ",state=\"active\"} " + getUsedConnections());
+        out.println("db_pool_connections{" + labels + ",state=\"idle\"} " + getAvailableConnections());
+        out.println("db_pool_connections{" + labels + ",state=\"total\"} " + getPoolSize());
+        out.println("db_pool_connections_max{" + labels + "} " + maxPoolSize);
+        out.println("db_pool_connections_limit{" + labels + "} " + getSizeLimit());
+        out.println("# TYPE db_pool_adaptive_resizes_total counter");
+        out.println("db_pool_adaptive_resizes_total{" + labels + "} " + getAdaptiveResizes());
+        out.println("# TYPE db_pool_warmup_pending gauge");
+        out.println("db_pool_warmup_pending{" + labels + "} " + getWarmupPending());
+        out.println("# TYPE db_pool_warmup_failures_total counter");
+        out.println("db_pool_warmup_failures_total{" + labels + "} " + getWarmupFailures());
+        out.println("# TYPE db_pool_pending_threads gauge");
+        out.println("db_pool_pending_threads{" + labels + "} " + getPendingThreads());
+        out.println("# TYPE db_pool_timeouts_total counter");
+        out.println("db_pool_timeouts_total{" + labels + "} " + getTimeoutCount());
+        out.println("# TYPE db_pool_connections_created_total counter");
+        out.println("db_pool_connections_created_total{" + labels + "} " + getConnectionsCreated());
+        out.println("# TYPE db_pool_overflow_created_total counter");
+        out.println("db_pool_overflow_created_total{" + labels + "} " + getOverflowConnectionsCreated());
+        out.println("# TYPE db_pool_connections_closed_total counter");
+        out.println("db_pool_connections_closed_total{" + labels + "} " + metrics.connectionsClosed.sum());
+        out.println("# TYPE db_pool_evictions_total counter");
+        out.println("db_pool_evictions_total{" + labels + ",reason=\"idle\"} " + metrics.idleEvicted.sum());
+        out.println("db_pool_evictions_total{" + labels + ",reason=\"lifetime\"} " + metrics.lifetimeRetired.sum());
+        out.println("db_pool_evictions_total{" + labels + ",reason=\"keepalive\"} " + metrics.keepaliveFailures.sum());
+        out.println("# TYPE db_pool_statement_cache_total counter");
+        out.println("db_pool_statement_cache_total{" + labels + ",result=\"hit\"} " + getStatementCacheHits());
+        out.println("db_pool_statement_cache_total{" + labels + ",result=\"miss\"} " + getStatementCacheMisses());
+        out.println("# TYPE db_pool_leaks_total counter");
+        out.println("db_pool_leaks_total{" + labels + ",action=\"detected\"} " + getLeaksDetected());
+        out.println("db_pool_leaks_total{" + labels + ",action=\"reclaimed\"} " + getLeaksReclaimed());
+        out.println("# TYPE db_pool_borrow_wait_seconds histogram");
+        metrics.borrowWait.writePrometheus(out, "db_pool_borrow_wait_seconds", labels);
+        out.println("# TYPE db_pool_hold_seconds histogram");
+        metrics.holdTime.writePrometheus(out, "db_pool_hold_seconds", labels);
+        out.println("# TYPE db_pool_connection_create_seconds histogram");
+        metrics.connectionCreation.writePrometheus(out, "db_pool_connection_create_seconds", labels);
     }
     
     /**
      * Shutdown the connection pool
      */
     public void shutdown() {
-        try {
-            // Close all connections in pool
-            for (Connection conn : connectionPool) {
-                if (conn != null && !conn.isClosed()) {
-                    conn.close();
-                }
-            }
-            
-            // Close all used connections
-            for (Connection conn : usedConnections) {
-                if (conn != null && !conn.isClosed()) {
-                    conn.close();
-                }
-            }
-            
-            connectionPool.clear();
-            usedConnections.clear();
-            
-            System.out.println("Database connection pool shutdown successfully");
-            
-        } catch (SQLException e) {
-            System.err.println("Error shutting down connection pool: " + e.getMessage());
+        MetricsRegistry.unregister(this);
+        MetricsRegistry.unregisterMBean(mbeanName);
+        closed = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        if (warmupExecutor != null) {
+            warmupExecutor.shutdownNow();
+        }
+        
+        for (PooledConnection pooled : connectionBag.values()) {
+            removeAndClose(pooled);
         }
+        connectionBag.clear();
+        pooledByConnection.clear();
+        totalConnections.set(0);
+        
+        if (replica != null) {
+            replica.shutdown();
+        }
+        
+        LOG.info("Database connection pool ({}) shutdown successfully", poolName);
     }
 }
@@ -0,0 +1,50 @@
+package com.assignmentportal.util;
+
+/**
+ * JMX view of the connection pool
+ * Registered as com.assignmentportal:type=DatabaseConnectionPool,name=&lt;pool&gt;
+ */
+public interface DatabaseConnectionPoolMXBean {
+
+    int getPoolSize();
+
+    int getSizeLimit();
+
+    int getAvailableConnections();
+
+    int getUsedConnections();
+
+    int getPendingThreads();
+
+    long getBorrowCount();
+
+    long getTimeoutCount();
+
+    long getConnectionsCreated();
+
+    long getOverflowConnectionsCreated();
+
+    double getMeanWaitMillis();
+
+    double getWaitP95Millis();
+
+    double getWaitP99Millis();
+
+    double getMeanConnectionCreationMillis();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    long getLeaksDetected();
+
+    long getLeaksReclaimed();
+
+    int getWarmupPending();
+
+    long getWarmupFailures();
+
+    double getMeanHoldMillis();
+
+    long getAdaptiveResizes();
+}
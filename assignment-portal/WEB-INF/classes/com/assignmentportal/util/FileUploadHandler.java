@@ -3,26 +3,50 @@ package com.assignmentportal.util;
 import javax.servlet.http.Part;
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * File Upload Handler with multithreading support
  * Handles file uploads with validation and concurrent processing
+ *
+ * With upload.contentAddressed=true, staged submission files are stored once
+ * per distinct content under blobs/<2 hex digits>/<SHA-256> and shared by every
+ * submission that uploads the same bytes; see stageFile and sweepBlobs.
  */
 public class FileUploadHandler {
+    private static final Logger LOG = Logger.getLogger(FileUploadHandler.class);
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB in bytes
     private static final List<String> ALLOWED_EXTENSIONS = 
         Arrays.asList("pdf", "docx", "doc", "zip", "rar", "txt", "java");
     
-    private static final ExecutorService executorService = 
-        Executors.newFixedThreadPool(5); // Thread pool for concurrent uploads
+    private static final String BLOB_FOLDER = "blobs";
+    private static final int SWEEP_BATCH_SIZE = 500;
+    private static final String SWEEP_SUFFIX = ".sweep";
+    
+    // Guarded by FileUploadHandler.class
+    private static UploadExecutor executor;
+    private static boolean executorStopped;
     
     private String uploadDirectory;
+    private final boolean contentAddressed = AppConfig.getBoolean("upload.contentAddressed", false);
+    private ScheduledExecutorService blobSweeper;
     
     public FileUploadHandler(String uploadDirectory) {
         this.uploadDirectory = uploadDirectory;
@@ -37,10 +61,10 @@ public class FileUploadHandler {
             Path uploadPath = Paths.get(uploadDirectory);
             if (!Files.exists(uploadPath)) {
                 Files.createDirectories(uploadPath);
-                System.out.println("Upload directory created: " + uploadDirectory);
+                LOG.info("Upload directory created: {}", uploadDirectory);
             }
         } catch (IOException e) {
-            System.err.println("Error creating upload directory: " + e.getMessage());
+            LOG.error("Error creating upload directory: {}", e.getMessage());
             throw new RuntimeException("Failed to create upload directory", e);
         }
     }
@@ -110,22 +134,264 @@ public class FileUploadHandler {
             
             long fileSize = filePart.getSize();
             
-            System.out.println("File uploaded successfully: " + uniqueFileName);
+            LOG.debug("File uploaded successfully: {}", uniqueFileName);
             return new UploadResult(true, uniqueFileName, fullPath, 
                 fileSize, "File uploaded successfully");
             
         } catch (IOException e) {
-            System.err.println("Error uploading file: " + e.getMessage());
+            LOG.error("Error uploading file: {}", e.getMessage());
             return new UploadResult(false, null, null, 0, 
                 "Error uploading file: " + e.getMessage());
         }
     }
     
     /**
-     * Upload file asynchronously using thread pool
+     * Write an upload to a temporary file beside its final location
+     * Nothing appears under the final name until publish(), and closing the
+     * staged file without keep() removes whatever was written, so the file
+     * can succeed or fail together with the database row that records it.
+     * In content-addressed mode the final location is the blob for the file's
+     * hash and the subfolder is not used. The file must already have passed
+     * validateFile.
+     */
+    public StagedFile stageFile(Part filePart, String subfolder) throws IOException {
+        if (contentAddressed) {
+            return stageBlob(filePart);
+        }
+        String uniqueFileName = generateUniqueFileName(getFileName(filePart));
+        Path targetPath = subfolder != null ?
+            Paths.get(uploadDirectory, subfolder) : Paths.get(uploadDirectory);
+        Files.createDirectories(targetPath);
+        
+        Path tempPath = Files.createTempFile(targetPath, ".upload-", ".tmp");
+        try (InputStream input = filePart.getInputStream()) {
+            Files.copy(input, tempPath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        return new StagedFile(tempPath, targetPath.resolve(uniqueFileName), filePart.getSize(), false);
+    }
+    
+    /**
+     * Hash the upload with SHA-256 while it is written to the temp file, so
+     * the blob name is known without reading the bytes twice
+     */
+    private StagedFile stageBlob(Part filePart) throws IOException {
+        Path blobRoot = getBlobRoot();
+        Files.createDirectories(blobRoot);
+        
+        Path tempPath = Files.createTempFile(blobRoot, ".upload-", ".tmp");
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream input = new DigestInputStream(filePart.getInputStream(), digest)) {
+            Files.copy(input, tempPath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        
+        StringBuilder hash = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        Path blobPath = blobRoot.resolve(hash.substring(0, 2)).resolve(hash.toString());
+        return new StagedFile(tempPath, blobPath, filePart.getSize(), true);
+    }
+    
+    private Path getBlobRoot() {
+        return Paths.get(uploadDirectory, BLOB_FOLDER).toAbsolutePath().normalize();
+    }
+    
+    /**
+     * Which of the given file paths are still recorded by a submission
+     */
+    public interface ReferenceCheck {
+        Set<String> referenced(Collection<String> filePaths) throws SQLException;
+    }
+    
+    /**
+     * Sweep blobs every upload.blobSweepHours on a background thread; does
+     * nothing unless content-addressed storage is on
+     */
+    public synchronized void startBlobSweeper(ReferenceCheck check) {
+        long hours = AppConfig.getLong("upload.blobSweepHours", 24);
+        if (!contentAddressed || hours <= 0 || blobSweeper != null) {
+            return;
+        }
+        blobSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-blob-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long idleMillis = TimeUnit.HOURS.toMillis(hours);
+        blobSweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweepBlobs(check, idleMillis);
+            } catch (IOException | SQLException | RuntimeException e) {
+                LOG.error("Error sweeping upload blobs", e);
+            }
+        }, hours, hours, TimeUnit.HOURS);
+    }
+    
+    public synchronized void stopBlobSweeper() {
+        if (blobSweeper != null) {
+            blobSweeper.shutdownNow();
+            blobSweeper = null;
+        }
+    }
+    
+    /**
+     * Delete blobs that no submission records and that nobody has stored or
+     * reused for idleMillis, along with temp files left behind as long
+     * Publishing a blob touches it, so the idle period also protects blobs
+     * whose submission has not committed yet. A blob is first renamed aside,
+     * so it can no longer be reused, and is only deleted if it is still idle
+     * and unreferenced after that; otherwise it is renamed back.
+     * @return number of files deleted
+     */
+    public int sweepBlobs(ReferenceCheck check, long idleMillis) throws IOException, SQLException {
+        Path blobRoot = getBlobRoot();
+        if (!Files.isDirectory(blobRoot)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        List<Path> idle = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(blobRoot, 2)) {
+            files.filter(Files::isRegularFile).forEach(path -> {
+                if (path.getFileName().toString().endsWith(SWEEP_SUFFIX)) {
+                    restoreBlob(path);
+                } else if (isIdle(path, cutoff)) {
+                    idle.add(path);
+                }
+            });
+        }
+        
+        int deleted = 0;
+        for (int from = 0; from < idle.size(); from += SWEEP_BATCH_SIZE) {
+            List<Path> batch = idle.subList(from, Math.min(idle.size(), from + SWEEP_BATCH_SIZE));
+            Set<String> referenced = check.referenced(filePaths(batch));
+            List<Path> removed = new ArrayList<>();
+            for (Path path : batch) {
+                if (!referenced.contains(path.toString())) {
+                    try {
+                        Files.move(path, tombstone(path), StandardCopyOption.ATOMIC_MOVE);
+                        removed.add(path);
+                    } catch (NoSuchFileException e) {
+                        // Already gone
+                    }
+                }
+            }
+            if (removed.isEmpty()) {
+                continue;
+            }
+            
+            // Reused before the rename, or recorded by a submission that
+            // committed after the first check
+            referenced = check.referenced(filePaths(removed));
+            for (Path path : removed) {
+                Path tombstone = tombstone(path);
+                if (!referenced.contains(path.toString()) && isIdle(tombstone, cutoff)) {
+                    if (Files.deleteIfExists(tombstone)) {
+                        deleted++;
+                    }
+                } else {
+                    restoreBlob(tombstone);
+                }
+            }
+        }
+        if (deleted > 0) {
+            LOG.info("Removed {} unreferenced upload blobs", deleted);
+        }
+        return deleted;
+    }
+    
+    private static Path tombstone(Path blobPath) {
+        return blobPath.resolveSibling(blobPath.getFileName() + SWEEP_SUFFIX);
+    }
+    
+    /**
+     * Put a blob renamed aside by sweepBlobs back under its hash
+     * If it was stored again meanwhile, the copies hold the same bytes and
+     * the renamed one is dropped.
+     */
+    private static void restoreBlob(Path tombstone) {
+        String name = tombstone.getFileName().toString();
+        Path blobPath = tombstone.resolveSibling(name.substring(0, name.length() - SWEEP_SUFFIX.length()));
+        try {
+            if (Files.exists(blobPath)) {
+                Files.deleteIfExists(tombstone);
+            } else {
+                Files.move(tombstone, blobPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            LOG.error("Error restoring upload blob {}: {}", blobPath, e.getMessage());
+        }
+    }
+    
+    private static List<String> filePaths(List<Path> paths) {
+        List<String> filePaths = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            filePaths.add(path.toString());
+        }
+        return filePaths;
+    }
+    
+    private static boolean isIdle(Path path, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Upload file asynchronously on the upload executor
+     * Uploads to the same subfolder share a fairness queue.
+     * @throws RejectedExecutionException if too many uploads are already waiting
      */
     public Future<UploadResult> uploadFileAsync(Part filePart, String subfolder) {
-        return executorService.submit(() -> uploadFile(filePart, subfolder));
+        return submitUpload(subfolder, () -> uploadFile(filePart, subfolder));
+    }
+    
+    /**
+     * Run upload work on the bounded upload executor
+     * At most upload.threads tasks run at once and upload.queueCapacity more
+     * wait, taken from each fairness key (e.g. a course) in turn.
+     * @throws RejectedExecutionException if the queue is full; report it as 429
+     */
+    public <T> Future<T> submitUpload(String fairnessKey, Callable<T> task) {
+        return submitUpload(fairnessKey, task, null);
+    }
+    
+    /**
+     * Run upload work on the upload executor, with cleanup for when it never runs
+     * @param onCancel run instead of the task if it is still queued when the
+     *        executor shuts down, e.g. to answer the request and delete temp files
+     * @throws RejectedExecutionException if the queue is full; report it as 429
+     */
+    public <T> Future<T> submitUpload(String fairnessKey, Callable<T> task, Runnable onCancel) {
+        return getExecutor().submit(fairnessKey, task, onCancel);
+    }
+    
+    /**
+     * Upload executor, started on first use
+     */
+    private static synchronized UploadExecutor getExecutor() {
+        if (executor == null) {
+            if (executorStopped) {
+                throw new RejectedExecutionException("Uploads are shut down");
+            }
+            executor = new UploadExecutor(
+                AppConfig.getInt("upload.threads", 5),
+                AppConfig.getInt("upload.queueCapacity", 100),
+                AppConfig.getBoolean("upload.virtualThreads", false));
+        }
+        return executor;
     }
     
     /**
@@ -136,12 +402,12 @@ public class FileUploadHandler {
             Path path = Paths.get(filePath);
             if (Files.exists(path)) {
                 Files.delete(path);
-                System.out.println("File deleted: " + filePath);
+                LOG.info("File deleted: {}", filePath);
                 return true;
             }
             return false;
         } catch (IOException e) {
-            System.err.println("Error deleting file: " + e.getMessage());
+            LOG.error("Error deleting file: {}", e.getMessage());
             return false;
         }
     }
@@ -202,10 +468,18 @@ public class FileUploadHandler {
     }
     
     /**
-     * Shutdown executor service
+     * Stop the upload executor, letting accepted uploads finish for up to
+     * upload.shutdownTimeoutSeconds
      */
     public static void shutdown() {
-        executorService.shutdown();
+        UploadExecutor running;
+        synchronized (FileUploadHandler.class) {
+            running = executor;
+            executorStopped = true;
+        }
+        if (running != null) {
+            running.shutdown(TimeUnit.SECONDS.toMillis(AppConfig.getLong("upload.shutdownTimeoutSeconds", 30)));
+        }
     }
     
     /**
@@ -224,6 +498,92 @@ public class FileUploadHandler {
         public String getMessage() { return message; }
     }
     
+    /**
+     * An upload written under a temporary name, see stageFile
+     */
+    public static class StagedFile implements AutoCloseable {
+        private final Path tempPath;
+        private final Path finalPath;
+        private final long fileSize;
+        private final boolean shared;
+        private boolean published;
+        private boolean kept;
+        
+        private StagedFile(Path tempPath, Path finalPath, long fileSize, boolean shared) {
+            this.tempPath = tempPath;
+            this.finalPath = finalPath;
+            this.fileSize = fileSize;
+            this.shared = shared;
+        }
+        
+        public String getFileName() { return finalPath.getFileName().toString(); }
+        public String getFilePath() { return finalPath.toString(); }
+        public long getFileSize() { return fileSize; }
+        
+        /**
+         * Rename the file to its final name in one step
+         * A blob is hard-linked in under its hash instead, or renamed where
+         * links are not supported; if the blob is already stored, the copy
+         * is dropped and the stored blob is reused.
+         */
+        public void publish() throws IOException {
+            if (shared) {
+                publishBlob();
+                Files.deleteIfExists(tempPath);
+            } else {
+                Files.move(tempPath, finalPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            published = true;
+        }
+        
+        private void publishBlob() throws IOException {
+            Files.createDirectories(finalPath.getParent());
+            while (true) {
+                try {
+                    Files.createLink(finalPath, tempPath);
+                    return;
+                } catch (FileAlreadyExistsException e) {
+                    try {
+                        // Marks the blob as in use for the sweeper
+                        Files.setLastModifiedTime(finalPath, FileTime.fromMillis(System.currentTimeMillis()));
+                        LOG.debug("Upload matches stored blob {}", finalPath);
+                        return;
+                    } catch (NoSuchFileException swept) {
+                        // Swept after the link attempt; store it again
+                    }
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    Files.move(tempPath, finalPath, StandardCopyOption.ATOMIC_MOVE);
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Keep the published file when this is closed
+         */
+        public void keep() {
+            kept = true;
+        }
+        
+        /**
+         * Remove the file unless it was kept
+         * A published blob may already be shared with another submission, so
+         * it is left for sweepBlobs.
+         */
+        @Override
+        public void close() {
+            if (kept) {
+                return;
+            }
+            Path path = published && !shared ? finalPath : tempPath;
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOG.error("Error removing unsubmitted upload {}: {}", path, e.getMessage());
+            }
+        }
+    }
+    
     /**
      * Upload Result class
      */
@@ -0,0 +1,108 @@
+package com.assignmentportal.util;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram
+ * Recording is a couple of LongAdder increments, so it is safe on hot paths
+ */
+public class LatencyHistogram {
+    private static final long[] BOUNDS_NANOS = {
+        micros(100), micros(250), micros(500),
+        millis(1), millis(2) + micros(500), millis(5),
+        millis(10), millis(25), millis(50),
+        millis(100), millis(250), millis(500),
+        millis(1000), millis(2500), millis(5000),
+        millis(10000), millis(30000)
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    private static long micros(long value) {
+        return TimeUnit.MICROSECONDS.toNanos(value);
+    }
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    /**
+     * Record one observation
+     */
+    public void record(long nanos) {
+        int index = 0;
+        while (index < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sumNanos.sum() / (double) n / 1_000_000.0;
+    }
+
+    /**
+     * Estimate a percentile as the upper bound of the bucket holding it
+     * @param percentile value between 0 and 100
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS_NANOS[i] / 1_000_000.0;
+            }
+        }
+        return BOUNDS_NANOS[BOUNDS_NANOS.length - 1] / 1_000_000.0;
+    }
+
+    /**
+     * Write the histogram in Prometheus text format (seconds)
+     * @param labels label set without braces, e.g. pool="primary", or empty
+     */
+    public void writePrometheus(PrintWriter out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            cumulative += buckets[i].sum();
+            out.println(name + "_bucket{" + prefix + "le=\""
+                + (BOUNDS_NANOS[i] / 1_000_000_000.0) + "\"} " + cumulative);
+        }
+        cumulative += buckets[BOUNDS_NANOS.length].sum();
+        out.println(name + "_bucket{" + prefix + "le=\"+Inf\"} " + cumulative);
+        out.println(name + "_sum{" + labels + "} " + (sumNanos.sum() / 1_000_000_000.0));
+        out.println(name + "_count{" + labels + "} " + count.sum());
+    }
+}
@@ -0,0 +1,22 @@
+package com.assignmentportal.util;
+
+/**
+ * Logging levels, lowest to highest
+ */
+public enum LogLevel {
+    DEBUG, INFO, WARN, ERROR, OFF;
+
+    /**
+     * Parse a level name, falling back when it is missing or unknown
+     */
+    static LogLevel parse(String value, LogLevel fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
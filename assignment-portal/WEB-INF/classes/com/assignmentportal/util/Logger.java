@@ -0,0 +1,146 @@
+package com.assignmentportal.util;
+
+/**
+ * Application logger
+ *
+ * Messages use {} placeholders and are only formatted when the level is
+ * enabled, on the log writer thread. Pass values, not strings built at the
+ * call site, and pass a Throwable as the last argument to get its stack trace.
+ *
+ * Settings (db.properties or system properties):
+ *   log.level                  root level (DEBUG, INFO, WARN, ERROR, OFF)
+ *   log.level.&lt;prefix&gt;         level for loggers whose name starts with the prefix
+ *   log.async                  write from a background thread (default true)
+ *   log.bufferSize             ring buffer slots
+ *   log.dropPolicy             DISCARD or DISCARD_BELOW_WARN when the buffer is full
+ */
+public final class Logger {
+    private static final AsyncLogAppender APPENDER;
+    private static final LogLevel ROOT_LEVEL = LogLevel.parse(AppConfig.get("log.level"), LogLevel.INFO);
+
+    static {
+        APPENDER = new AsyncLogAppender(
+            AppConfig.getBoolean("log.async", true),
+            AppConfig.getInt("log.bufferSize", 8192),
+            AsyncLogAppender.DropPolicy.valueOf(
+                AppConfig.get("log.dropPolicy", "DISCARD_BELOW_WARN").trim().toUpperCase()));
+        MetricsRegistry.register(APPENDER);
+    }
+
+    private final String name;
+    private final LogLevel level;
+
+    private Logger(String name, LogLevel level) {
+        this.name = name;
+        this.level = level;
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return getLogger(type.getName(), type.getSimpleName());
+    }
+
+    private static Logger getLogger(String fullName, String displayName) {
+        // Most specific log.level.<prefix> wins
+        String prefix = fullName;
+        while (true) {
+            String configured = AppConfig.get("log.level." + prefix);
+            if (configured != null) {
+                return new Logger(displayName, LogLevel.parse(configured, ROOT_LEVEL));
+            }
+            int dot = prefix.lastIndexOf('.');
+            if (dot < 0) {
+                return new Logger(displayName, ROOT_LEVEL);
+            }
+            prefix = prefix.substring(0, dot);
+        }
+    }
+
+    /**
+     * Write out queued events and stop the writer thread; called by
+     * UploadLifecycleListener when the webapp stops. Events logged after
+     * this are written on the calling thread.
+     */
+    public static void shutdown() {
+        APPENDER.shutdown();
+    }
+
+    public boolean isEnabled(LogLevel candidate) {
+        return candidate != LogLevel.OFF && candidate.compareTo(level) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public void debug(String message) {
+        log(LogLevel.DEBUG, message, 0, null, null, null);
+    }
+
+    public void debug(String message, Object arg) {
+        log(LogLevel.DEBUG, message, 1, arg, null, null);
+    }
+
+    public void debug(String message, Object arg0, Object arg1) {
+        log(LogLevel.DEBUG, message, 2, arg0, arg1, null);
+    }
+
+    public void debug(String message, Object... args) {
+        log(LogLevel.DEBUG, message, args.length, null, null, args);
+    }
+
+    public void info(String message) {
+        log(LogLevel.INFO, message, 0, null, null, null);
+    }
+
+    public void info(String message, Object arg) {
+        log(LogLevel.INFO, message, 1, arg, null, null);
+    }
+
+    public void info(String message, Object arg0, Object arg1) {
+        log(LogLevel.INFO, message, 2, arg0, arg1, null);
+    }
+
+    public void info(String message, Object... args) {
+        log(LogLevel.INFO, message, args.length, null, null, args);
+    }
+
+    public void warn(String message) {
+        log(LogLevel.WARN, message, 0, null, null, null);
+    }
+
+    public void warn(String message, Object arg) {
+        log(LogLevel.WARN, message, 1, arg, null, null);
+    }
+
+    public void warn(String message, Object arg0, Object arg1) {
+        log(LogLevel.WARN, message, 2, arg0, arg1, null);
+    }
+
+    public void warn(String message, Object... args) {
+        log(LogLevel.WARN, message, args.length, null, null, args);
+    }
+
+    public void error(String message) {
+        log(LogLevel.ERROR, message, 0, null, null, null);
+    }
+
+    public void error(String message, Object arg) {
+        log(LogLevel.ERROR, message, 1, arg, null, null);
+    }
+
+    public void error(String message, Object arg0, Object arg1) {
+        log(LogLevel.ERROR, message, 2, arg0, arg1, null);
+    }
+
+    public void error(String message, Object... args) {
+        log(LogLevel.ERROR, message, args.length, null, null, args);
+    }
+
+    private void log(LogLevel candidate, String message, int argCount,
+                     Object arg0, Object arg1, Object[] args) {
+        if (candidate.compareTo(level) < 0 || level == LogLevel.OFF) {
+            return;
+        }
+        APPENDER.append(candidate, name, message, argCount, arg0, arg1, args);
+    }
+}
@@ -0,0 +1,67 @@
+package com.assignmentportal.util;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Central list of metrics sources scraped by the metrics endpoint,
+ * plus a helper for JMX registration
+ */
+public class MetricsRegistry {
+    // Before LOG: creating the first Logger registers the log appender here
+    private static final List<MetricsSource> sources = new CopyOnWriteArrayList<>();
+    private static final Logger LOG = Logger.getLogger(MetricsRegistry.class);
+
+    private MetricsRegistry() {
+    }
+
+    public static void register(MetricsSource source) {
+        sources.add(source);
+    }
+
+    public static void unregister(MetricsSource source) {
+        sources.remove(source);
+    }
+
+    /**
+     * Write every registered source in Prometheus text format
+     */
+    public static void writeAll(PrintWriter out) {
+        for (MetricsSource source : sources) {
+            source.writeMetrics(out);
+        }
+    }
+
+    /**
+     * Register an MBean, replacing any stale instance left by a previous deployment
+     */
+    public static void registerMBean(Object mbean, String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (JMException e) {
+            LOG.warn("Error registering MBean {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    public static void unregisterMBean(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Error unregistering MBean {}: {}", objectName, e.getMessage());
+        }
+    }
+}
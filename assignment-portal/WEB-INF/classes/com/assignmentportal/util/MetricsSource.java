@@ -0,0 +1,11 @@
+package com.assignmentportal.util;
+
+import java.io.PrintWriter;
+
+/**
+ * Component that can report its metrics in Prometheus text format
+ */
+public interface MetricsSource {
+
+    void writeMetrics(PrintWriter out);
+}
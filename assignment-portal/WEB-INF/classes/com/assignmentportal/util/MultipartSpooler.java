@@ -0,0 +1,385 @@
+package com.assignmentportal.util;
+
+import javax.servlet.http.Part;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Push parser for a multipart/form-data body that arrives in chunks
+ *
+ * Made for non-blocking request input: feed it each chunk with write as it is
+ * read and call finish after the last one. Text fields are kept in memory;
+ * file parts are written to temp files in the spool directory and handed out
+ * as Parts, which close deletes. Only the temp-file writes can block.
+ */
+public final class MultipartSpooler implements Closeable {
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+    private static final int MAX_FIELD_SIZE = 64 * 1024;
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] HEADER_END = { '\r', '\n', '\r', '\n' };
+
+    private enum State { PREAMBLE, DELIMITER, HEADERS, BODY, DONE }
+
+    private final byte[] delimiter;
+    private final Path spoolDirectory;
+    private final Map<String, String> fields = new HashMap<>();
+    private final Map<String, SpooledPart> files = new HashMap<>();
+
+    private State state = State.PREAMBLE;
+    // The body is parsed as if it started with CRLF, so the first boundary
+    // matches the same delimiter as the others
+    private byte[] buffer = new byte[16 * 1024];
+    private int length;
+
+    private String partName;
+    private SpooledPart filePart;
+    private OutputStream fileOut;
+    private ByteArrayOutputStream fieldOut;
+
+    /**
+     * @param contentType the request's multipart/form-data content type, with its boundary
+     * @throws IllegalArgumentException if the content type has no boundary
+     */
+    public MultipartSpooler(String contentType, Path spoolDirectory) {
+        String boundary = parameter(contentType, "boundary");
+        if (boundary == null || boundary.isEmpty()) {
+            throw new IllegalArgumentException("No multipart boundary in " + contentType);
+        }
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.spoolDirectory = spoolDirectory;
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        length = 2;
+    }
+
+    /**
+     * Parse the next chunk of the body
+     */
+    public void write(byte[] data, int offset, int count) throws IOException {
+        if (length + count > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + count)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+        System.arraycopy(data, offset, buffer, length, count);
+        length += count;
+        parse();
+    }
+
+    /**
+     * Finish parsing once the whole body has been written
+     * @throws IOException if the body ended before the closing boundary
+     */
+    public void finish() throws IOException {
+        parse();
+        if (state != State.DONE) {
+            throw new IOException("Multipart body ended before the closing boundary");
+        }
+    }
+
+    /**
+     * Value of a text field, or null if the form had none by that name
+     */
+    public String getParameter(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * A file field, or null if the form had none by that name
+     */
+    public Part getPart(String name) {
+        return files.get(name);
+    }
+
+    private void parse() throws IOException {
+        int pos = 0;
+        boolean more = true;
+        while (more) {
+            switch (state) {
+                case PREAMBLE: {
+                    int found = indexOf(delimiter, pos);
+                    if (found < 0) {
+                        pos = Math.max(pos, length - delimiter.length + 1);
+                        more = false;
+                    } else {
+                        pos = found + delimiter.length;
+                        state = State.DELIMITER;
+                    }
+                    break;
+                }
+                case DELIMITER: {
+                    // "--" closes the body; otherwise the line ends, after any padding
+                    if (length - pos < 2) {
+                        more = false;
+                    } else if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+                        pos = length;
+                        state = State.DONE;
+                    } else {
+                        int lineEnd = indexOf(CRLF, pos);
+                        if (lineEnd < 0) {
+                            checkHeaderSize(pos);
+                            more = false;
+                        } else {
+                            // Keep the CRLF: an empty header block is then one more CRLF
+                            pos = lineEnd;
+                            state = State.HEADERS;
+                        }
+                    }
+                    break;
+                }
+                case HEADERS: {
+                    int headerEnd = indexOf(HEADER_END, pos);
+                    if (headerEnd < 0) {
+                        checkHeaderSize(pos);
+                        more = false;
+                    } else {
+                        String headers = headerEnd > pos
+                            ? new String(buffer, pos + 2, headerEnd - pos - 2, StandardCharsets.UTF_8)
+                            : "";
+                        startPart(headers);
+                        pos = headerEnd + HEADER_END.length;
+                        state = State.BODY;
+                    }
+                    break;
+                }
+                case BODY: {
+                    int found = indexOf(delimiter, pos);
+                    if (found < 0) {
+                        // The tail could be the start of the delimiter
+                        int safe = length - delimiter.length + 1;
+                        if (safe > pos) {
+                            writePart(pos, safe - pos);
+                            pos = safe;
+                        }
+                        more = false;
+                    } else {
+                        writePart(pos, found - pos);
+                        endPart();
+                        pos = found + delimiter.length;
+                        state = State.DELIMITER;
+                    }
+                    break;
+                }
+                default:
+                    pos = length;
+                    more = false;
+            }
+        }
+        System.arraycopy(buffer, pos, buffer, 0, length - pos);
+        length -= pos;
+    }
+
+    private void checkHeaderSize(int pos) throws IOException {
+        if (length - pos > MAX_HEADER_SIZE) {
+            throw new IOException("Multipart headers longer than " + MAX_HEADER_SIZE + " bytes");
+        }
+    }
+
+    private void startPart(String headerBlock) throws IOException {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String line : headerBlock.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.computeIfAbsent(line.substring(0, colon).trim(), k -> new ArrayList<>())
+                    .add(line.substring(colon + 1).trim());
+            }
+        }
+        String disposition = first(headers, "Content-Disposition");
+        partName = parameter(disposition, "name");
+        String fileName = parameter(disposition, "filename");
+        if (fileName != null) {
+            Path path = Files.createTempFile(spoolDirectory, "upload-", ".part");
+            filePart = new SpooledPart(path, partName, fileName, first(headers, "Content-Type"), headers);
+            fileOut = new BufferedOutputStream(Files.newOutputStream(path));
+        } else {
+            fieldOut = new ByteArrayOutputStream();
+        }
+    }
+
+    private void writePart(int offset, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (fileOut != null) {
+            fileOut.write(buffer, offset, count);
+            filePart.size += count;
+        } else {
+            if (fieldOut.size() + count > MAX_FIELD_SIZE) {
+                throw new IOException("Form field " + partName + " longer than " + MAX_FIELD_SIZE + " bytes");
+            }
+            fieldOut.write(buffer, offset, count);
+        }
+    }
+
+    private void endPart() throws IOException {
+        if (fileOut != null) {
+            fileOut.close();
+            fileOut = null;
+            // The first file wins, as with a repeated text field
+            if (partName == null || files.putIfAbsent(partName, filePart) != null) {
+                filePart.delete();
+            }
+            filePart = null;
+        } else {
+            if (partName != null) {
+                fields.putIfAbsent(partName, new String(fieldOut.toByteArray(), StandardCharsets.UTF_8));
+            }
+            fieldOut = null;
+        }
+        partName = null;
+    }
+
+    private int indexOf(byte[] pattern, int from) {
+        int last = length - pattern.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String first(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values != null ? values.get(0) : null;
+    }
+
+    /**
+     * A name=value parameter of a header such as Content-Type or
+     * Content-Disposition, unquoted
+     */
+    private static String parameter(String header, String name) {
+        if (header == null) {
+            return null;
+        }
+        for (String token : header.split(";")) {
+            int equals = token.indexOf('=');
+            if (equals > 0 && token.substring(0, equals).trim().equalsIgnoreCase(name)) {
+                String value = token.substring(equals + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delete the spooled files, including those of a body cut short
+     */
+    @Override
+    public void close() {
+        if (fileOut != null) {
+            try {
+                fileOut.close();
+            } catch (IOException e) {
+                // Deleted below either way
+            }
+            filePart.delete();
+            fileOut = null;
+        }
+        for (SpooledPart part : files.values()) {
+            part.delete();
+        }
+        files.clear();
+    }
+
+    /**
+     * A file field spooled to a temp file
+     */
+    private static final class SpooledPart implements Part {
+        private final Path path;
+        private final String name;
+        private final String fileName;
+        private final String contentType;
+        private final Map<String, List<String>> headers;
+        private long size;
+
+        SpooledPart(Path path, String name, String fileName, String contentType,
+                Map<String, List<String>> headers) {
+            this.path = path;
+            this.name = name;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.headers = headers;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getSubmittedFileName() {
+            return fileName;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Copy the content to a file, relative to the spool directory
+         */
+        @Override
+        public void write(String target) throws IOException {
+            Files.copy(path, path.resolveSibling(target), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        public void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // A leftover temp file is all that is lost
+            }
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return first(headers, name);
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name) {
+            List<String> values = headers.get(name);
+            return values != null ? values : Collections.emptyList();
+        }
+
+        @Override
+        public Collection<String> getHeaderNames() {
+            return headers.keySet();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.assignmentportal.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms collected by DatabaseConnectionPool
+ */
+final class PoolMetrics {
+    final LatencyHistogram borrowWait = new LatencyHistogram();
+    final LatencyHistogram connectionCreation = new LatencyHistogram();
+    final LatencyHistogram holdTime = new LatencyHistogram();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder connectionsCreated = new LongAdder();
+    final LongAdder overflowCreated = new LongAdder();
+    final LongAdder connectionsClosed = new LongAdder();
+    final LongAdder idleEvicted = new LongAdder();
+    final LongAdder lifetimeRetired = new LongAdder();
+    final LongAdder keepaliveFailures = new LongAdder();
+    final LongAdder statementCacheHits = new LongAdder();
+    final LongAdder statementCacheMisses = new LongAdder();
+    final LongAdder leaksDetected = new LongAdder();
+    final LongAdder leaksReclaimed = new LongAdder();
+    final LongAdder warmupFailures = new LongAdder();
+    final LongAdder adaptiveResizes = new LongAdder();
+}
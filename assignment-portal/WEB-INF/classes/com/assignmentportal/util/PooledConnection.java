@@ -0,0 +1,196 @@
+package com.assignmentportal.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool entry wrapping a physical JDBC connection
+ * The state field is the only ownership token: a thread owns the entry
+ * after a successful compareAndSetState from NOT_IN_USE to IN_USE
+ * When statement caching is on, callers get a proxy that serves
+ * prepareStatement from the entry's StatementCache
+ */
+final class PooledConnection {
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = -1;
+    static final int STATE_RESERVED = -2;
+
+    private static final Logger LOG = Logger.getLogger(PooledConnection.class);
+
+    private final Connection physical;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final AtomicInteger state = new AtomicInteger(STATE_NOT_IN_USE);
+    private final long createdAt;
+    private final long expiresAt;
+    private volatile long lastAccessed;
+    private volatile boolean evicted;
+    private volatile long borrowedAtNanos;
+    private volatile String borrowThread;
+    private volatile Throwable borrowSite;
+    private volatile boolean leakReported;
+
+    /**
+     * @param maxLifetimeMillis lifetime before the housekeeper retires the
+     *        connection, or 0 for no limit
+     * @param statementCache cache owned by this entry, or null to disable caching
+     */
+    PooledConnection(Connection physical, long maxLifetimeMillis, StatementCache statementCache) {
+        this.physical = physical;
+        this.statementCache = statementCache;
+        this.connection = statementCache == null ? physical
+            : new StatementCache.ConnectionHandler(physical, statementCache).createProxy();
+        this.createdAt = System.currentTimeMillis();
+        this.lastAccessed = createdAt;
+        if (maxLifetimeMillis > 0) {
+            // Up to 2.5% jitter so connections opened together are not all retired together
+            long jitter = (long) (maxLifetimeMillis * 0.025 * ThreadLocalRandom.current().nextDouble());
+            this.expiresAt = createdAt + maxLifetimeMillis - jitter;
+        } else {
+            this.expiresAt = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * The connection handed to DAOs
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    Connection getPhysicalConnection() {
+        return physical;
+    }
+
+    /**
+     * Make statements left checked out by the last borrower reusable
+     */
+    void resetStatements() {
+        if (statementCache != null) {
+            statementCache.releaseAll();
+        }
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastAccessed() {
+        return lastAccessed;
+    }
+
+    void touch() {
+        lastAccessed = System.currentTimeMillis();
+    }
+
+    /**
+     * Record when and by whom the connection was borrowed
+     * @param site stack captured at the borrow, or null when not sampled
+     */
+    void markBorrowed(long nanoTime, Throwable site) {
+        borrowedAtNanos = nanoTime;
+        borrowThread = Thread.currentThread().getName();
+        borrowSite = site;
+        leakReported = false;
+    }
+
+    /**
+     * Forget the borrow before the connection goes back to the pool, so it
+     * is not taken for a leak when it is next claimed but not yet marked
+     */
+    void clearBorrowed() {
+        borrowedAtNanos = 0;
+        borrowThread = null;
+        borrowSite = null;
+    }
+
+    /**
+     * @return the borrow time, or 0 if the current borrower has not been recorded yet
+     */
+    long getBorrowedAtNanos() {
+        return borrowedAtNanos;
+    }
+
+    String getBorrowThread() {
+        return borrowThread;
+    }
+
+    Throwable getBorrowSite() {
+        return borrowSite;
+    }
+
+    /**
+     * @return true the first time it is called for the current borrow
+     */
+    boolean markLeakReported() {
+        if (leakReported) {
+            return false;
+        }
+        leakReported = true;
+        return true;
+    }
+
+    boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * Mark for closing instead of reuse when the current borrower returns it
+     */
+    void markEvicted() {
+        evicted = true;
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    int getState() {
+        return state.get();
+    }
+
+    void setState(int newState) {
+        state.set(newState);
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+        return state.compareAndSet(expect, update);
+    }
+
+    boolean isClosed() {
+        try {
+            return physical.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Close only the physical connection; used when another thread may still
+     * be touching the statement cache
+     */
+    void abortQuietly() {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            LOG.warn("Error closing connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Close cached statements and the physical connection, ignoring driver errors
+     */
+    void closeQuietly() {
+        if (statementCache != null) {
+            statementCache.close();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            LOG.warn("Error closing connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.assignmentportal.util;
+
+/**
+ * Read-your-writes tracking for replica routing
+ *
+ * Holds, for the request being served on the current thread, the time until
+ * which reads must go to the primary. ReadConsistencyFilter loads it from the
+ * user's session at the start of each request and saves it back at the end,
+ * so the redirect that follows a write still reads from the primary.
+ */
+public class ReadConsistency {
+    private static final ThreadLocal<Long> primaryUntil = new ThreadLocal<>();
+    private static volatile long stickinessMillis = 10000;
+
+    private ReadConsistency() {
+    }
+
+    static void setStickinessMillis(long millis) {
+        stickinessMillis = millis;
+    }
+
+    /**
+     * Record that the current user just wrote to the primary
+     */
+    public static void markWrite() {
+        primaryUntil.set(System.currentTimeMillis() + stickinessMillis);
+    }
+
+    /**
+     * Whether reads for the current user must still go to the primary
+     */
+    public static boolean isPinnedToPrimary() {
+        Long until = primaryUntil.get();
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * @return the pin deadline for the current thread, or null if none
+     */
+    public static Long getPrimaryUntil() {
+        return primaryUntil.get();
+    }
+
+    public static void setPrimaryUntil(Long until) {
+        if (until == null) {
+            primaryUntil.remove();
+        } else {
+            primaryUntil.set(until);
+        }
+    }
+
+    public static void clear() {
+        primaryUntil.remove();
+    }
+}
@@ -0,0 +1,266 @@
+package com.assignmentportal.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of PreparedStatements owned by one pooled connection
+ *
+ * Only the thread that currently owns the connection touches the cache, so it
+ * needs no locking. DAOs keep calling prepareStatement/close as before: close()
+ * on a cached statement just clears its parameters and batch, puts back the
+ * fetch size, max rows and query timeout if they were changed, and makes it
+ * available for the next prepare of the same SQL. A statement whose other
+ * settings were changed is closed for real and dropped from the cache.
+ */
+final class StatementCache {
+    private static final Logger LOG = Logger.getLogger(StatementCache.class);
+    // Setters whose effect close() undoes
+    private static final Set<String> RESTORED_SETTERS = new HashSet<>(Arrays.asList(
+        "setFetchSize", "setMaxRows", "setLargeMaxRows", "setQueryTimeout"));
+    // Setters that make a statement unfit to hand to the next caller
+    private static final Set<String> UNCACHEABLE_SETTERS = new HashSet<>(Arrays.asList(
+        "setFetchDirection", "setMaxFieldSize", "setEscapeProcessing", "setCursorName",
+        "setPoolable", "closeOnCompletion"));
+
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(int maxSize, LongAdder hits, LongAdder misses) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Return a cached statement for the SQL, preparing and caching it on a miss
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS / NO_GENERATED_KEYS,
+     *        or -1 when the caller used the single-argument prepareStatement
+     */
+    PreparedStatement prepare(Connection physical, Connection owner,
+                              String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+            hits.increment();
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        misses.increment();
+        PreparedStatement statement = autoGeneratedKeys == -1
+            ? physical.prepareStatement(sql)
+            : physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null) {
+            // Same SQL already checked out on this connection: hand out a plain statement
+            return statement;
+        }
+
+        try {
+            cached = new CachedStatement(key, statement, owner);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            throw e;
+        }
+        cached.inUse = true;
+        statements.put(key, cached);
+        evictOverflow();
+        return cached.proxy;
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next();
+            if (!eldest.inUse) {
+                iterator.remove();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    /**
+     * Called when the connection goes back to the pool; anything a DAO forgot
+     * to close becomes reusable again
+     */
+    void releaseAll() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            CachedStatement cached = iterator.next();
+            if (cached.inUse && !cached.release()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Close every cached statement; used when the connection is evicted
+     */
+    void close() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            closeQuietly(cached.statement);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOG.warn("Error closing cached statement: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cache entry plus the proxy the DAOs see
+     */
+    private final class CachedStatement implements InvocationHandler {
+        private final String key;
+        private final PreparedStatement statement;
+        private final Connection owner;
+        private final PreparedStatement proxy;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private boolean inUse;
+        private boolean settingsChanged;
+        private boolean uncacheable;
+
+        CachedStatement(String key, PreparedStatement statement, Connection owner) throws SQLException {
+            this.key = key;
+            this.statement = statement;
+            this.owner = owner;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultMaxRows = statement.getMaxRows();
+            this.defaultQueryTimeout = statement.getQueryTimeout();
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        /**
+         * Undo what the borrower left behind so the next prepare gets a clean statement
+         * @return false if it could not be reset; it is then closed and must leave the cache
+         */
+        boolean release() {
+            inUse = false;
+            if (!uncacheable) {
+                try {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    if (settingsChanged) {
+                        // Max rows first: some drivers reject a fetch size above it
+                        statement.setMaxRows(defaultMaxRows);
+                        statement.setFetchSize(defaultFetchSize);
+                        statement.setQueryTimeout(defaultQueryTimeout);
+                        settingsChanged = false;
+                    }
+                    return true;
+                } catch (SQLException e) {
+                    LOG.debug("Dropping cached statement that could not be reset: {}", e.getMessage());
+                }
+            }
+            closeQuietly(statement);
+            return false;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (RESTORED_SETTERS.contains(name)) {
+                settingsChanged = true;
+            } else if (UNCACHEABLE_SETTERS.contains(name)) {
+                uncacheable = true;
+            }
+            switch (name) {
+                case "close":
+                    if (inUse && !release()) {
+                        statements.remove(key, this);
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + statement;
+                default:
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Connection handler that routes prepareStatement through the cache
+     */
+    static final class ConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private final StatementCache cache;
+        private Connection proxy;
+
+        ConnectionHandler(Connection physical, StatementCache cache) {
+            this.physical = physical;
+            this.cache = cache;
+        }
+
+        Connection createProxy() {
+            proxy = (Connection) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, this);
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("prepareStatement".equals(name)) {
+                if (args.length == 1) {
+                    return cache.prepare(physical, this.proxy, (String) args[0], -1);
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return cache.prepare(physical, this.proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
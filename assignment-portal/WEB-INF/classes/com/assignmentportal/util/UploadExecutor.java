@@ -0,0 +1,308 @@
+package com.assignmentportal.util;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs uploads on a bounded number of workers behind a bounded queue
+ *
+ * At most maxRunning uploads run at once, on pooled platform threads or on a
+ * virtual thread each. Up to queueCapacity more wait, queued per fairness key
+ * (the course), and a worker that finishes takes the next task from each key
+ * in turn, so a deadline burst in one course does not hold up uploads for the
+ * others. Beyond that submit throws RejectedExecutionException rather than
+ * holding the request and its multipart data in an unbounded queue.
+ *
+ * The submitter's read-your-writes pin (ReadConsistency) is in force while its
+ * task runs, and a pin the task sets is taken over by the thread calling get().
+ * A task still queued at shutdown never runs; its onCancel callback runs
+ * instead, so whatever the task would have cleaned up is released.
+ */
+final class UploadExecutor implements MetricsSource {
+    private static final Logger LOG = Logger.getLogger(UploadExecutor.class);
+
+    private final int maxRunning;
+    private final int queueCapacity;
+    private final boolean virtual;
+    private final ExecutorService workers;
+
+    // Guarded by this
+    private final Map<String, ArrayDeque<Task<?>>> queues = new HashMap<>();
+    private final ArrayDeque<String> turns = new ArrayDeque<>();
+    private int running;
+    private int queued;
+    private boolean shutdown;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private static final class Task<T> extends FutureTask<T> {
+        final long queuedAt = System.nanoTime();
+        final Long submitterPin = ReadConsistency.getPrimaryUntil();
+        final UploadExecutor owner;
+        final Runnable onCancel;
+        volatile Long taskPin;
+
+        Task(UploadExecutor owner, Callable<T> callable, Runnable onCancel) {
+            super(callable);
+            this.owner = owner;
+            this.onCancel = onCancel;
+        }
+
+        /**
+         * Cancel a task that will never run and run its cleanup
+         */
+        void abandon() {
+            cancel(false);
+            if (onCancel != null) {
+                try {
+                    onCancel.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Error cleaning up a cancelled upload", e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            ReadConsistency.setPrimaryUntil(submitterPin);
+            try {
+                super.run();
+            } finally {
+                taskPin = ReadConsistency.getPrimaryUntil();
+                ReadConsistency.clear();
+            }
+        }
+
+        @Override
+        protected void set(T value) {
+            owner.completed.increment();
+            super.set(value);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            owner.failed.increment();
+            super.setException(t);
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            try {
+                return super.get();
+            } finally {
+                adoptPin();
+            }
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            try {
+                return super.get(timeout, unit);
+            } finally {
+                adoptPin();
+            }
+        }
+
+        private void adoptPin() {
+            Long pin = taskPin;
+            Long current = ReadConsistency.getPrimaryUntil();
+            if (pin != null && (current == null || pin > current)) {
+                ReadConsistency.setPrimaryUntil(pin);
+            }
+        }
+    }
+
+    UploadExecutor(int maxRunning, int queueCapacity, boolean useVirtualThreads) {
+        this.maxRunning = Math.max(1, maxRunning);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        ExecutorService executor = null;
+        if (useVirtualThreads) {
+            executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor == null) {
+                LOG.warn("Virtual threads not supported by this JVM, using platform threads for uploads");
+            }
+        }
+        this.virtual = executor != null;
+        if (executor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(this.maxRunning, runnable -> {
+                Thread thread = new Thread(runnable, "upload-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.workers = executor;
+        MetricsRegistry.register(this);
+        LOG.info("Upload executor started: {} {} workers, queue capacity {}",
+            this.maxRunning, virtual ? "virtual" : "platform", this.queueCapacity);
+    }
+
+    /**
+     * Run a task now if a worker is free, otherwise queue it behind the
+     * fairness key's earlier tasks
+     * @param onCancel run instead of the task if it is still queued at
+     *        shutdown, or null
+     * @throws RejectedExecutionException if the queue is full or the executor is shut down
+     */
+    <T> Future<T> submit(String fairnessKey, Callable<T> callable, Runnable onCancel) {
+        Task<T> task = new Task<>(this, callable, onCancel);
+        synchronized (this) {
+            if (shutdown) {
+                rejected.increment();
+                throw new RejectedExecutionException("Upload executor is shut down");
+            }
+            if (running >= maxRunning) {
+                if (queued >= queueCapacity) {
+                    rejected.increment();
+                    throw new RejectedExecutionException(
+                        "Upload queue is full (" + queueCapacity + " waiting)");
+                }
+                ArrayDeque<Task<?>> queue = queues.computeIfAbsent(fairnessKey, k -> new ArrayDeque<>());
+                if (queue.isEmpty()) {
+                    turns.addLast(fairnessKey);
+                }
+                queue.addLast(task);
+                queued++;
+                return task;
+            }
+            running++;
+        }
+        try {
+            workers.execute(() -> work(task));
+        } catch (RejectedExecutionException e) {
+            // Workers were stopped by a shutdown that timed out
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+            rejected.increment();
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Run the given task, then queued ones until none are left
+     */
+    private void work(Task<?> first) {
+        Task<?> task = first;
+        while (task != null) {
+            long started = System.nanoTime();
+            queueWait.record(started - task.queuedAt);
+            task.run();
+            runTime.record(System.nanoTime() - started);
+            task = next();
+        }
+    }
+
+    /**
+     * Head of the queue whose turn it is; the key goes to the back of the line
+     * if it has more tasks waiting
+     * @return null after releasing the worker when nothing is queued
+     */
+    private synchronized Task<?> next() {
+        String key = turns.pollFirst();
+        if (key == null) {
+            running--;
+            notifyAll();
+            return null;
+        }
+        ArrayDeque<Task<?>> queue = queues.get(key);
+        Task<?> task = queue.pollFirst();
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        } else {
+            turns.addLast(key);
+        }
+        queued--;
+        return task;
+    }
+
+    /**
+     * Stop accepting uploads and wait for running and queued ones to finish
+     * Whatever is still queued after the timeout is cancelled and running
+     * uploads are interrupted.
+     */
+    void shutdown(long timeoutMillis) {
+        int abandoned;
+        List<Task<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                long remaining;
+                while (running > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            abandoned = running + queued;
+            for (ArrayDeque<Task<?>> queue : queues.values()) {
+                cancelled.addAll(queue);
+            }
+            queues.clear();
+            turns.clear();
+            queued = 0;
+        }
+        // Outside the lock: cleanup may write a response
+        for (Task<?> task : cancelled) {
+            task.abandon();
+        }
+        if (abandoned > 0) {
+            LOG.warn("Upload executor shut down with {} uploads unfinished", abandoned);
+            workers.shutdownNow();
+        } else {
+            workers.shutdown();
+        }
+        MetricsRegistry.unregister(this);
+    }
+
+    synchronized int getRunning() {
+        return running;
+    }
+
+    synchronized int getQueueDepth() {
+        return queued;
+    }
+
+    @Override
+    public void writeMetrics(PrintWriter out) {
+        out.println("# TYPE app_upload_running gauge");
+        out.println("app_upload_running " + getRunning());
+        out.println("# TYPE app_upload_workers gauge");
+        out.println("app_upload_workers " + maxRunning);
+        out.println("# TYPE app_upload_queue_depth gauge");
+        out.println("app_upload_queue_depth " + getQueueDepth());
+        out.println("# TYPE app_upload_queue_capacity gauge");
+        out.println("app_upload_queue_capacity " + queueCapacity);
+        out.println("# TYPE app_upload_tasks_total counter");
+        out.println("app_upload_tasks_total{result=\"completed\"} " + completed.sum());
+        out.println("app_upload_tasks_total{result=\"failed\"} " + failed.sum());
+        out.println("app_upload_tasks_total{result=\"rejected\"} " + rejected.sum());
+        out.println("# TYPE app_upload_queue_wait_seconds histogram");
+        queueWait.writePrometheus(out, "app_upload_queue_wait_seconds", "");
+        out.println("# TYPE app_upload_run_seconds histogram");
+        runTime.writePrometheus(out, "app_upload_run_seconds", "");
+    }
+}
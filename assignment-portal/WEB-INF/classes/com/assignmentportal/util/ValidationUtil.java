@@ -1,5 +1,6 @@
 package com.assignmentportal.util;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.regex.Pattern;
@@ -67,11 +68,12 @@ public class ValidationUtil {
     
     /**
      * Hash password using SHA-256
+     * Same lower-case hex as the database's SHA2(password, 256) on UTF-8 text
      */
     public static String hashPassword(String password) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashedBytes = md.digest(password.getBytes());
+            byte[] hashedBytes = md.digest(password.getBytes(StandardCharsets.UTF_8));
             
             StringBuilder sb = new StringBuilder();
             for (byte b : hashedBytes) {
@@ -0,0 +1,234 @@
+import com.assignmentportal.dao.AssignmentDAO;
+import com.assignmentportal.dao.SubmissionDAO;
+import com.assignmentportal.model.Submission;
+import com.assignmentportal.util.DatabaseConnectionPool;
+import com.assignmentportal.util.VirtualThreads;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deadline surge benchmark: platform threads vs virtual threads
+ *
+ * Replays the submit hot path (assignment lookup, duplicate check, file write,
+ * insert) for a burst of students through the real DAOs and connection pool.
+ * The database is simulated by an in-process JDBC driver that sleeps for the
+ * configured round-trip time, so no server is needed.
+ *
+ * Platform mode uses a fixed pool of 200 threads (Tomcat's default maxThreads);
+ * virtual mode starts one virtual thread per request and needs JDK 21+.
+ *
+ * Usage: see benchmark/run.sh, or
+ *   java -cp &lt;out&gt;:WEB-INF/classes DeadlineSurgeBenchmark [requests] [dbMillis] [ioMillis]
+ */
+public class DeadlineSurgeBenchmark {
+    private static final int PLATFORM_THREADS = 200;
+
+    private static volatile long dbMillis;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        dbMillis = args.length > 1 ? Long.parseLong(args[1]) : 3;
+        long ioMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+
+        // Point the pool at the simulated driver before it is created
+        System.setProperty("db.driver", SimulatedDriver.class.getName());
+        System.setProperty("db.url", "jdbc:simulated:portal");
+        System.setProperty("db.pool.maxTotal", System.getProperty("db.pool.maxTotal", "50"));
+        System.setProperty("db.pool.maxWaitMillis", "60000");
+
+        DatabaseConnectionPool pool = DatabaseConnectionPool.getInstance();
+        AssignmentDAO assignmentDAO = new AssignmentDAO();
+        SubmissionDAO submissionDAO = new SubmissionDAO();
+
+        System.out.println("Deadline surge: " + requests + " submissions, " + dbMillis
+            + " ms per DB round trip, " + ioMillis + " ms file write, pool max "
+            + System.getProperty("db.pool.maxTotal"));
+
+        // Warm up JIT and pool
+        run("warm-up", Executors.newFixedThreadPool(PLATFORM_THREADS),
+            requests / 5, ioMillis, assignmentDAO, submissionDAO, false);
+
+        run("platform(" + PLATFORM_THREADS + ")", Executors.newFixedThreadPool(PLATFORM_THREADS),
+            requests, ioMillis, assignmentDAO, submissionDAO, true);
+
+        ExecutorService virtual = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (virtual == null) {
+            System.out.println("virtual: skipped, JDK " + System.getProperty("java.version")
+                + " has no virtual threads (needs 21+)");
+        } else {
+            run("virtual", virtual, requests, ioMillis, assignmentDAO, submissionDAO, true);
+        }
+
+        pool.shutdown();
+    }
+
+    private static void run(String label, ExecutorService executor, int requests, long ioMillis,
+                            AssignmentDAO assignmentDAO, SubmissionDAO submissionDAO,
+                            boolean report) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Future<?>[] futures = new Future<?>[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            final int index = i;
+            final long queued = System.nanoTime();
+            futures[i] = executor.submit(() -> {
+                try {
+                    int assignmentId = 1 + index % 40;
+                    assignmentDAO.getAssignmentById(assignmentId);
+                    submissionDAO.getStudentSubmissionForAssignment(index, assignmentId);
+                    // File write happens without holding a connection
+                    Thread.sleep(ioMillis);
+                    Submission submission = new Submission(assignmentId, index,
+                        "/uploads/" + index, "work.zip", 512, false);
+                    submissionDAO.createSubmission(submission);
+                } catch (SQLException | InterruptedException e) {
+                    failures.incrementAndGet();
+                }
+                latencies[index] = System.nanoTime() - queued;
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        if (!report) {
+            return;
+        }
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-16s %8.0f req/s   total %6.2f s   p50 %7.1f ms   p99 %7.1f ms   failures %d%n",
+            label, requests / seconds, seconds,
+            latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.99)] / 1e6,
+            failures.get());
+    }
+
+    /**
+     * JDBC driver whose statements sleep for the configured round trip
+     * and return empty result sets
+     */
+    public static class SimulatedDriver implements Driver {
+        static {
+            try {
+                DriverManager.registerDriver(new SimulatedDriver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            boolean[] closed = { false };
+            return (Connection) Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, methodArgs) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return statement();
+                        case "isClosed":
+                            return closed[0];
+                        case "isValid":
+                            return !closed[0];
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        }
+
+        private static PreparedStatement statement() {
+            return (PreparedStatement) Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, methodArgs) -> {
+                    switch (method.getName()) {
+                        case "executeQuery":
+                            Thread.sleep(dbMillis);
+                            return emptyResultSet();
+                        case "executeUpdate":
+                            Thread.sleep(dbMillis);
+                            return 1;
+                        case "getGeneratedKeys":
+                            return emptyResultSet();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        }
+
+        private static ResultSet emptyResultSet() {
+            ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                SimulatedDriver.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+                (proxy, method, methodArgs) -> defaultValue(method.getReturnType()));
+            return (ResultSet) Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, methodArgs) ->
+                    "getMetaData".equals(method.getName()) ? metaData : defaultValue(method.getReturnType()));
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            }
+            if (type == int.class) {
+                return 0;
+            }
+            if (type == long.class) {
+                return 0L;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:simulated:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() {
+            return java.util.logging.Logger.getGlobal();
+        }
+    }
+}
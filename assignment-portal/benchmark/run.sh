@@ -0,0 +1,19 @@
+#!/bin/bash
+
+# Assignment Portal - Deadline Surge Benchmark
+# Compares platform and virtual threads on the submission hot path
+# Usage: ./benchmark/run.sh [requests] [dbMillis] [ioMillis]
+# Virtual threads need JDK 21+; on older JDKs only the platform run is reported
+
+cd "$(dirname "$0")/.." || exit 1
+
+OUT_DIR=$(mktemp -d)
+trap 'rm -rf "$OUT_DIR"' EXIT
+
+SOURCES="$(find WEB-INF/classes/com/assignmentportal/util WEB-INF/classes/com/assignmentportal/dao \
+    WEB-INF/classes/com/assignmentportal/model -name "*.java") benchmark/DeadlineSurgeBenchmark.java"
+
+echo "📝 Compiling benchmark..."
+javac -d "$OUT_DIR" -cp "${SERVLET_API:-$CATALINA_HOME/lib/servlet-api.jar}" $SOURCES || exit 1
+
+java -cp "$OUT_DIR" DeadlineSurgeBenchmark "$@"
@@ -2,6 +2,10 @@
 -- PostgreSQL Database for Neon
 
 -- Drop existing tables if they exist
+DROP TABLE IF EXISTS student_course_stats CASCADE;
+DROP TABLE IF EXISTS assignment_stats CASCADE;
+DROP TABLE IF EXISTS course_stats CASCADE;
+DROP TABLE IF EXISTS system_stats CASCADE;
 DROP TABLE IF EXISTS activity_log CASCADE;
 DROP TABLE IF EXISTS submissions CASCADE;
 DROP TABLE IF EXISTS assignments CASCADE;
@@ -9,7 +13,7 @@ DROP TABLE IF EXISTS enrollments CASCADE;
 DROP TABLE IF EXISTS courses CASCADE;
 DROP TABLE IF EXISTS users CASCADE;
 
--- Drop views if they exist
+-- Drop views left by earlier versions of this schema
 DROP VIEW IF EXISTS student_dashboard CASCADE;
 DROP VIEW IF EXISTS teacher_assignment_overview CASCADE;
 DROP VIEW IF EXISTS system_analytics CASCADE;
@@ -30,6 +34,7 @@ CREATE TABLE users (
 CREATE INDEX idx_username ON users(username);
 CREATE INDEX idx_role ON users(role);
 CREATE INDEX idx_email ON users(email);
+CREATE INDEX idx_users_created_at ON users(created_at, user_id);
 
 -- Courses Table
 CREATE TABLE courses (
@@ -102,13 +107,17 @@ CREATE TABLE submissions (
     is_late BOOLEAN DEFAULT FALSE,
     FOREIGN KEY (assignment_id) REFERENCES assignments(assignment_id) ON DELETE CASCADE,
     FOREIGN KEY (student_id) REFERENCES users(user_id) ON DELETE CASCADE,
-    FOREIGN KEY (graded_by) REFERENCES users(user_id) ON DELETE SET NULL
+    FOREIGN KEY (graded_by) REFERENCES users(user_id) ON DELETE SET NULL,
+    UNIQUE (assignment_id, student_id)
 );
 
 CREATE INDEX idx_assignment ON submissions(assignment_id);
 CREATE INDEX idx_student_submission ON submissions(student_id);
 CREATE INDEX idx_status ON submissions(status);
 CREATE INDEX idx_submission_date ON submissions(submission_date);
+CREATE INDEX idx_assignment_date ON submissions(assignment_id, submission_date, submission_id);
+CREATE INDEX idx_student_date ON submissions(student_id, submission_date, submission_id);
+CREATE INDEX idx_file_path ON submissions(file_path);
 
 -- Activity Log Table (for analytics and auditing)
 CREATE TABLE activity_log (
@@ -127,6 +136,50 @@ CREATE INDEX idx_user_log ON activity_log(user_id);
 CREATE INDEX idx_action ON activity_log(action);
 CREATE INDEX idx_timestamp ON activity_log(timestamp);
 
+-- Dashboard summary tables
+-- Kept up to date by the DAOs in the same transaction as each write, and
+-- checked against the base tables by the reconcile job, so dashboard counts
+-- are key lookups instead of aggregates
+
+-- Site-wide counters, each split over shard rows (0-15) that writers pick at
+-- random so they do not all lock one row; a stat is the sum of its shards.
+-- Shards 1-15 are created by the application's reconcile job.
+CREATE TABLE system_stats (
+    stat_name VARCHAR(50) NOT NULL,
+    shard SMALLINT NOT NULL DEFAULT 0,
+    stat_value BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (stat_name, shard)
+);
+
+-- Active assignments and active enrollments per course
+CREATE TABLE course_stats (
+    course_id INTEGER PRIMARY KEY,
+    assignment_count INTEGER NOT NULL DEFAULT 0,
+    enrollment_count INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (course_id) REFERENCES courses(course_id) ON DELETE CASCADE
+);
+
+-- Submissions, graded submissions and total marks per assignment
+CREATE TABLE assignment_stats (
+    assignment_id INTEGER PRIMARY KEY,
+    submission_count INTEGER NOT NULL DEFAULT 0,
+    graded_count INTEGER NOT NULL DEFAULT 0,
+    marks_total BIGINT NOT NULL DEFAULT 0,
+    FOREIGN KEY (assignment_id) REFERENCES assignments(assignment_id) ON DELETE CASCADE
+);
+
+-- A student's submissions, graded submissions and total marks per enrolled course
+CREATE TABLE student_course_stats (
+    student_id INTEGER NOT NULL,
+    course_id INTEGER NOT NULL,
+    submitted_count INTEGER NOT NULL DEFAULT 0,
+    graded_count INTEGER NOT NULL DEFAULT 0,
+    marks_total BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (student_id, course_id),
+    FOREIGN KEY (student_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (course_id) REFERENCES courses(course_id) ON DELETE CASCADE
+);
+
 -- Insert default users
 -- Note: PostgreSQL uses MD5 or pgcrypto for password hashing
 INSERT INTO users (username, password, email, full_name, role, is_active) VALUES
@@ -150,52 +203,25 @@ INSERT INTO assignments (course_id, title, description, max_marks, due_date, cre
 (1, 'Assignment 2: Calculator', 'Build a basic calculator application', 100, '2025-12-15 23:59:59', 2),
 (2, 'Assignment 1: Linked Lists', 'Implement various linked list operations', 100, '2025-12-01 23:59:59', 2);
 
--- Create views for common queries
-
--- View: Student Dashboard Summary
-CREATE VIEW student_dashboard AS
-SELECT 
-    u.user_id,
-    u.full_name,
-    c.course_id,
-    c.course_name,
-    c.course_code,
-    COUNT(DISTINCT a.assignment_id) as total_assignments,
-    COUNT(DISTINCT s.submission_id) as submitted_assignments,
-    AVG(s.marks_obtained) as average_marks
-FROM users u
-JOIN enrollments e ON u.user_id = e.student_id
-JOIN courses c ON e.course_id = c.course_id
-LEFT JOIN assignments a ON c.course_id = a.course_id
-LEFT JOIN submissions s ON a.assignment_id = s.assignment_id AND s.student_id = u.user_id
-WHERE u.role = 'STUDENT' AND e.status = 'ACTIVE'
-GROUP BY u.user_id, c.course_id, u.full_name, c.course_name, c.course_code;
-
--- View: Teacher Assignment Overview
-CREATE VIEW teacher_assignment_overview AS
-SELECT 
-    a.assignment_id,
-    a.title,
-    c.course_name,
-    c.course_code,
-    a.due_date,
-    COUNT(DISTINCT s.submission_id) as total_submissions,
-    COUNT(DISTINCT CASE WHEN s.status = 'GRADED' THEN s.submission_id END) as graded_count,
-    AVG(s.marks_obtained) as average_marks
-FROM assignments a
-JOIN courses c ON a.course_id = c.course_id
-LEFT JOIN submissions s ON a.assignment_id = s.assignment_id
-GROUP BY a.assignment_id, a.title, c.course_name, c.course_code, a.due_date;
-
--- View: System Analytics
-CREATE VIEW system_analytics AS
-SELECT 
-    (SELECT COUNT(*) FROM users WHERE role = 'STUDENT' AND is_active = TRUE) as total_students,
-    (SELECT COUNT(*) FROM users WHERE role = 'TEACHER' AND is_active = TRUE) as total_teachers,
-    (SELECT COUNT(*) FROM courses WHERE is_active = TRUE) as total_courses,
-    (SELECT COUNT(*) FROM assignments WHERE is_active = TRUE) as total_assignments,
-    (SELECT COUNT(*) FROM submissions) as total_submissions,
-    (SELECT COUNT(*) FROM submissions WHERE status = 'GRADED') as graded_submissions;
+-- Summary rows for the sample data
+INSERT INTO system_stats (stat_name, stat_value) VALUES
+('users', 3),
+('active_students', 1),
+('active_teachers', 1),
+('active_courses', 2),
+('active_assignments', 3),
+('submissions', 0),
+('graded_submissions', 0);
+
+INSERT INTO course_stats (course_id, assignment_count, enrollment_count) VALUES
+(1, 2, 1), -- CS101
+(2, 1, 1); -- CS201
+
+INSERT INTO assignment_stats (assignment_id) VALUES (1), (2), (3);
+
+INSERT INTO student_course_stats (student_id, course_id) VALUES
+(3, 1), -- Alice in CS101
+(3, 2); -- Alice in CS201
 
 -- Create function to update updated_at timestamp
 CREATE OR REPLACE FUNCTION update_updated_at_column()
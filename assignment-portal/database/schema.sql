@@ -18,7 +18,8 @@ CREATE TABLE users (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_username (username),
     INDEX idx_role (role),
-    INDEX idx_email (email)
+    INDEX idx_email (email),
+    INDEX idx_created_at (created_at, user_id)
 );
 
 -- Courses Table
@@ -90,10 +91,14 @@ CREATE TABLE submissions (
     FOREIGN KEY (assignment_id) REFERENCES assignments(assignment_id) ON DELETE CASCADE,
     FOREIGN KEY (student_id) REFERENCES users(user_id) ON DELETE CASCADE,
     FOREIGN KEY (graded_by) REFERENCES users(user_id) ON DELETE SET NULL,
+    UNIQUE KEY unique_submission (assignment_id, student_id),
     INDEX idx_assignment (assignment_id),
     INDEX idx_student (student_id),
     INDEX idx_status (status),
-    INDEX idx_submission_date (submission_date)
+    INDEX idx_submission_date (submission_date),
+    INDEX idx_assignment_date (assignment_id, submission_date, submission_id),
+    INDEX idx_student_date (student_id, submission_date, submission_id),
+    INDEX idx_file_path (file_path)
 );
 
 -- Activity Log Table (for analytics and auditing)
@@ -112,6 +117,50 @@ CREATE TABLE activity_log (
     INDEX idx_timestamp (timestamp)
 );
 
+-- Dashboard summary tables
+-- Kept up to date by the DAOs in the same transaction as each write, and
+-- checked against the base tables by the reconcile job, so dashboard counts
+-- are key lookups instead of aggregates
+
+-- Site-wide counters, each split over shard rows (0-15) that writers pick at
+-- random so they do not all lock one row; a stat is the sum of its shards.
+-- Shards 1-15 are created by the application's reconcile job.
+CREATE TABLE system_stats (
+    stat_name VARCHAR(50) NOT NULL,
+    shard SMALLINT NOT NULL DEFAULT 0,
+    stat_value BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (stat_name, shard)
+);
+
+-- Active assignments and active enrollments per course
+CREATE TABLE course_stats (
+    course_id INT PRIMARY KEY,
+    assignment_count INT NOT NULL DEFAULT 0,
+    enrollment_count INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (course_id) REFERENCES courses(course_id) ON DELETE CASCADE
+);
+
+-- Submissions, graded submissions and total marks per assignment
+CREATE TABLE assignment_stats (
+    assignment_id INT PRIMARY KEY,
+    submission_count INT NOT NULL DEFAULT 0,
+    graded_count INT NOT NULL DEFAULT 0,
+    marks_total BIGINT NOT NULL DEFAULT 0,
+    FOREIGN KEY (assignment_id) REFERENCES assignments(assignment_id) ON DELETE CASCADE
+);
+
+-- A student's submissions, graded submissions and total marks per enrolled course
+CREATE TABLE student_course_stats (
+    student_id INT NOT NULL,
+    course_id INT NOT NULL,
+    submitted_count INT NOT NULL DEFAULT 0,
+    graded_count INT NOT NULL DEFAULT 0,
+    marks_total BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (student_id, course_id),
+    FOREIGN KEY (student_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (course_id) REFERENCES courses(course_id) ON DELETE CASCADE
+);
+
 -- Insert default users
 INSERT INTO users (username, password, email, full_name, role, is_active) VALUES
 ('admin', SHA2('admin123', 256), 'admin@assignment-portal.com', 'System Administrator', 'ADMIN', TRUE),
@@ -134,49 +183,22 @@ INSERT INTO assignments (course_id, title, description, max_marks, due_date, cre
 (1, 'Assignment 2: Calculator', 'Build a basic calculator application', 100, '2025-12-15 23:59:59', 2),
 (2, 'Assignment 1: Linked Lists', 'Implement various linked list operations', 100, '2025-12-01 23:59:59', 2);
 
--- Create views for common queries
-
--- View: Student Dashboard Summary
-CREATE VIEW student_dashboard AS
-SELECT 
-    u.user_id,
-    u.full_name,
-    c.course_id,
-    c.course_name,
-    c.course_code,
-    COUNT(DISTINCT a.assignment_id) as total_assignments,
-    COUNT(DISTINCT s.submission_id) as submitted_assignments,
-    AVG(s.marks_obtained) as average_marks
-FROM users u
-JOIN enrollments e ON u.user_id = e.student_id
-JOIN courses c ON e.course_id = c.course_id
-LEFT JOIN assignments a ON c.course_id = a.course_id
-LEFT JOIN submissions s ON a.assignment_id = s.assignment_id AND s.student_id = u.user_id
-WHERE u.role = 'STUDENT' AND e.status = 'ACTIVE'
-GROUP BY u.user_id, c.course_id;
-
--- View: Teacher Assignment Overview
-CREATE VIEW teacher_assignment_overview AS
-SELECT 
-    a.assignment_id,
-    a.title,
-    c.course_name,
-    c.course_code,
-    a.due_date,
-    COUNT(DISTINCT s.submission_id) as total_submissions,
-    COUNT(DISTINCT CASE WHEN s.status = 'GRADED' THEN s.submission_id END) as graded_count,
-    AVG(s.marks_obtained) as average_marks
-FROM assignments a
-JOIN courses c ON a.course_id = c.course_id
-LEFT JOIN submissions s ON a.assignment_id = s.assignment_id
-GROUP BY a.assignment_id;
-
--- View: System Analytics
-CREATE VIEW system_analytics AS
-SELECT 
-    (SELECT COUNT(*) FROM users WHERE role = 'STUDENT' AND is_active = TRUE) as total_students,
-    (SELECT COUNT(*) FROM users WHERE role = 'TEACHER' AND is_active = TRUE) as total_teachers,
-    (SELECT COUNT(*) FROM courses WHERE is_active = TRUE) as total_courses,
-    (SELECT COUNT(*) FROM assignments WHERE is_active = TRUE) as total_assignments,
-    (SELECT COUNT(*) FROM submissions) as total_submissions,
-    (SELECT COUNT(*) FROM submissions WHERE status = 'GRADED') as graded_submissions;
+-- Summary rows for the sample data
+INSERT INTO system_stats (stat_name, stat_value) VALUES
+('users', 3),
+('active_students', 1),
+('active_teachers', 1),
+('active_courses', 2),
+('active_assignments', 3),
+('submissions', 0),
+('graded_submissions', 0);
+
+INSERT INTO course_stats (course_id, assignment_count, enrollment_count) VALUES
+(1, 2, 1), -- CS101
+(2, 1, 1); -- CS201
+
+INSERT INTO assignment_stats (assignment_id) VALUES (1), (2), (3);
+
+INSERT INTO student_course_stats (student_id, course_id) VALUES
+(3, 1), -- Alice in CS101
+(3, 2); -- Alice in CS201
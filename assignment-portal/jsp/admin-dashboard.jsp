@@ -1,11 +1,48 @@
 <%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
 <%@ page import="com.assignmentportal.model.User" %>
+<%@ page import="com.assignmentportal.model.Course" %>
+<%@ page import="com.assignmentportal.model.SystemStats" %>
+<%@ page import="java.net.URLEncoder" %>
+<%@ page import="java.util.List" %>
+<%@ page import="java.util.ArrayList" %>
 <%
     User user = (User) session.getAttribute("user");
     if (user == null || !"ADMIN".equals(user.getRole())) {
         response.sendRedirect(request.getContextPath() + "/login");
         return;
     }
+    
+    List<User> users = (List<User>) request.getAttribute("users");
+    if (users == null) {
+        users = new ArrayList<>();
+    }
+    
+    List<Course> courses = (List<Course>) request.getAttribute("courses");
+    if (courses == null) {
+        courses = new ArrayList<>();
+    }
+    
+    SystemStats stats = (SystemStats) request.getAttribute("systemStats");
+    if (stats == null) {
+        stats = new SystemStats();
+    }
+    
+    // Paging one table keeps the other table on its current page
+    String usersPage = (String) request.getAttribute("usersPage");
+    String coursesPage = (String) request.getAttribute("coursesPage");
+    String usersNextPage = (String) request.getAttribute("usersNextPage");
+    String coursesNextPage = (String) request.getAttribute("coursesNextPage");
+    String dashboardUrl = request.getContextPath() + "/admin/dashboard";
+    String usersNextUrl = null;
+    if (usersNextPage != null) {
+        usersNextUrl = dashboardUrl + "?usersPage=" + URLEncoder.encode(usersNextPage, "UTF-8")
+            + (coursesPage != null ? "&amp;coursesPage=" + URLEncoder.encode(coursesPage, "UTF-8") : "");
+    }
+    String coursesNextUrl = null;
+    if (coursesNextPage != null) {
+        coursesNextUrl = dashboardUrl + "?coursesPage=" + URLEncoder.encode(coursesNextPage, "UTF-8")
+            + (usersPage != null ? "&amp;usersPage=" + URLEncoder.encode(usersPage, "UTF-8") : "");
+    }
 %>
 <!DOCTYPE html>
 <html lang="en">
@@ -307,33 +344,33 @@
         <div class="dashboard-grid">
             <div class="card">
                 <h2>Total Users</h2>
-                <div class="stat">3</div>
+                <div class="stat"><%= stats.getTotalUsers() %></div>
                 <p>Registered users</p>
             </div>
             <div class="card">
                 <h2>Students</h2>
-                <div class="stat">1</div>
+                <div class="stat"><%= stats.getActiveStudents() %></div>
                 <p>Active students</p>
             </div>
             <div class="card">
                 <h2>Teachers</h2>
-                <div class="stat">1</div>
+                <div class="stat"><%= stats.getActiveTeachers() %></div>
                 <p>Active teachers</p>
             </div>
             <div class="card">
                 <h2>Courses</h2>
-                <div class="stat">2</div>
+                <div class="stat"><%= stats.getActiveCourses() %></div>
                 <p>Active courses</p>
             </div>
             <div class="card">
                 <h2>Assignments</h2>
-                <div class="stat">3</div>
-                <p>Total assignments</p>
+                <div class="stat"><%= stats.getActiveAssignments() %></div>
+                <p>Active assignments</p>
             </div>
             <div class="card">
                 <h2>Submissions</h2>
-                <div class="stat">0</div>
-                <p>Total submissions</p>
+                <div class="stat"><%= stats.getTotalSubmissions() %></div>
+                <p><%= stats.getGradedSubmissions() %> graded</p>
             </div>
         </div>
 
@@ -352,45 +389,30 @@
                     </tr>
                 </thead>
                 <tbody>
+                    <% for (User u : users) { %>
                     <tr>
-                        <td>1</td>
-                        <td>admin</td>
-                        <td>System Administrator</td>
-                        <td>admin@assignment-portal.com</td>
-                        <td><span class="badge badge-admin">ADMIN</span></td>
-                        <td><span class="badge badge-active">Active</span></td>
-                        <td>
-                            <button class="action-btn" onclick="editUser(1, 'admin', 'System Administrator', 'admin@assignment-portal.com', 'ADMIN')">Edit</button>
-                        </td>
-                    </tr>
-                    <tr>
-                        <td>2</td>
-                        <td>john.smith</td>
-                        <td>Dr. John Smith</td>
-                        <td>john.smith@university.edu</td>
-                        <td><span class="badge badge-teacher">TEACHER</span></td>
-                        <td><span class="badge badge-active">Active</span></td>
-                        <td>
-                            <button class="action-btn" onclick="editUser(2, 'john.smith', 'Dr. John Smith', 'john.smith@university.edu', 'TEACHER')">Edit</button>
-                            <button class="action-btn delete" onclick="disableUser(2, 'john.smith')">Disable</button>
-                        </td>
-                    </tr>
-                    <tr>
-                        <td>3</td>
-                        <td>alice.brown</td>
-                        <td>Alice Brown</td>
-                        <td>alice.brown@student.edu</td>
-                        <td><span class="badge badge-student">STUDENT</span></td>
-                        <td><span class="badge badge-active">Active</span></td>
+                        <td><%= u.getUserId() %></td>
+                        <td><%= u.getUsername() %></td>
+                        <td><%= u.getFullName() %></td>
+                        <td><%= u.getEmail() %></td>
+                        <td><span class="badge badge-<%= u.getRole().toLowerCase() %>"><%= u.getRole() %></span></td>
+                        <td><% if (u.isActive()) { %><span class="badge badge-active">Active</span><% } else { %><span class="badge">Inactive</span><% } %></td>
                         <td>
-                            <button class="action-btn" onclick="editUser(3, 'alice.brown', 'Alice Brown', 'alice.brown@student.edu', 'STUDENT')">Edit</button>
-                            <button class="action-btn delete" onclick="disableUser(3, 'alice.brown')">Disable</button>
+                            <button class="action-btn" onclick="editUser(<%= u.getUserId() %>, '<%= u.getUsername().replace("'", "\\'") %>', '<%= u.getFullName().replace("'", "\\'") %>', '<%= u.getEmail().replace("'", "\\'") %>', '<%= u.getRole() %>')">Edit</button>
+                            <% if (u.getUserId() != user.getUserId()) { %>
+                            <button class="action-btn delete" onclick="disableUser(<%= u.getUserId() %>, '<%= u.getUsername().replace("'", "\\'") %>')">Disable</button>
+                            <% } %>
                         </td>
                     </tr>
+                    <% } %>
                 </tbody>
             </table>
             <br>
+            <% if (usersNextUrl != null) { %>
+            <a class="action-btn" href="<%= usersNextUrl %>">Next page</a>
+            <% } %>
             <button class="action-btn create" onclick="createNewUser()">Create New User</button>
+            <a class="action-btn" href="<%= request.getContextPath() %>/admin/export/users">Export CSV</a>
         </div>
 
         <div class="section">
@@ -401,43 +423,50 @@
                         <th>Code</th>
                         <th>Name</th>
                         <th>Teacher</th>
-                        <th>Assignments</th>
-                        <th>Enrollments</th>
                         <th>Status</th>
                         <th>Actions</th>
                     </tr>
                 </thead>
                 <tbody>
+                    <% for (Course c : courses) { %>
                     <tr>
-                        <td>CS101</td>
-                        <td>Introduction to Programming</td>
-                        <td>Dr. John Smith</td>
-                        <td>2</td>
-                        <td>1</td>
-                        <td><span class="badge badge-active">Active</span></td>
-                        <td>
-                            <button class="action-btn" onclick="viewCourse('CS101')">View</button>
-                            <button class="action-btn" onclick="editCourse('CS101', 'Introduction to Programming', 'Dr. John Smith')">Edit</button>
-                        </td>
-                    </tr>
-                    <tr>
-                        <td>CS201</td>
-                        <td>Data Structures and Algorithms</td>
-                        <td>Dr. John Smith</td>
-                        <td>1</td>
-                        <td>1</td>
+                        <td><%= c.getCourseCode() %></td>
+                        <td><%= c.getCourseName() %></td>
+                        <td><%= c.getTeacherName() %></td>
                         <td><span class="badge badge-active">Active</span></td>
                         <td>
-                            <button class="action-btn" onclick="viewCourse('CS201')">View</button>
-                            <button class="action-btn" onclick="editCourse('CS201', 'Data Structures and Algorithms', 'Dr. John Smith')">Edit</button>
+                            <button class="action-btn" onclick="viewCourse('<%= c.getCourseCode().replace("'", "\\'") %>')">View</button>
+                            <button class="action-btn" onclick="editCourse('<%= c.getCourseCode().replace("'", "\\'") %>', '<%= c.getCourseName().replace("'", "\\'") %>', '<%= c.getTeacherName().replace("'", "\\'") %>')">Edit</button>
                         </td>
                     </tr>
+                    <% } %>
                 </tbody>
             </table>
             <br>
+            <% if (coursesNextUrl != null) { %>
+            <a class="action-btn" href="<%= coursesNextUrl %>">Next page</a>
+            <% } %>
             <button class="action-btn create" onclick="createNewCourse()">Create New Course</button>
         </div>
 
+        <div class="section">
+            <h2>📥 Bulk Import</h2>
+            <form action="<%= request.getContextPath() %>/admin/import" method="post" enctype="multipart/form-data">
+                <div class="form-group">
+                    <label for="importType">Import</label>
+                    <select id="importType" name="type">
+                        <option value="users">Users (username,password,email,full_name,role)</option>
+                        <option value="enrollments">Enrollments (username,course_code)</option>
+                    </select>
+                </div>
+                <div class="form-group">
+                    <label for="importFile">CSV file with a header row</label>
+                    <input type="file" id="importFile" name="file" accept=".csv,text/csv" required>
+                </div>
+                <button type="submit" class="btn-primary">Import</button>
+            </form>
+        </div>
+
         <div class="section">
             <h2>📊 System Analytics</h2>
             <table>
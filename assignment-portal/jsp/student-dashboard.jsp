@@ -2,10 +2,9 @@
 <%@ page import="com.assignmentportal.model.User" %>
 <%@ page import="com.assignmentportal.model.Submission" %>
 <%@ page import="com.assignmentportal.model.Assignment" %>
+<%@ page import="com.assignmentportal.model.CourseProgress" %>
 <%@ page import="java.util.List" %>
 <%@ page import="java.util.ArrayList" %>
-<%@ page import="java.util.HashMap" %>
-<%@ page import="java.util.Map" %>
 <%@ page import="java.text.SimpleDateFormat" %>
 <%
     User user = (User) session.getAttribute("user");
@@ -24,33 +23,23 @@
         assignments = new ArrayList<>();
     }
     
-    // Create a map of submitted assignment IDs for quick lookup
-    Map<Integer, Submission> submittedAssignments = new HashMap<>();
-    for (Submission sub : submissions) {
-        submittedAssignments.put(sub.getAssignmentId(), sub);
+    List<CourseProgress> courseProgress = (List<CourseProgress>) request.getAttribute("courseProgress");
+    if (courseProgress == null) {
+        courseProgress = new ArrayList<>();
     }
     
-    // Count pending assignments (not submitted)
+    // Submissions are paged, so count pending/submitted from the assignment
+    // list, which carries the student's submission status for each assignment
+    String submissionsNextPage = (String) request.getAttribute("submissionsNextPage");
+    
     int pendingCount = 0;
     for (Assignment assignment : assignments) {
-        if (!submittedAssignments.containsKey(assignment.getAssignmentId())) {
+        if (assignment.getSubmissionStatus() == null) {
             pendingCount++;
         }
     }
     
-    // Count submitted assignments
-    int submittedCount = submissions.size();
-    
-    // Calculate average grade
-    double totalMarks = 0;
-    int gradedCount = 0;
-    for (Submission sub : submissions) {
-        if ("GRADED".equals(sub.getStatus()) && sub.getMarksObtained() != null) {
-            totalMarks += sub.getMarksObtained();
-            gradedCount++;
-        }
-    }
-    double avgGrade = gradedCount > 0 ? totalMarks / gradedCount : 0;
+    int submittedCount = assignments.size() - pendingCount;
     
     SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy 'at' hh:mm a");
 %>
@@ -363,7 +352,7 @@
         <div class="dashboard-grid">
             <div class="card">
                 <h2>Enrolled Courses</h2>
-                <div class="stat">2</div>
+                <div class="stat"><%= courseProgress.size() %></div>
                 <p>Active courses</p>
             </div>
             <div class="card">
@@ -401,7 +390,7 @@
 
         <% if (!submissions.isEmpty()) { %>
         <div class="section">
-            <h2>📥 My Submissions (<%= submissions.size() %>)</h2>
+            <h2>📥 My Submissions</h2>
             <ul class="assignment-list">
                 <% for (Submission sub : submissions) { %>
                 <li class="assignment-item">
@@ -419,7 +408,7 @@
                         <div class="assignment-meta">Course: <%= sub.getCourseName() %></div>
                     <% } %>
                     <div class="assignment-meta">Submitted: <%= sub.getSubmissionDate() %></div>
-                    <div class="assignment-meta">File: <%= sub.getOriginalFilename() %> (<%= sub.getFileSizeKb() %> KB)</div>
+                    <div class="assignment-meta">File: <a href="<%= request.getContextPath() %>/submission/download?id=<%= sub.getSubmissionId() %>"><%= sub.getOriginalFilename() %></a> (<%= sub.getFileSizeKb() %> KB)</div>
                     
                     <% if ("GRADED".equals(sub.getStatus())) { %>
                         <div class="assignment-meta" style="margin-top:10px; padding:10px; background:#e8f5e9; border-left:4px solid #4caf50; border-radius:5px;">
@@ -449,6 +438,9 @@
                 </li>
                 <% } %>
             </ul>
+            <% if (submissionsNextPage != null) { %>
+            <a href="<%= request.getContextPath() %>/student/dashboard?submissionsPage=<%= submissionsNextPage %>" class="submit-btn">Older submissions</a>
+            <% } %>
         </div>
         <% } %>
         
@@ -459,7 +451,7 @@
                 <% 
                 for (Assignment assignment : assignments) {
                     // Only show if not submitted
-                    if (!submittedAssignments.containsKey(assignment.getAssignmentId())) {
+                    if (assignment.getSubmissionStatus() == null) {
                         // Check if overdue
                         boolean isOverdue = assignment.getDueDate() != null && 
                                           new java.util.Date().after(assignment.getDueDate());
@@ -3,6 +3,7 @@
 <%@ page import="com.assignmentportal.model.Submission" %>
 <%@ page import="com.assignmentportal.model.Assignment" %>
 <%@ page import="com.assignmentportal.model.Course" %>
+<%@ page import="java.net.URLEncoder" %>
 <%@ page import="java.util.List" %>
 <%@ page import="java.text.SimpleDateFormat" %>
 <%
@@ -15,17 +16,18 @@
     List<Submission> submissions = (List<Submission>) request.getAttribute("submissions");
     List<Assignment> assignments = (List<Assignment>) request.getAttribute("assignments");
     List<Course> courses = (List<Course>) request.getAttribute("courses");
+    String submissionsNextPage = (String) request.getAttribute("submissionsNextPage");
     
     int submissionCount = (submissions != null) ? submissions.size() : 0;
     int assignmentCount = (assignments != null) ? assignments.size() : 0;
     int courseCount = (courses != null) ? courses.size() : 0;
+    Integer enrollmentCount = (Integer) request.getAttribute("enrollmentCount");
     
+    // Assignments carry their submission and graded counts from the summary tables
     int pendingCount = 0;
-    if (submissions != null) {
-        for (Submission sub : submissions) {
-            if ("SUBMITTED".equals(sub.getStatus()) || "LATE".equals(sub.getStatus())) {
-                pendingCount++;
-            }
+    if (assignments != null) {
+        for (Assignment assignment : assignments) {
+            pendingCount += assignment.getTotalSubmissions() - assignment.getGradedSubmissions();
         }
     }
     
@@ -332,8 +334,8 @@
             </div>
             <div class="card">
                 <h2>Students</h2>
-                <div class="stat">1</div>
-                <p>Enrolled students</p>
+                <div class="stat"><%= enrollmentCount != null ? enrollmentCount : 0 %></div>
+                <p>Course enrollments</p>
             </div>
             <div class="card">
                 <h2>⏳ Pending Grading</h2>
@@ -344,7 +346,8 @@
 
         <% if (submissions != null && !submissions.isEmpty()) { %>
         <div class="section">
-            <h2>📥 Recent Submissions (<%= submissions.size() %>)</h2>
+            <h2>📥 Recent Submissions</h2>
+            <form action="<%= request.getContextPath() %>/teacher/grade-batch" method="post">
             <ul class="assignment-list">
                 <% for (Submission sub : submissions) { %>
                 <li class="list-item">
@@ -360,18 +363,30 @@
                     </div>
                     <div class="item-meta">Student: <%= sub.getStudentName() != null ? sub.getStudentName() : "Student #" + sub.getStudentId() %></div>
                     <div class="item-meta">Submitted: <%= sub.getSubmissionDate() %></div>
-                    <div class="item-meta">File: <%= sub.getOriginalFilename() %> (<%= sub.getFileSizeKb() %> KB)</div>
+                    <div class="item-meta">File: <a href="<%= request.getContextPath() %>/submission/download?id=<%= sub.getSubmissionId() %>"><%= sub.getOriginalFilename() %></a> (<%= sub.getFileSizeKb() %> KB)</div>
                     <% if ("GRADED".equals(sub.getStatus())) { %>
                         <div class="item-meta">Marks: <%= sub.getMarksObtained() %> / <%= sub.getMaxMarks() %></div>
                     <% } %>
                     <% if (!"GRADED".equals(sub.getStatus())) { %>
-                        <button onclick="openGradeModal(<%= sub.getSubmissionId() %>, '<%= sub.getAssignmentTitle() %>', '<%= sub.getStudentName() %>', <%= sub.getMaxMarks() %>)" class="action-btn">Grade Now</button>
+                        <div class="item-meta">
+                            <input type="hidden" name="submissionId" value="<%= sub.getSubmissionId() %>">
+                            <input type="number" name="marks" min="0" max="<%= sub.getMaxMarks() %>" placeholder="Marks" style="width:90px; padding:6px; border:2px solid #ddd; border-radius:5px;"> / <%= sub.getMaxMarks() %>
+                            <input type="text" name="feedback" placeholder="Feedback (optional)" style="width:50%; padding:6px; border:2px solid #ddd; border-radius:5px;">
+                        </div>
+                        <button type="button" onclick="openGradeModal(<%= sub.getSubmissionId() %>, '<%= sub.getAssignmentTitle() %>', '<%= sub.getStudentName() %>', <%= sub.getMaxMarks() %>)" class="action-btn">Grade Now</button>
                     <% } else { %>
-                        <button onclick="alert('Already graded: <%= sub.getMarksObtained() %>/<%= sub.getMaxMarks() %>')" class="action-btn">View Grade</button>
+                        <button type="button" onclick="alert('Already graded: <%= sub.getMarksObtained() %>/<%= sub.getMaxMarks() %>')" class="action-btn">View Grade</button>
                     <% } %>
                 </li>
                 <% } %>
             </ul>
+            <% if (pendingCount > 0) { %>
+            <button type="submit" class="action-btn">Save All Grades</button>
+            <% } %>
+            <% if (submissionsNextPage != null) { %>
+            <a href="<%= request.getContextPath() %>/teacher/dashboard?submissionsPage=<%= URLEncoder.encode(submissionsNextPage, "UTF-8") %>" class="action-btn">Older submissions</a>
+            <% } %>
+            </form>
         </div>
         <% } else { %>
         <div class="section">
@@ -415,22 +430,16 @@
             <h2>Recent Assignments</h2>
             <% if (assignments != null && !assignments.isEmpty()) { %>
             <ul class="assignment-list">
-                <% for (Assignment assignment : assignments) {
-                    int submCount = 0;
-                    if (submissions != null) {
-                        for (Submission s : submissions) {
-                            if (s.getAssignmentId() == assignment.getAssignmentId()) {
-                                submCount++;
-                            }
-                        }
-                    }
-                %>
+                <% for (Assignment assignment : assignments) { %>
                 <li class="list-item">
                     <div class="item-title"><%= assignment.getTitle() %></div>
                     <div class="item-meta">Course: <%= assignment.getCourseCode() %> - <%= assignment.getCourseName() %></div>
                     <div class="item-meta">📅 Due: <%= sdf.format(assignment.getDueDate()) %></div>
-                    <div class="item-meta">📊 Max Marks: <%= assignment.getMaxMarks() %> | 📥 Submissions: <%= submCount %></div>
+                    <div class="item-meta">📊 Max Marks: <%= assignment.getMaxMarks() %> | 📥 Submissions: <%= assignment.getTotalSubmissions() %> (<%= assignment.getGradedSubmissions() %> graded)</div>
                     <button class="action-btn" onclick="viewSubmissions(<%= assignment.getAssignmentId() %>)">View Submissions</button>
+                    <% if (assignment.getTotalSubmissions() > 0) { %>
+                    <a class="action-btn" href="<%= request.getContextPath() %>/teacher/export/submissions?assignmentId=<%= assignment.getAssignmentId() %>">Download All (ZIP)</a>
+                    <% } %>
                     <button class="action-btn" onclick="editAssignment(<%= assignment.getAssignmentId() %>, '<%= assignment.getCourseCode() %>')">Edit Assignment</button>
                 </li>
                 <% } %>